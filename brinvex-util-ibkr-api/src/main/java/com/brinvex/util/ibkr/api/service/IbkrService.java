@@ -5,8 +5,17 @@ import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
 
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Map;
 import java.util.stream.Stream;
 
+/**
+ * Statement files can be plain XML files, gzipped {@code .gz} files
+ * or {@code .zip} files in which every file entry is a separate statement.
+ * <p>
+ * Before the statement files are fully parsed, their statement headers are read to skip the files
+ * which are covered by another file of the same account and type generated later,
+ * and to report missing periods early.
+ */
 public interface IbkrService {
 
     FlexStatement parseActivitiesFromStatements(Collection<Path> statementFilePaths);
@@ -17,12 +26,68 @@ public interface IbkrService {
 
     FlexStatement parseEquitySummariesFromStatements(Stream<String> statementContents);
 
+    /**
+     * Parses activities and equity summaries in one pass over each statement
+     * and returns one merged statement with all sections.
+     */
+    FlexStatement parseStatements(Collection<Path> statementFilePaths);
+
+    /**
+     * Parses activities and equity summaries in one pass over each statement
+     * and returns one merged statement with all sections.
+     */
+    FlexStatement parseStatements(Stream<String> statementContents);
+
     Portfolio fillPortfolioFromStatements(Collection<Path> statementPaths);
 
     Portfolio fillPortfolioFromStatements(Stream<String> statementContents);
 
+    /**
+     * Applies the statements to the given portfolio, or to a new one if it is null.
+     * Files whose statements end before the portfolio period end are not parsed at all,
+     * so an archive of statement files can be applied repeatedly at low cost.
+     */
+    Portfolio fillPortfolioFromStatements(Portfolio ptf, Collection<Path> statementPaths);
+
     Portfolio fillPortfolioFromStatements(Portfolio ptf, Stream<String> statementContents);
 
+    /**
+     * Fills one portfolio per account from statements which can hold multiple accounts,
+     * e.g. a multi-account Flex query response.
+     * Returns the portfolios keyed by account id in the account id order.
+     */
+    Map<String, Portfolio> fillPortfoliosFromStatements(Collection<Path> statementPaths);
+
+    /**
+     * Fills one portfolio per account from statements which can hold multiple accounts,
+     * e.g. a multi-account Flex query response.
+     * Returns the portfolios keyed by account id in the account id order.
+     */
+    Map<String, Portfolio> fillPortfoliosFromStatements(Stream<String> statementContents);
+
+    /**
+     * Adds the records of the statement files to the statement store in the given directory.
+     * Only the records which are not stored yet are written, so a daily job parses just the new statement files.
+     */
+    void storeStatements(Path storeDir, Collection<Path> statementPaths);
+
+    /**
+     * Applies the records stored for the account to the given portfolio, or to a new one if it is null.
+     * Records of statements which end before the portfolio period end are not read at all.
+     */
+    Portfolio fillPortfolioFromStore(Portfolio ptf, Path storeDir, String accountId);
+
+    /**
+     * Writes the portfolio to a compact binary checkpoint file, the file is replaced atomically.
+     */
+    void writePortfolioCheckpoint(Portfolio ptf, Path checkpointPath);
+
+    /**
+     * Reads a portfolio written by {@link #writePortfolioCheckpoint(Portfolio, Path)},
+     * which can then be filled with the newer statements, e.g. by {@link #fillPortfolioFromStatements(Portfolio, Stream)}.
+     */
+    Portfolio readPortfolioCheckpoint(Path checkpointPath);
+
     /**
      * See https://www.interactivebrokers.co.in/en/?f=asr_statements_tradeconfirmations&p=flexqueries4
      */
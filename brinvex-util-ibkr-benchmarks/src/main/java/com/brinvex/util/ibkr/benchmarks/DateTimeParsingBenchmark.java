@@ -0,0 +1,73 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.Temporal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the fixed-width IBKR date/time decoder used by {@link FlexStatementXmlParser}
+ * with parsing by {@link DateTimeFormatter}.
+ * <p>
+ * The allocation per operation is reported by the GC profiler added by {@link BenchmarkRunner}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateTimeParsingBenchmark {
+
+    private static final DateTimeFormatter ibkrDf = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter ibkrDtf = DateTimeFormatter.ofPattern("yyyyMMdd;HHmmss z");
+
+    private static final String[] values = {
+            "20230727;052240 EDT",
+            "20231214;093015 EST",
+            "20230727",
+            "20240102;000000 EST",
+            "20231231",
+            "20220615;161203 EDT",
+    };
+
+    private static class Parser extends FlexStatementXmlParser {
+        @Override
+        protected Temporal parseTemporal(String str) {
+            return super.parseTemporal(str);
+        }
+    }
+
+    private final Parser parser = new Parser();
+
+    @Benchmark
+    public void formatter(Blackhole bh) {
+        for (String value : values) {
+            if (value.indexOf(';') > -1) {
+                bh.consume(ZonedDateTime.parse(value, ibkrDtf));
+            } else {
+                bh.consume(LocalDate.parse(value, ibkrDf));
+            }
+        }
+    }
+
+    @Benchmark
+    public void decoder(Blackhole bh) {
+        for (String value : values) {
+            bh.consume(parser.parseTemporal(value));
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Generates synthetic Flex statements for benchmarks and load tests, the same seed gives the same statements.
+ * <p>
+ * The records of a day depend only on the seed, the account and the day, so statements of consecutive
+ * or overlapping periods hold the same records for the same days, as the statements of IBKR do.
+ * For every account and day an activity statement holds:
+ * <ul>
+ * <li>an equity summary,</li>
+ * <li>a deposit on Mondays and a fee on Fridays,</li>
+ * <li>a stock trade of about every fourth symbol on business days and an FX trade on the first Tuesday of a month,</li>
+ * <li>a quarterly dividend of each symbol with its withholding tax; some taxes are reversed and charged again
+ *     30 and 45 days later within the same quarter, a reversal is written only into a statement
+ *     which also holds its dividend, so that every statement can be mapped on its own
+ *     and statements of whole quarters hold the same records as one statement of the whole period,</li>
+ * <li>a stock split of each symbol about every thousand days.</li>
+ * </ul>
+ * A trade confirm statement holds the stock trades of the activity statement as trade confirms.
+ * All records are accepted by {@code TransactionMapper}.
+ * <p>
+ * Run {@link #main} to write the statements of a longer history to files.
+ */
+public class FlexStatementGenerator {
+
+    public record StatementPeriod(LocalDate fromDate, LocalDate toDate) {
+    }
+
+    public static final int MAX_SYMBOLS = 10_000;
+
+    public static final int MAX_ACCOUNTS = 16;
+
+    private static final ZoneId ibkrZone = ZoneId.of("America/New_York");
+    private static final DateTimeFormatter ibkrDf = DateTimeFormatter.ofPattern("yyyyMMdd", Locale.ROOT);
+    private static final DateTimeFormatter ibkrDtf = DateTimeFormatter.ofPattern("yyyyMMdd;HHmmss z", Locale.ROOT);
+
+    private static final String[][] knownSymbols = {
+            // symbol, description, conid, isin, cusip, figi, listingExchange
+            {"KO", "COCA-COLA CO/THE", "8894", "US1912161007", "191216100", "BBG000BMX289", "NYSE"},
+            {"AAPL", "APPLE INC", "265598", "US0378331005", "037833100", "BBG000B9XRY4", "NASDAQ"},
+            {"MSFT", "MICROSOFT CORP", "272093", "US5949181045", "594918104", "BBG000BPH459", "NASDAQ"},
+            {"JNJ", "JOHNSON &amp; JOHNSON", "8719", "US4781601046", "478160104", "BBG000BMHYD1", "NYSE"},
+    };
+
+    /**
+     * Days after a dividend when its withholding tax is reversed and charged again.
+     */
+    private static final int FIRST_REVERSAL_DAYS = 30;
+    private static final int SECOND_REVERSAL_DAYS = 45;
+
+    /**
+     * Offsets of the record IDs within the ID range of an account and day.
+     */
+    private static final long DEPOSIT_ID = 1;
+    private static final long FEE_ID = 2;
+    private static final long FX_TRADE_ID = 10;
+    private static final long DIVIDEND_ID = 100_000;
+    private static final long REVERSAL_ID = 200_000;
+    private static final long TRADE_ID = 300_000;
+    private static final long CORPORATE_ACTION_ID = 400_000;
+
+    private final long seed;
+
+    private final String[][] symbols;
+
+    public FlexStatementGenerator(long seed) {
+        this(seed, knownSymbols.length);
+    }
+
+    public FlexStatementGenerator(long seed, int symbolCount) {
+        if (symbolCount < 1 || symbolCount > MAX_SYMBOLS) {
+            throw new IllegalArgumentException("Symbol count must be between 1 and %s: %s".formatted(MAX_SYMBOLS, symbolCount));
+        }
+        this.seed = seed;
+        this.symbols = IntStream.range(0, symbolCount).mapToObj(FlexStatementGenerator::symbol).toArray(String[][]::new);
+    }
+
+    public String generateActivityStatement(String accountId, LocalDate fromDate, LocalDate toDate) {
+        return generateActivityStatement(List.of(accountId), fromDate, toDate);
+    }
+
+    /**
+     * Generates a response with one activity statement per account.
+     */
+    public String generateActivityStatement(List<String> accountIds, LocalDate fromDate, LocalDate toDate) {
+        StringWriter out = new StringWriter(1024 * 1024);
+        try {
+            writeActivityStatement(out, accountIds, fromDate, toDate);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public String generateTradeConfirmStatement(String accountId, LocalDate fromDate, LocalDate toDate) {
+        StringWriter out = new StringWriter(64 * 1024);
+        try {
+            writeTradeConfirmStatement(out, accountId, fromDate, toDate);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes a response with one activity statement per account, the statement is written day by day,
+     * so that statements of any size can be written.
+     */
+    public void writeActivityStatement(Writer out, List<String> accountIds, LocalDate fromDate, LocalDate toDate) throws IOException {
+        if (accountIds.isEmpty() || accountIds.size() > MAX_ACCOUNTS) {
+            throw new IllegalArgumentException("Account count must be between 1 and %s: %s".formatted(MAX_ACCOUNTS, accountIds.size()));
+        }
+        if (fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException("fromDate must not be after toDate: %s, %s".formatted(fromDate, toDate));
+        }
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        appendResponseStart(sb, "AF", accountIds.size());
+        for (int accountIndex = 0; accountIndex < accountIds.size(); accountIndex++) {
+            String accountId = accountIds.get(accountIndex);
+            appendStatementStart(sb, accountId, fromDate, toDate);
+
+            sb.append("<EquitySummaryInBase>\n");
+            for (LocalDate d = fromDate; !d.isAfter(toDate); d = d.plusDays(1)) {
+                appendEquitySummary(sb, accountIndex, accountId, d);
+                flush(sb, out);
+            }
+            sb.append("</EquitySummaryInBase>\n");
+
+            sb.append("<CashTransactions>\n");
+            for (LocalDate d = fromDate; !d.isAfter(toDate); d = d.plusDays(1)) {
+                appendCashTransactions(sb, accountIndex, accountId, d, fromDate);
+                flush(sb, out);
+            }
+            sb.append("</CashTransactions>\n");
+
+            sb.append("<Trades>\n");
+            for (LocalDate d = fromDate; !d.isAfter(toDate); d = d.plusDays(1)) {
+                appendTrades(sb, "Trade", accountIndex, accountId, d);
+                flush(sb, out);
+            }
+            sb.append("</Trades>\n");
+
+            sb.append("<CorporateActions>\n");
+            for (LocalDate d = fromDate; !d.isAfter(toDate); d = d.plusDays(1)) {
+                appendCorporateActions(sb, accountIndex, accountId, d);
+            }
+            sb.append("</CorporateActions>\n");
+
+            sb.append("</FlexStatement>\n");
+        }
+        appendResponseEnd(sb);
+        flush(sb, out);
+    }
+
+    public void writeTradeConfirmStatement(Writer out, String accountId, LocalDate fromDate, LocalDate toDate) throws IOException {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        appendResponseStart(sb, "TCF", 1);
+        appendStatementStart(sb, accountId, fromDate, toDate);
+        sb.append("<TradeConfirms>\n");
+        for (LocalDate d = fromDate; !d.isAfter(toDate); d = d.plusDays(1)) {
+            appendTrades(sb, "TradeConfirm", 0, accountId, d);
+            flush(sb, out);
+        }
+        sb.append("</TradeConfirms>\n");
+        sb.append("</FlexStatement>\n");
+        appendResponseEnd(sb);
+        flush(sb, out);
+    }
+
+    /**
+     * Splits the period into consecutive statement periods of the given length,
+     * each statement period but the first starts {@code overlapDays} days before the end of the previous one.
+     * Leaving out one of the periods gives a missing period.
+     */
+    public static List<StatementPeriod> splitPeriod(LocalDate fromDate, LocalDate toDate, Period statementLength, int overlapDays) {
+        List<StatementPeriod> periods = new ArrayList<>();
+        LocalDate periodFrom = fromDate;
+        while (true) {
+            LocalDate periodTo = periodFrom.plus(statementLength).minusDays(1);
+            if (!periodTo.isBefore(toDate)) {
+                periods.add(new StatementPeriod(periodFrom, toDate));
+                return periods;
+            }
+            periods.add(new StatementPeriod(periodFrom, periodTo));
+            LocalDate nextPeriodFrom = periodTo.plusDays(1).minusDays(overlapDays);
+            if (!nextPeriodFrom.isAfter(periodFrom)) {
+                throw new IllegalArgumentException("Overlap must be shorter than the statement length: %s, %s"
+                        .formatted(overlapDays, statementLength));
+            }
+            periodFrom = nextPeriodFrom;
+        }
+    }
+
+    private void appendEquitySummary(StringBuilder sb, int accountIndex, String accountId, LocalDate d) {
+        Random random = random(accountIndex, d, 1);
+        BigDecimal cash = BigDecimal.valueOf(100_000 + random.nextInt(10_000_000), 2);
+        BigDecimal stock = BigDecimal.valueOf(random.nextInt(100_000_000), 2);
+        BigDecimal interestAccruals = BigDecimal.valueOf(random.nextInt(1000), 2);
+        sb.append("<EquitySummaryByReportDateInBase accountId=\"").append(accountId)
+                .append("\" currency=\"EUR\" reportDate=\"").append(date(d))
+                .append("\" cash=\"").append(cash.toPlainString())
+                .append("\" stock=\"").append(stock.toPlainString())
+                .append("\" dividendAccruals=\"0\" interestAccruals=\"").append(interestAccruals.toPlainString())
+                .append("\" total=\"").append(cash.add(stock).add(interestAccruals).toPlainString())
+                .append("\" />\n");
+    }
+
+    private void appendCashTransactions(StringBuilder sb, int accountIndex, String accountId, LocalDate d, LocalDate statementFromDate) {
+        long idBase = idBase(accountIndex, d);
+        String day = date(d);
+        if (d.getDayOfWeek() == DayOfWeek.MONDAY) {
+            appendCashTransaction(sb, accountId, "EUR", null, "CASH RECEIPTS / ELECTRONIC FUND TRANSFERS",
+                    day, day, day, "1000", "Deposits/Withdrawals", idBase + DEPOSIT_ID, "");
+        }
+        if (d.getDayOfWeek() == DayOfWeek.FRIDAY) {
+            appendCashTransaction(sb, accountId, "USD", null, "Fee &amp; &quot;other&quot; &lt;x&gt;",
+                    day, day, day, "-1.5", "Other Fees", idBase + FEE_ID, "");
+        }
+        for (int i = 0; i < symbols.length; i++) {
+            Dividend dividend = dividend(accountIndex, d, i);
+            if (dividend != null) {
+                String[] symbol = symbols[i];
+                // The dividend has a lower transaction ID than its withholding taxes, as in IBKR statements
+                appendCashTransaction(sb, accountId, "USD", symbol, dividend.description(symbol, false),
+                        dividend.dateTime, day, day, dividend.amount.toPlainString(), "Dividends",
+                        dividend.id, String.valueOf(dividend.actionId));
+                appendCashTransaction(sb, accountId, "USD", symbol, dividend.description(symbol, true),
+                        dividend.dateTime, day, day, dividend.taxes[0].negate().toPlainString(), "Withholding Tax",
+                        dividend.id + 1, String.valueOf(dividend.actionId));
+            }
+            for (int reversal = 1; reversal <= 2; reversal++) {
+                LocalDate dividendDate = d.minusDays(reversal == 1 ? FIRST_REVERSAL_DAYS : SECOND_REVERSAL_DAYS);
+                if (dividendDate.isBefore(statementFromDate)) {
+                    continue;
+                }
+                Dividend reversedDividend = dividend(accountIndex, dividendDate, i);
+                if (reversedDividend == null || reversedDividend.taxes.length <= reversal) {
+                    continue;
+                }
+                String[] symbol = symbols[i];
+                String settleDate = date(dividendDate);
+                long reversalId = idBase + REVERSAL_ID + i * 10L;
+                appendCashTransaction(sb, accountId, "USD", symbol, reversedDividend.description(symbol, true),
+                        reversedDividend.dateTime, settleDate, day, reversedDividend.taxes[reversal - 1].toPlainString(), "Withholding Tax",
+                        reversalId, String.valueOf(reversedDividend.actionId));
+                appendCashTransaction(sb, accountId, "USD", symbol, reversedDividend.description(symbol, true),
+                        reversedDividend.dateTime, settleDate, day, reversedDividend.taxes[reversal].negate().toPlainString(), "Withholding Tax",
+                        reversalId + 1, String.valueOf(reversedDividend.actionId));
+            }
+        }
+    }
+
+    /**
+     * A dividend with the withholding taxes charged, each but the last one is reversed later.
+     */
+    private record Dividend(long id, long actionId, String dateTime, BigDecimal amount, BigDecimal[] taxes) {
+
+        String description(String[] symbol, boolean tax) {
+            return "%s(%s) CASH DIVIDEND USD 0.46 per Share %s".formatted(symbol[0], symbol[3], tax ? "- US Tax" : "(Ordinary Dividend)");
+        }
+    }
+
+    /**
+     * Returns the dividend of the symbol paid on the given day or null, every symbol pays once a quarter,
+     * early enough for the withholding tax reversals to stay in the same quarter.
+     */
+    private Dividend dividend(int accountIndex, LocalDate d, int symbolIndex) {
+        LocalDate quarterStart = d.withMonth((d.getMonthValue() - 1) / 3 * 3 + 1).withDayOfMonth(1);
+        LocalDate payDate = quarterStart.plusDays(symbolIndex * 7L % 40);
+        while (isWeekend(payDate)) {
+            payDate = payDate.plusDays(1);
+        }
+        if (!d.equals(payDate)) {
+            return null;
+        }
+        Random random = random(accountIndex, d, 1000 + symbolIndex);
+        BigDecimal amount = BigDecimal.valueOf(100 + random.nextInt(10_000), 2);
+        int chargeCount = switch (random.nextInt(10)) {
+            case 0 -> 2;
+            case 1 -> 3;
+            default -> 1;
+        };
+        BigDecimal[] taxes = new BigDecimal[chargeCount];
+        for (int i = 0; i < chargeCount; i++) {
+            BigDecimal rate = BigDecimal.valueOf(10 + random.nextInt(20), 2);
+            taxes[i] = amount.multiply(rate).setScale(2, RoundingMode.HALF_UP);
+        }
+        long id = idBase(accountIndex, d) + DIVIDEND_ID + symbolIndex * 10L;
+        return new Dividend(id, id + 9, dateTime(d, LocalTime.of(20, 20)), amount, taxes);
+    }
+
+    private void appendTrades(StringBuilder sb, String elementName, int accountIndex, String accountId, LocalDate d) {
+        if (isWeekend(d)) {
+            return;
+        }
+        Random random = random(accountIndex, d, 2);
+        long idBase = idBase(accountIndex, d);
+        for (int i = 0; i < symbols.length; i++) {
+            if (random.nextInt(4) != 0) {
+                continue;
+            }
+            boolean buy = random.nextInt(4) != 0;
+            int quantity = 1 + random.nextInt(20);
+            int priceCents = 1000 + random.nextInt(49_000);
+            appendStockTrade(sb, elementName, accountId, symbols[i], d, idBase + TRADE_ID + i * 10L, buy, quantity, priceCents);
+        }
+        if (elementName.equals("Trade") && d.getDayOfWeek() == DayOfWeek.TUESDAY && d.getDayOfMonth() < 8) {
+            appendFxTrade(sb, accountId, d, idBase + FX_TRADE_ID);
+        }
+    }
+
+    private void appendCorporateActions(StringBuilder sb, int accountIndex, String accountId, LocalDate d) {
+        long epochDay = d.toEpochDay();
+        for (int i = 0; i < symbols.length; i++) {
+            if ((epochDay + i * 37L) % 1000 != 0) {
+                continue;
+            }
+            String[] symbol = symbols[i];
+            long id = idBase(accountIndex, d) + CORPORATE_ACTION_ID + i * 10L;
+            sb.append("<CorporateAction accountId=\"").append(accountId)
+                    .append("\" currency=\"USD\" assetCategory=\"STK\" symbol=\"").append(symbol[0])
+                    .append("\" description=\"").append(symbol[0]).append('(').append(symbol[3])
+                    .append(") SPLIT 2 FOR 1 (").append(symbol[0]).append(", ").append(symbol[1]).append(", ").append(symbol[3])
+                    .append(")\" conid=\"").append(symbol[2])
+                    .append("\" securityID=\"").append(symbol[3])
+                    .append("\" securityIDType=\"ISIN\" cusip=\"").append(symbol[4])
+                    .append("\" isin=\"").append(symbol[3])
+                    .append("\" listingExchange=\"").append(symbol[6])
+                    .append("\" issuerCountryCode=\"US\" reportDate=\"").append(date(d))
+                    .append("\" dateTime=\"").append(dateTime(d, LocalTime.of(20, 25)))
+                    .append("\" type=\"FS\" quantity=\"10\" amount=\"0\" proceeds=\"0\" value=\"0\" transactionID=\"").append(id)
+                    .append("\" actionID=\"").append(id + 1)
+                    .append("\" subCategory=\"COMMON\" figi=\"").append(symbol[5])
+                    .append("\" />\n");
+        }
+    }
+
+    private static void appendResponseStart(StringBuilder sb, String type, int statementCount) {
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<FlexQueryResponse queryName=\"Generated\" type=\"").append(type).append("\">\n")
+                .append("<FlexStatements count=\"").append(statementCount).append("\">\n");
+    }
+
+    private static void appendStatementStart(StringBuilder sb, String accountId, LocalDate fromDate, LocalDate toDate) {
+        sb.append("<FlexStatement accountId=\"").append(accountId)
+                .append("\" fromDate=\"").append(date(fromDate))
+                .append("\" toDate=\"").append(date(toDate))
+                .append("\" period=\"Custom\" whenGenerated=\"").append(dateTime(toDate.plusDays(1), LocalTime.of(5, 1, 2)))
+                .append("\">\n");
+    }
+
+    private static void appendResponseEnd(StringBuilder sb) {
+        sb.append("</FlexStatements>\n")
+                .append("</FlexQueryResponse>\n");
+    }
+
+    private static void appendCashTransaction(
+            StringBuilder sb,
+            String accountId,
+            String currency,
+            String[] symbol,
+            String description,
+            String dateTime,
+            String settleDate,
+            String reportDate,
+            String amount,
+            String type,
+            long transactionId,
+            String actionId
+    ) {
+        sb.append("<CashTransaction accountId=\"").append(accountId)
+                .append("\" currency=\"").append(currency)
+                .append("\" assetCategory=\"").append(symbol == null ? "" : "STK")
+                .append("\" symbol=\"").append(symbol == null ? "" : symbol[0])
+                .append("\" description=\"").append(description)
+                .append("\" conid=\"").append(symbol == null ? "" : symbol[2])
+                .append("\" securityID=\"").append(symbol == null ? "" : symbol[3])
+                .append("\" securityIDType=\"").append(symbol == null ? "" : "ISIN")
+                .append("\" cusip=\"").append(symbol == null ? "" : symbol[4])
+                .append("\" isin=\"").append(symbol == null ? "" : symbol[3])
+                .append("\" listingExchange=\"").append(symbol == null ? "" : symbol[6])
+                .append("\" dateTime=\"").append(dateTime)
+                .append("\" settleDate=\"").append(settleDate)
+                .append("\" amount=\"").append(amount)
+                .append("\" type=\"").append(type)
+                .append("\" tradeID=\"\" transactionID=\"").append(transactionId)
+                .append("\" reportDate=\"").append(reportDate)
+                .append("\" actionID=\"").append(actionId)
+                .append("\" subCategory=\"").append(symbol == null ? "" : "COMMON")
+                .append("\" figi=\"").append(symbol == null ? "" : symbol[5])
+                .append("\" />\n");
+    }
+
+    private static void appendStockTrade(
+            StringBuilder sb,
+            String elementName,
+            String accountId,
+            String[] symbol,
+            LocalDate d,
+            long id,
+            boolean buy,
+            int quantity,
+            int priceCents
+    ) {
+        BigDecimal price = BigDecimal.valueOf(priceCents, 2);
+        BigDecimal qty = BigDecimal.valueOf(buy ? quantity : -quantity);
+        BigDecimal tradeMoney = price.multiply(qty);
+        BigDecimal proceeds = tradeMoney.negate();
+        BigDecimal netCash = proceeds.subtract(BigDecimal.ONE);
+        boolean confirm = elementName.equals("TradeConfirm");
+        sb.append('<').append(elementName).append(" accountId=\"").append(accountId)
+                .append("\" currency=\"USD\" assetCategory=\"STK\" symbol=\"").append(symbol[0])
+                .append("\" description=\"").append(symbol[1])
+                .append("\" conid=\"").append(symbol[2])
+                .append("\" securityID=\"").append(symbol[3])
+                .append("\" securityIDType=\"ISIN\" cusip=\"").append(symbol[4])
+                .append("\" isin=\"").append(symbol[3])
+                .append("\" listingExchange=\"").append(symbol[6])
+                .append("\" tradeID=\"").append(id)
+                .append("\" reportDate=\"").append(date(d))
+                .append("\" dateTime=\"").append(dateTime(d, LocalTime.of(10, 0, (int) (id / 10 % 60))))
+                .append("\" tradeDate=\"").append(date(d))
+                .append(confirm ? "\" settleDate=\"" : "\" settleDateTarget=\"").append(date(d))
+                .append("\" transactionType=\"ExchTrade\" exchange=\"ISLAND\" quantity=\"").append(qty.toPlainString());
+        if (confirm) {
+            sb.append("\" price=\"").append(price.toPlainString())
+                    .append("\" amount=\"").append(tradeMoney.toPlainString())
+                    .append("\" proceeds=\"").append(proceeds.toPlainString())
+                    .append("\" netCash=\"").append(netCash.toPlainString())
+                    .append("\" commission=\"-1\" commissionCurrency=\"USD\" tax=\"0\" buySell=\"").append(buy ? "BUY" : "SELL")
+                    .append("\" orderID=\"").append(id + 2);
+        } else {
+            sb.append("\" tradePrice=\"").append(price.toPlainString())
+                    .append("\" tradeMoney=\"").append(tradeMoney.toPlainString())
+                    .append("\" proceeds=\"").append(proceeds.toPlainString())
+                    .append("\" taxes=\"0\" ibCommission=\"-1\" ibCommissionCurrency=\"USD\" netCash=\"").append(netCash.toPlainString())
+                    .append("\" closePrice=\"0\" openCloseIndicator=\"").append(buy ? "O" : "C")
+                    .append("\" cost=\"").append(netCash.negate().toPlainString())
+                    .append("\" buySell=\"").append(buy ? "BUY" : "SELL")
+                    .append("\" transactionID=\"").append(id + 1)
+                    .append("\" ibOrderID=\"").append(id + 2);
+        }
+        sb.append("\" orderTime=\"").append(dateTime(d, LocalTime.of(9, 59, 10)))
+                .append("\" subCategory=\"COMMON\" figi=\"").append(symbol[5])
+                .append("\" />\n");
+    }
+
+    private static void appendFxTrade(StringBuilder sb, String accountId, LocalDate d, long id) {
+        sb.append("<Trade accountId=\"").append(accountId)
+                .append("\" currency=\"USD\" assetCategory=\"CASH\" symbol=\"EUR.USD\" description=\"EUR.USD\" conid=\"12087792\"")
+                .append(" securityID=\"\" securityIDType=\"\" cusip=\"\" isin=\"\" listingExchange=\"\" tradeID=\"").append(id)
+                .append("\" reportDate=\"").append(date(d))
+                .append("\" dateTime=\"").append(dateTime(d, LocalTime.of(11, 0)))
+                .append("\" tradeDate=\"").append(date(d))
+                .append("\" settleDateTarget=\"").append(date(d))
+                .append("\" transactionType=\"ExchTrade\" exchange=\"IDEALFX\" quantity=\"1000\" tradePrice=\"1.1\"")
+                .append(" tradeMoney=\"1100\" proceeds=\"-1100\" taxes=\"0\" ibCommission=\"-2\" ibCommissionCurrency=\"EUR\"")
+                .append(" netCash=\"-1100\" cost=\"0\" buySell=\"BUY\" transactionID=\"").append(id + 1)
+                .append("\" ibOrderID=\"").append(id + 2)
+                .append("\" orderTime=\"").append(dateTime(d, LocalTime.of(11, 0)))
+                .append("\" subCategory=\"\" figi=\"\" />\n");
+    }
+
+    /**
+     * The first symbols are real ones, the others are made up.
+     */
+    private static String[] symbol(int index) {
+        if (index < knownSymbols.length) {
+            return knownSymbols[index];
+        }
+        String number = "%09d".formatted(index);
+        return new String[]{
+                "SYM" + index,
+                "SYNTHETIC CORP " + index,
+                String.valueOf(90_000_000 + index),
+                "US" + number + "0",
+                number,
+                "BBGSYN" + number.substring(3),
+                index % 2 == 0 ? "NYSE" : "NASDAQ",
+        };
+    }
+
+    /**
+     * Random numbers of one account, day and purpose, independent of the statement period.
+     */
+    private Random random(int accountIndex, LocalDate d, int purpose) {
+        long hash = seed;
+        hash = hash * 1_000_003 + accountIndex;
+        hash = hash * 1_000_003 + d.toEpochDay();
+        hash = hash * 1_000_003 + purpose;
+        return new Random(hash);
+    }
+
+    /**
+     * IDs of an account and day have the same number of digits and grow with the day,
+     * so that their string order follows the day order.
+     */
+    private static long idBase(int accountIndex, LocalDate d) {
+        return (d.toEpochDay() * MAX_ACCOUNTS + accountIndex) * 1_000_000L;
+    }
+
+    private static void flush(StringBuilder sb, Writer out) throws IOException {
+        out.append(sb);
+        sb.setLength(0);
+    }
+
+    private static boolean isWeekend(LocalDate d) {
+        return d.getDayOfWeek() == DayOfWeek.SATURDAY || d.getDayOfWeek() == DayOfWeek.SUNDAY;
+    }
+
+    private static String date(LocalDate d) {
+        return d.format(ibkrDf);
+    }
+
+    private static String dateTime(LocalDate d, LocalTime t) {
+        return ZonedDateTime.of(d, t, ibkrZone).format(ibkrDtf);
+    }
+
+    /**
+     * Writes activity statements of consecutive periods and a trade confirm statement of the following day.
+     * <p>
+     * Arguments: {@code outputDir [years=1] [symbols=4] [accounts=1] [statementMonths=12] [overlapDays=0] [seed=1]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: FlexStatementGenerator outputDir [years=1] [symbols=4] [accounts=1] [statementMonths=12] [overlapDays=0] [seed=1]");
+            System.exit(1);
+        }
+        Path outputDir = Path.of(args[0]);
+        int years = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int symbolCount = args.length > 2 ? Integer.parseInt(args[2]) : knownSymbols.length;
+        int accountCount = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int statementMonths = args.length > 4 ? Integer.parseInt(args[4]) : 12;
+        int overlapDays = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : 1;
+
+        FlexStatementGenerator generator = new FlexStatementGenerator(seed, symbolCount);
+        List<String> accountIds = IntStream.range(0, accountCount).mapToObj(i -> "U" + (1_000_001 + i)).toList();
+        LocalDate fromDate = LocalDate.of(2000, 1, 1);
+        LocalDate toDate = fromDate.plusYears(years).minusDays(1);
+        Files.createDirectories(outputDir);
+        for (StatementPeriod period : splitPeriod(fromDate, toDate, Period.ofMonths(statementMonths), overlapDays)) {
+            Path path = outputDir.resolve("Activity-%s-%s.xml".formatted(date(period.fromDate()), date(period.toDate())));
+            try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                generator.writeActivityStatement(out, accountIds, period.fromDate(), period.toDate());
+            }
+            System.out.println(path);
+        }
+        LocalDate tradeConfirmDate = toDate.plusDays(1);
+        Path path = outputDir.resolve("TradeConfirm-%s.xml".formatted(date(tradeConfirmDate)));
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            generator.writeTradeConfirmStatement(out, accountIds.get(0), tradeConfirmDate, tradeConfirmDate);
+        }
+        System.out.println(path);
+    }
+}
@@ -0,0 +1,83 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.benchmarks.FlexStatementGenerator.StatementPeriod;
+import com.brinvex.util.ibkr.impl.IbkrServiceImpl;
+import com.brinvex.util.ibkr.impl.PortfolioManager;
+import com.brinvex.util.ibkr.impl.TransactionMapper;
+import com.brinvex.util.ibkr.impl.parser.FlexParseOptions;
+import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the already parsed quarterly activity statements of {@code years} years, as done by {@link IbkrServiceImpl}.
+ * Each statement overlaps the previous one by a week, so that duplicate records are dropped.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeBenchmark {
+
+    /**
+     * Returns the statements parsed in advance instead of parsing, so that only the merge is measured.
+     */
+    private static class ParsedStatements extends FlexStatementXmlParser {
+
+        private final Map<String, FlexStatement> statements = new HashMap<>();
+
+        @Override
+        public List<FlexStatement> parseStatements(String statementKey, FlexParseOptions options) {
+            return List.of(statements.get(statementKey));
+        }
+    }
+
+    @Param({"1", "5"})
+    private int years;
+
+    private IbkrServiceImpl ibkrService;
+
+    private List<String> statementKeys;
+
+    @Setup
+    public void setUp() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        ParsedStatements parsedStatements = new ParsedStatements();
+        statementKeys = new ArrayList<>();
+        FlexStatementGenerator generator = new FlexStatementGenerator(1);
+        LocalDate fromDate = LocalDate.of(2020, 1, 1);
+        LocalDate toDate = fromDate.plusYears(years).minusDays(1);
+        for (StatementPeriod period : FlexStatementGenerator.splitPeriod(fromDate, toDate, Period.ofMonths(3), 7)) {
+            String statement = generator.generateActivityStatement("U1", period.fromDate(), period.toDate());
+            String key = period.fromDate().toString();
+            parsedStatements.statements.put(key, parser.parseActivities(statement));
+            statementKeys.add(key);
+        }
+        ibkrService = new IbkrServiceImpl(parsedStatements, new PortfolioManager(), new TransactionMapper(), null);
+    }
+
+    @Benchmark
+    public FlexStatement mergeStatements() {
+        return ibkrService.parseActivitiesFromStatements(statementKeys.stream());
+    }
+}
@@ -0,0 +1,68 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a generated activity statement file of {@code years} years.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"1", "5"})
+    private int years;
+
+    @Param({"CURSOR", "SCAN"})
+    private FlexStatementXmlParser.Engine engine;
+
+    private FlexStatementXmlParser parser;
+
+    private Path statementPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new FlexStatementXmlParser(engine);
+        LocalDate fromDate = LocalDate.of(2020, 1, 1);
+        String statement = new FlexStatementGenerator(1).generateActivityStatement("U1", fromDate, fromDate.plusYears(years).minusDays(1));
+        statementPath = Files.createTempFile("activity", ".xml");
+        Files.writeString(statementPath, statement);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(statementPath);
+    }
+
+    @Benchmark
+    public FlexStatement parseActivities() {
+        return parser.parseActivities(statementPath);
+    }
+
+    @Benchmark
+    public FlexStatement parseEquitySummaries() {
+        return parser.parseEquitySummaries(statementPath);
+    }
+}
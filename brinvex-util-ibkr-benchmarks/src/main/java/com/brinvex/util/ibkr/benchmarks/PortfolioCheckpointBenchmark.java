@@ -0,0 +1,85 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import com.brinvex.util.ibkr.api.model.Portfolio;
+import com.brinvex.util.ibkr.impl.IbkrServiceImpl;
+import com.brinvex.util.ibkr.impl.PortfolioCheckpoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Writes and reads the portfolio of a generated statement of {@code years} years
+ * as a {@link PortfolioCheckpoint} and with Java serialization.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortfolioCheckpointBenchmark {
+
+    @Param({"1", "5"})
+    private int years;
+
+    private Portfolio ptf;
+
+    private byte[] checkpoint;
+
+    private byte[] serializedPtf;
+
+    @Setup
+    public void setUp() throws IOException {
+        LocalDate fromDate = LocalDate.of(2020, 1, 1);
+        LocalDate toDate = fromDate.plusYears(years).minusDays(1);
+        String statement = new FlexStatementGenerator(1).generateActivityStatement("U1", fromDate, toDate);
+        ptf = new IbkrServiceImpl().fillPortfolioFromStatements(Stream.of(statement));
+        checkpoint = writeCheckpoint();
+        serializedPtf = serialize();
+    }
+
+    @Benchmark
+    public byte[] writeCheckpoint() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PortfolioCheckpoint.write(ptf, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Portfolio readCheckpoint() {
+        return PortfolioCheckpoint.read(new ByteArrayInputStream(checkpoint));
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(ptf);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Portfolio deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(serializedPtf))) {
+            return (Portfolio) objectIn.readObject();
+        }
+    }
+}
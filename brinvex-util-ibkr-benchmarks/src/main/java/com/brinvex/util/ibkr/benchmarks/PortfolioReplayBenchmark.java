@@ -0,0 +1,85 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import com.brinvex.util.ibkr.api.model.Portfolio;
+import com.brinvex.util.ibkr.api.model.Transaction;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.impl.PortfolioManager;
+import com.brinvex.util.ibkr.impl.TransactionMapper;
+import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the mapped transactions of a generated statement of {@code years} years to a new portfolio
+ * one by one with {@link PortfolioManager#applyTransaction} and as one batch with {@link PortfolioManager#applyTransactions},
+ * in the order used by {@code IbkrServiceImpl}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortfolioReplayBenchmark {
+
+    @Param({"1", "5"})
+    private int years;
+
+    private final PortfolioManager ptfManager = new PortfolioManager();
+
+    private FlexStatement activities;
+
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        LocalDate fromDate = LocalDate.of(2020, 1, 1);
+        LocalDate toDate = fromDate.plusYears(years).minusDays(1);
+        activities = new FlexStatementXmlParser().parseActivities(
+                new FlexStatementGenerator(1).generateActivityStatement("U1", fromDate, toDate));
+        TransactionMapper transactionMapper = new TransactionMapper();
+        transactions = new ArrayList<>();
+        transactions.addAll(transactionMapper.mapCorporateAction(Set.of(), activities.getCorporateActions()));
+        transactions.addAll(transactionMapper.mapCashTransactions(Set.of(), activities.getCashTransactions()));
+        transactions.addAll(transactionMapper.mapTrades(Set.of(), activities.getTrades()));
+        transactions.sort((t1, t2) -> {
+            if (t1.getDate() instanceof ZonedDateTime zdt1 && t2.getDate() instanceof ZonedDateTime zdt2) {
+                return zdt1.compareTo(zdt2);
+            }
+            return t1.getId().compareTo(t2.getId());
+        });
+    }
+
+    @Benchmark
+    public Portfolio applyTransactions() {
+        Portfolio ptf = ptfManager.initPortfolio(activities.getAccountId(), activities.getFromDate(), activities.getToDate());
+        for (Transaction transaction : transactions) {
+            ptf.getTransactions().add(transaction);
+            ptfManager.applyTransaction(ptf, transaction);
+        }
+        return ptf;
+    }
+
+    @Benchmark
+    public Portfolio applyTransactionsInBatch() {
+        Portfolio ptf = ptfManager.initPortfolio(activities.getAccountId(), activities.getFromDate(), activities.getToDate());
+        ptfManager.applyTransactions(ptf, transactions);
+        return ptf;
+    }
+}
@@ -0,0 +1,73 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import com.brinvex.util.ibkr.api.model.Transaction;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.impl.TransactionMapper;
+import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps the raw records of a generated statement of {@code years} years to transactions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionMapperBenchmark {
+
+    @Param({"1", "5"})
+    private int years;
+
+    private final TransactionMapper transactionMapper = new TransactionMapper();
+
+    private FlexStatement activities;
+
+    private FlexStatement tradeConfirms;
+
+    @Setup
+    public void setUp() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        FlexStatementGenerator generator = new FlexStatementGenerator(1);
+        LocalDate fromDate = LocalDate.of(2020, 1, 1);
+        LocalDate toDate = fromDate.plusYears(years).minusDays(1);
+        activities = parser.parseActivities(generator.generateActivityStatement("U1", fromDate, toDate));
+        tradeConfirms = parser.parseActivities(generator.generateTradeConfirmStatement("U1", fromDate, toDate));
+    }
+
+    @Benchmark
+    public List<Transaction> mapCashTransactions() {
+        return transactionMapper.mapCashTransactions(Set.of(), activities.getCashTransactions());
+    }
+
+    @Benchmark
+    public List<Transaction> mapTrades() {
+        return transactionMapper.mapTrades(Set.of(), activities.getTrades());
+    }
+
+    @Benchmark
+    public List<Transaction> mapTradeConfirms() {
+        return transactionMapper.mapTradeConfirms(Set.of(), tradeConfirms.getTradeConfirms());
+    }
+
+    @Benchmark
+    public List<Transaction> mapCorporateAction() {
+        return transactionMapper.mapCorporateAction(Set.of(), activities.getCorporateActions());
+    }
+}
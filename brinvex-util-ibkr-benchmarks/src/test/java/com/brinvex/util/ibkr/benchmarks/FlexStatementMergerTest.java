@@ -0,0 +1,134 @@
+package com.brinvex.util.ibkr.benchmarks;
+
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CashTransactionType;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.benchmarks.FlexStatementGenerator.StatementPeriod;
+import com.brinvex.util.ibkr.impl.FlexStatementMerger;
+import com.brinvex.util.ibkr.impl.TranId;
+import com.brinvex.util.ibkr.impl.TranIdGenerator;
+import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Merges generated statements, which overlap each other, and compares the result with a statement of the whole period.
+ */
+class FlexStatementMergerTest {
+
+    private static final LocalDate FROM_DATE = LocalDate.of(2020, 1, 1);
+
+    private static final LocalDate TO_DATE = LocalDate.of(2021, 12, 31);
+
+    private static final int OVERLAP_DAYS = 14;
+
+    private final FlexStatementGenerator generator = new FlexStatementGenerator(1);
+
+    private final FlexStatementXmlParser parser = new FlexStatementXmlParser();
+
+    @Test
+    void mergeOverlappingStatements() {
+        List<FlexStatement> statements = parseOverlappingStatements();
+        FlexStatement wholeStatement = parser.parseActivities(generator.generateActivityStatement("U1", FROM_DATE, TO_DATE));
+
+        // The merger sorts the statements by period itself
+        List<FlexStatement> reversedStatements = new ArrayList<>(statements);
+        Collections.reverse(reversedStatements);
+        FlexStatement mergedStatement = FlexStatementMerger.merge(reversedStatements.stream());
+
+        assertEquals(FlexStatementMerger.merge(Stream.of(wholeStatement)).toString(), mergedStatement.toString());
+        assertEquals(FROM_DATE, mergedStatement.getFromDate());
+        assertEquals(TO_DATE, mergedStatement.getToDate());
+
+        // The overlapping days are in two statements, their duplicate records are dropped
+        assertEquals(wholeStatement.getCashTransactions().size(), mergedStatement.getCashTransactions().size());
+        assertTrue(statements.stream().mapToInt(s -> s.getCashTransactions().size()).sum() > mergedStatement.getCashTransactions().size());
+        assertEquals(wholeStatement.getTrades().size(), mergedStatement.getTrades().size());
+        assertTrue(statements.stream().mapToInt(s -> s.getTrades().size()).sum() > mergedStatement.getTrades().size());
+    }
+
+    @Test
+    void mergeOutOfOrderWithholdingTaxReversals() {
+        List<FlexStatement> statements = parseOverlappingStatements();
+        FlexStatement wholeStatement = parser.parseActivities(generator.generateActivityStatement("U1", FROM_DATE, TO_DATE));
+
+        // A reversal is reported later than the dividend, but its ID carries the date-time of the dividend
+        List<CashTransaction> reversals = wholeStatement.getCashTransactions()
+                .stream()
+                .filter(t -> t.getType() == CashTransactionType.Withholding_Tax && t.getAmount().signum() > 0)
+                .toList();
+        assertFalse(reversals.isEmpty());
+        List<TranId> wholeTranIds = wholeStatement.getCashTransactions().stream().map(TranIdGenerator::getTranId).toList();
+        assertNotEquals(wholeTranIds.stream().sorted().toList(), wholeTranIds);
+
+        FlexStatement mergedStatement = FlexStatementMerger.merge(statements.stream());
+        List<TranId> mergedTranIds = mergedStatement.getCashTransactions().stream().map(TranIdGenerator::getTranId).toList();
+        assertEquals(wholeTranIds.stream().sorted().toList(), mergedTranIds);
+        Set<String> mergedReversalIds = mergedStatement.getCashTransactions()
+                .stream()
+                .map(CashTransaction::getTransactionID)
+                .collect(toSet());
+        for (CashTransaction reversal : reversals) {
+            assertTrue(mergedReversalIds.contains(reversal.getTransactionID()), reversal::toString);
+        }
+    }
+
+    @Test
+    void keepRecordOfFirstStatement() {
+        List<FlexStatement> statements = parseOverlappingStatements();
+        FlexStatement firstStatement = statements.get(0);
+        FlexStatement secondStatement = statements.get(1);
+        Set<String> firstTranIds = firstStatement.getCashTransactions()
+                .stream()
+                .map(CashTransaction::getTransactionID)
+                .collect(toSet());
+        CashTransaction secondTran = secondStatement.getCashTransactions()
+                .stream()
+                .filter(t -> firstTranIds.contains(t.getTransactionID()))
+                .findFirst()
+                .orElseThrow();
+        CashTransaction firstTran = firstStatement.getCashTransactions()
+                .stream()
+                .filter(t -> t.getTransactionID().equals(secondTran.getTransactionID()))
+                .findFirst()
+                .orElseThrow();
+        secondTran.setDescription("Changed in the second statement");
+
+        FlexStatement mergedStatement = FlexStatementMerger.merge(Stream.of(secondStatement, firstStatement));
+
+        List<CashTransaction> mergedTrans = mergedStatement.getCashTransactions()
+                .stream()
+                .filter(t -> t.getTransactionID().equals(firstTran.getTransactionID()))
+                .toList();
+        assertEquals(1, mergedTrans.size());
+        assertSame(firstTran, mergedTrans.get(0));
+    }
+
+    /**
+     * Returns quarterly statements, each but the first one starting two weeks before its quarter.
+     * The generator leaves out the withholding tax reversals of dividends paid before a statement starts,
+     * so the statements are not split with an overlap, which would move their starts away from the quarters,
+     * but each is extended over the end of the previous one.
+     */
+    private List<FlexStatement> parseOverlappingStatements() {
+        return FlexStatementGenerator.splitPeriod(FROM_DATE, TO_DATE, Period.ofMonths(3), 0)
+                .stream()
+                .map(p -> p.fromDate().equals(FROM_DATE) ? p : new StatementPeriod(p.fromDate().minusDays(OVERLAP_DAYS), p.toDate()))
+                .map(p -> parser.parseActivities(generator.generateActivityStatement("U1", p.fromDate(), p.toDate())))
+                .toList();
+    }
+}
@@ -0,0 +1,271 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.service.exception.IbkrServiceException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static com.brinvex.util.ibkr.impl.BinaryWriter.BIG_DECIMAL;
+import static com.brinvex.util.ibkr.impl.BinaryWriter.COMPACT_DECIMAL;
+import static com.brinvex.util.ibkr.impl.BinaryWriter.LOCAL_DATE;
+import static com.brinvex.util.ibkr.impl.BinaryWriter.LOCAL_DATE_TIME;
+import static com.brinvex.util.ibkr.impl.BinaryWriter.NULL;
+import static com.brinvex.util.ibkr.impl.BinaryWriter.ZONED_DATE_TIME;
+import static java.lang.String.format;
+
+/**
+ * Reads the format written by {@link BinaryWriter}.
+ * Any unexpected input, including a checksum mismatch and truncated data,
+ * is reported as an {@link IbkrServiceException} naming the format.
+ */
+class BinaryReader {
+
+    private final byte[] buf;
+
+    private final int limit;
+
+    private final String formatName;
+
+    private int pos;
+
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Checks the checksum at the end of the bytes.
+     *
+     * @param formatName the name of the read data used in the error messages, e.g. "portfolio checkpoint"
+     */
+    BinaryReader(byte[] bytes, String formatName) {
+        this.formatName = formatName;
+        int length = bytes.length - Integer.BYTES;
+        if (length < 0) {
+            throw new IbkrServiceException(format("Truncated %s", formatName));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(length)) {
+            throw new IbkrServiceException(format("Corrupted %s, checksum mismatch", formatName));
+        }
+        this.buf = bytes;
+        this.limit = length;
+    }
+
+    /**
+     * Reads the magic number and the version written by {@link BinaryWriter#writeHeader},
+     * rejects other data and other versions.
+     */
+    void readHeader(int magic, int version) {
+        if (readInt() != magic) {
+            throw new IbkrServiceException(format("Not a %s", formatName));
+        }
+        int readVersion = readVarInt();
+        if (readVersion != version) {
+            throw new IbkrServiceException(format("Unsupported %s version: %s, expected: %s", formatName, readVersion, version));
+        }
+    }
+
+    /**
+     * Fails if there are unread bytes before the checksum.
+     */
+    void checkEnd() {
+        if (pos != limit) {
+            throw new IbkrServiceException(format("Corrupted %s, unexpected trailing bytes: %s", formatName, limit - pos));
+        }
+    }
+
+    /**
+     * Returns an exception reporting corrupted data with the given detail.
+     */
+    IbkrServiceException corrupted(String detail, Object value) {
+        return new IbkrServiceException(format("Corrupted %s, %s: %s", formatName, detail, value));
+    }
+
+    String readString() {
+        int code = readVarInt();
+        if (code == 0) {
+            return null;
+        }
+        if (code == 1) {
+            int length = readSize();
+            checkAvailable(length);
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            strings.add(s);
+            return s;
+        }
+        int index = code - 2;
+        if (index < 0 || index >= strings.size()) {
+            throw corrupted("string index", index);
+        }
+        return strings.get(index);
+    }
+
+    <E extends Enum<E>> E readEnum(Class<E> enumType) {
+        String name = readString();
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(enumType, name);
+        } catch (IllegalArgumentException e) {
+            throw new IbkrServiceException(format("Unexpected %s in %s: %s", enumType.getSimpleName(), formatName, name), e);
+        }
+    }
+
+    LocalDate readDate() {
+        int tag = readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case LOCAL_DATE -> readLocalDate();
+            default -> throw corrupted("date tag", tag);
+        };
+    }
+
+    LocalDateTime readDateTime() {
+        int tag = readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case LOCAL_DATE_TIME -> readLocalDateTime();
+            default -> throw corrupted("date tag", tag);
+        };
+    }
+
+    ZonedDateTime readZonedDateTime() {
+        int tag = readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case ZONED_DATE_TIME -> readZonedDateTimeValue();
+            default -> throw corrupted("date tag", tag);
+        };
+    }
+
+    /**
+     * Reads a null, a {@link LocalDate} or a {@link ZonedDateTime}.
+     */
+    Temporal readTemporal() {
+        int tag = readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case LOCAL_DATE -> readLocalDate();
+            case ZONED_DATE_TIME -> readZonedDateTimeValue();
+            default -> throw corrupted("date tag", tag);
+        };
+    }
+
+    private LocalDate readLocalDate() {
+        long epochDay = readVarLong();
+        try {
+            return LocalDate.ofEpochDay(epochDay);
+        } catch (DateTimeException e) {
+            throw new IbkrServiceException(format("Corrupted %s, epoch day: %s", formatName, epochDay), e);
+        }
+    }
+
+    private LocalDateTime readLocalDateTime() {
+        LocalDate date = readLocalDate();
+        long nanoOfDay = readVarLong();
+        try {
+            return LocalDateTime.of(date, LocalTime.ofNanoOfDay(nanoOfDay));
+        } catch (DateTimeException e) {
+            throw new IbkrServiceException(format("Corrupted %s, nano of day: %s", formatName, nanoOfDay), e);
+        }
+    }
+
+    private ZonedDateTime readZonedDateTimeValue() {
+        LocalDateTime dateTime = readLocalDateTime();
+        int offsetSeconds = readVarInt();
+        String zoneId = readString();
+        if (zoneId == null) {
+            throw corrupted("zone", null);
+        }
+        try {
+            return ZonedDateTime.ofStrict(dateTime, ZoneOffset.ofTotalSeconds(offsetSeconds), ZoneId.of(zoneId));
+        } catch (DateTimeException e) {
+            throw new IbkrServiceException(format("Corrupted %s, zoned date-time: %s %s %s", formatName, dateTime, offsetSeconds, zoneId), e);
+        }
+    }
+
+    BigDecimal readDecimal() {
+        int tag = readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case COMPACT_DECIMAL -> {
+                int scale = readVarInt();
+                yield BigDecimal.valueOf(readVarLong(), scale);
+            }
+            case BIG_DECIMAL -> {
+                int scale = readVarInt();
+                int length = readSize();
+                checkAvailable(length);
+                if (length == 0) {
+                    throw corrupted("decimal length", length);
+                }
+                byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+                pos += length;
+                yield new BigDecimal(new BigInteger(bytes), scale);
+            }
+            default -> throw corrupted("decimal tag", tag);
+        };
+    }
+
+    int readInt() {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    int readByte() {
+        checkAvailable(1);
+        return buf[pos++] & 0xFF;
+    }
+
+    void checkAvailable(int length) {
+        if (length > limit - pos) {
+            throw new IbkrServiceException(format("Truncated %s", formatName));
+        }
+    }
+
+    /**
+     * Reads a non-negative count, which is checked not to exceed the number of remaining bytes,
+     * as every counted item takes at least one byte.
+     */
+    int readSize() {
+        int size = readVarInt();
+        if (size < 0 || size > limit - pos) {
+            throw corrupted("size", size);
+        }
+        return size;
+    }
+
+    int readVarInt() {
+        long value = readVarLong();
+        if (value != (int) value) {
+            throw corrupted("int", value);
+        }
+        return (int) value;
+    }
+
+    long readVarLong() {
+        long v = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IbkrServiceException(format("Corrupted %s, variable-length number too long", formatName));
+    }
+}
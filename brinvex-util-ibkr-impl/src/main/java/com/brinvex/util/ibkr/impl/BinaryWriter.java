@@ -0,0 +1,182 @@
+package com.brinvex.util.ibkr.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+
+/**
+ * Writes the compact binary format read by {@link BinaryReader} into a byte array which grows as needed.
+ * <p>
+ * Numbers are written as zigzag encoded variable-length integers, a decimal as its scale and its unscaled value,
+ * and each distinct string, zone and enum name is written once and then referred to by its index.
+ * Enum constants are written by name, so that adding a constant keeps the written data readable.
+ * The data ends with a CRC32 checksum of the preceding bytes.
+ */
+class BinaryWriter {
+
+    static final int NULL = 0;
+    static final int LOCAL_DATE = 1;
+    static final int ZONED_DATE_TIME = 2;
+    static final int LOCAL_DATE_TIME = 3;
+
+    static final int COMPACT_DECIMAL = 1;
+    static final int BIG_DECIMAL = 2;
+
+    private byte[] buf = new byte[1 << 16];
+
+    private int size;
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+    /**
+     * Writes the magic number identifying the format and the format version checked by {@link BinaryReader#readHeader}.
+     */
+    void writeHeader(int magic, int version) {
+        writeInt(magic);
+        writeVarInt(version);
+    }
+
+    /**
+     * Returns the written bytes followed by their CRC32 checksum.
+     */
+    byte[] toByteArrayWithChecksum() {
+        CRC32 crc = new CRC32();
+        crc.update(buf, 0, size);
+        writeInt((int) crc.getValue());
+        return Arrays.copyOf(buf, size);
+    }
+
+    /**
+     * Writes 0 for null, 1 followed by the string for a new string, otherwise the index of the string plus 2.
+     */
+    void writeString(String s) {
+        if (s == null) {
+            writeVarInt(0);
+            return;
+        }
+        Integer index = stringIndexes.putIfAbsent(s, stringIndexes.size());
+        if (index != null) {
+            writeVarInt(index + 2);
+            return;
+        }
+        writeVarInt(1);
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+    }
+
+    void writeEnum(Enum<?> e) {
+        writeString(e == null ? null : e.name());
+    }
+
+    void writeDate(LocalDate date) {
+        if (date == null) {
+            writeByte(NULL);
+        } else {
+            writeByte(LOCAL_DATE);
+            writeVarLong(date.toEpochDay());
+        }
+    }
+
+    void writeDateTime(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            writeByte(NULL);
+        } else {
+            writeByte(LOCAL_DATE_TIME);
+            writeVarLong(dateTime.toLocalDate().toEpochDay());
+            writeVarLong(dateTime.toLocalTime().toNanoOfDay());
+        }
+    }
+
+    void writeZonedDateTime(ZonedDateTime zdt) {
+        if (zdt == null) {
+            writeByte(NULL);
+        } else {
+            writeByte(ZONED_DATE_TIME);
+            writeVarLong(zdt.toLocalDate().toEpochDay());
+            writeVarLong(zdt.toLocalTime().toNanoOfDay());
+            writeVarInt(zdt.getOffset().getTotalSeconds());
+            writeString(zdt.getZone().getId());
+        }
+    }
+
+    /**
+     * Writes a null, a {@link LocalDate} or a {@link ZonedDateTime}.
+     */
+    void writeTemporal(Temporal temporal) {
+        if (temporal == null || temporal instanceof LocalDate) {
+            writeDate((LocalDate) temporal);
+        } else if (temporal instanceof ZonedDateTime zdt) {
+            writeZonedDateTime(zdt);
+        } else {
+            throw new IllegalArgumentException(format("Unexpected date: %s", temporal));
+        }
+    }
+
+    void writeDecimal(BigDecimal decimal) {
+        if (decimal == null) {
+            writeByte(NULL);
+            return;
+        }
+        BigInteger unscaledValue = decimal.unscaledValue();
+        if (unscaledValue.bitLength() < Long.SIZE) {
+            writeByte(COMPACT_DECIMAL);
+            writeVarInt(decimal.scale());
+            writeVarLong(unscaledValue.longValue());
+        } else {
+            writeByte(BIG_DECIMAL);
+            writeVarInt(decimal.scale());
+            byte[] bytes = unscaledValue.toByteArray();
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+    }
+
+    void writeInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    void writeByte(int b) {
+        if (size == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        buf[size++] = (byte) b;
+    }
+
+    void writeBytes(byte[] bytes) {
+        if (size + bytes.length > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + bytes.length));
+        }
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    void writeVarInt(int value) {
+        writeVarLong(value);
+    }
+
+    /**
+     * Writes the zigzag encoded value in groups of 7 bits, the lowest group first.
+     */
+    void writeVarLong(long value) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        writeByte((int) v);
+    }
+}
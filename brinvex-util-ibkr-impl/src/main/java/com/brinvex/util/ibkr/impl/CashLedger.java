@@ -0,0 +1,139 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.Currency;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.math.BigDecimal.ZERO;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Running cash balance per currency at the end of each date with a cash change.
+ * <p>
+ * Each currency keeps two parallel arrays sorted by date: the epoch days and the balances at the end of those days,
+ * so that a balance as of any date is found by a binary search.
+ * Changes are expected mostly in date order, which only appends to the arrays or updates the last balance.
+ * A change dated before the last date is inserted and added to all later balances.
+ */
+public class CashLedger {
+
+    private static class Column {
+
+        private int size;
+
+        private int[] epochDays = new int[16];
+
+        private BigDecimal[] balances = new BigDecimal[16];
+
+        void add(int epochDay, BigDecimal amount) {
+            int i = Arrays.binarySearch(epochDays, 0, size, epochDay);
+            if (i < 0) {
+                i = -i - 1;
+                insert(i, epochDay, i == 0 ? ZERO : balances[i - 1]);
+            }
+            for (; i < size; i++) {
+                balances[i] = balances[i].add(amount);
+            }
+        }
+
+        private void insert(int index, int epochDay, BigDecimal balance) {
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                balances = Arrays.copyOf(balances, size * 2);
+            }
+            System.arraycopy(epochDays, index, epochDays, index + 1, size - index);
+            System.arraycopy(balances, index, balances, index + 1, size - index);
+            epochDays[index] = epochDay;
+            balances[index] = balance;
+            size++;
+        }
+
+        /**
+         * Returns the index of the last date not after the given epoch day or -1 if there is none.
+         */
+        int floorIndex(int epochDay) {
+            int i = Arrays.binarySearch(epochDays, 0, size, epochDay);
+            return i >= 0 ? i : -i - 2;
+        }
+    }
+
+    private final Map<Currency, Column> columns = new EnumMap<>(Currency.class);
+
+    /**
+     * Adds the amount to the balance of the currency at the end of the date and of all later dates.
+     */
+    public void add(Currency ccy, LocalDate date, BigDecimal amount) {
+        requireNonNull(ccy);
+        requireNonNull(amount);
+        columns.computeIfAbsent(ccy, k -> new Column()).add(toEpochDay(date), amount);
+    }
+
+    public Set<Currency> getCurrencies() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Returns the balance of the currency at the end of the given date, zero if there was no change up to it.
+     */
+    public BigDecimal balanceAsOf(Currency ccy, LocalDate date) {
+        requireNonNull(ccy);
+        Column column = columns.get(ccy);
+        if (column == null) {
+            return ZERO;
+        }
+        int i = column.floorIndex(toEpochDay(date));
+        return i < 0 ? ZERO : column.balances[i];
+    }
+
+    /**
+     * Returns the balances of all currencies at the end of the given date,
+     * the currencies without a change up to it are left out.
+     */
+    public Map<Currency, BigDecimal> balancesAsOf(LocalDate date) {
+        int epochDay = toEpochDay(date);
+        Map<Currency, BigDecimal> result = new EnumMap<>(Currency.class);
+        columns.forEach((ccy, column) -> {
+            int i = column.floorIndex(epochDay);
+            if (i >= 0) {
+                result.put(ccy, column.balances[i]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the balances of the currency at the end of each date between the given dates inclusive
+     * on which the balance changed.
+     * The balance of a date without a change is the balance of the nearest earlier date,
+     * see {@link #balanceAsOf} for the balance at the start of the range.
+     */
+    public NavigableMap<LocalDate, BigDecimal> getBalances(Currency ccy, LocalDate fromDate, LocalDate toDate) {
+        requireNonNull(ccy);
+        if (fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException(String.format("fromDate must not be after toDate: %s, %s", fromDate, toDate));
+        }
+        NavigableMap<LocalDate, BigDecimal> result = new TreeMap<>();
+        Column column = columns.get(ccy);
+        if (column == null) {
+            return result;
+        }
+        int toIndex = column.floorIndex(toEpochDay(toDate));
+        int fromEpochDay = toEpochDay(fromDate);
+        for (int i = column.floorIndex(fromEpochDay - 1) + 1; i <= toIndex; i++) {
+            result.put(LocalDate.ofEpochDay(column.epochDays[i]), column.balances[i]);
+        }
+        return result;
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+}
@@ -0,0 +1,363 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.AssetCategory;
+import com.brinvex.util.ibkr.api.model.AssetSubCategory;
+import com.brinvex.util.ibkr.api.model.Currency;
+import com.brinvex.util.ibkr.api.model.raw.BuySell;
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CashTransactionType;
+import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
+import com.brinvex.util.ibkr.api.model.raw.CorporateActionType;
+import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatementType;
+import com.brinvex.util.ibkr.api.model.raw.SecurityIDType;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
+import com.brinvex.util.ibkr.api.model.raw.TradeType;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Versioned binary encoding of a raw {@link FlexStatement} with all its records,
+ * written field by field in the format of {@link BinaryWriter}.
+ * A change of the raw model or of the field order needs a new {@link #VERSION},
+ * data of another version is rejected.
+ */
+class FlexStatementCodec {
+
+    private static final int MAGIC = 0x42584653;
+
+    private static final int VERSION = 1;
+
+    private static final String FORMAT_NAME = "stored statement";
+
+    private FlexStatementCodec() {
+    }
+
+    static byte[] write(FlexStatement flexStatement) {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeHeader(MAGIC, VERSION);
+        writer.writeString(flexStatement.getAccountId());
+        writer.writeDate(flexStatement.getFromDate());
+        writer.writeDate(flexStatement.getToDate());
+        writer.writeZonedDateTime(flexStatement.getWhenGenerated());
+        writer.writeEnum(flexStatement.getType());
+        writeList(writer, flexStatement.getCashTransactions(), FlexStatementCodec::writeCashTransaction);
+        writeList(writer, flexStatement.getTrades(), FlexStatementCodec::writeTrade);
+        writeList(writer, flexStatement.getTradeConfirms(), FlexStatementCodec::writeTradeConfirm);
+        writeList(writer, flexStatement.getEquitySummaries(), FlexStatementCodec::writeEquitySummary);
+        writeList(writer, flexStatement.getCorporateActions(), FlexStatementCodec::writeCorporateAction);
+        return writer.toByteArrayWithChecksum();
+    }
+
+    static FlexStatement read(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(bytes, FORMAT_NAME);
+        reader.readHeader(MAGIC, VERSION);
+        FlexStatement flexStatement = new FlexStatement();
+        flexStatement.setAccountId(reader.readString());
+        flexStatement.setFromDate(reader.readDate());
+        flexStatement.setToDate(reader.readDate());
+        flexStatement.setWhenGenerated(reader.readZonedDateTime());
+        flexStatement.setType(reader.readEnum(FlexStatementType.class));
+        readList(reader, flexStatement.getCashTransactions(), FlexStatementCodec::readCashTransaction);
+        readList(reader, flexStatement.getTrades(), FlexStatementCodec::readTrade);
+        readList(reader, flexStatement.getTradeConfirms(), FlexStatementCodec::readTradeConfirm);
+        readList(reader, flexStatement.getEquitySummaries(), FlexStatementCodec::readEquitySummary);
+        readList(reader, flexStatement.getCorporateActions(), FlexStatementCodec::readCorporateAction);
+        reader.checkEnd();
+        return flexStatement;
+    }
+
+    private static <T> void writeList(BinaryWriter writer, List<T> records, BiConsumer<BinaryWriter, T> recordWriter) {
+        writer.writeVarInt(records.size());
+        for (T record : records) {
+            recordWriter.accept(writer, record);
+        }
+    }
+
+    private static <T> void readList(BinaryReader reader, List<T> records, Function<BinaryReader, T> recordReader) {
+        int size = reader.readSize();
+        for (int i = 0; i < size; i++) {
+            records.add(recordReader.apply(reader));
+        }
+    }
+
+    private static void writeCashTransaction(BinaryWriter writer, CashTransaction cashTran) {
+        writer.writeTemporal(cashTran.getDateTime());
+        writer.writeEnum(cashTran.getCurrency());
+        writer.writeEnum(cashTran.getAssetCategory());
+        writer.writeEnum(cashTran.getAssetSubCategory());
+        writer.writeString(cashTran.getSymbol());
+        writer.writeString(cashTran.getDescription());
+        writer.writeString(cashTran.getSecurityID());
+        writer.writeEnum(cashTran.getSecurityIDType());
+        writer.writeString(cashTran.getFigi());
+        writer.writeString(cashTran.getIsin());
+        writer.writeString(cashTran.getListingExchange());
+        writer.writeString(cashTran.getTradeID());
+        writer.writeDate(cashTran.getReportDate());
+        writer.writeDate(cashTran.getTradeDate());
+        writer.writeDate(cashTran.getSettleDateTarget());
+        writer.writeEnum(cashTran.getType());
+        writer.writeString(cashTran.getExchange());
+        writer.writeDecimal(cashTran.getQuantity());
+        writer.writeDecimal(cashTran.getTradePrice());
+        writer.writeDecimal(cashTran.getTradeMoney());
+        writer.writeDecimal(cashTran.getProceeds());
+        writer.writeDecimal(cashTran.getTaxes());
+        writer.writeDecimal(cashTran.getIbCommission());
+        writer.writeEnum(cashTran.getIbCommissionCurrency());
+        writer.writeDecimal(cashTran.getNetCash());
+        writer.writeDecimal(cashTran.getCost());
+        writer.writeEnum(cashTran.getBuySell());
+        writer.writeString(cashTran.getTransactionID());
+        writer.writeString(cashTran.getIbOrderID());
+        writer.writeDateTime(cashTran.getOrderTime());
+        writer.writeString(cashTran.getActionID());
+        writer.writeDate(cashTran.getSettleDate());
+        writer.writeDecimal(cashTran.getAmount());
+    }
+
+    private static CashTransaction readCashTransaction(BinaryReader reader) {
+        CashTransaction cashTran = new CashTransaction();
+        cashTran.setDateTime(reader.readTemporal());
+        cashTran.setCurrency(reader.readEnum(Currency.class));
+        cashTran.setAssetCategory(reader.readEnum(AssetCategory.class));
+        cashTran.setAssetSubCategory(reader.readEnum(AssetSubCategory.class));
+        cashTran.setSymbol(reader.readString());
+        cashTran.setDescription(reader.readString());
+        cashTran.setSecurityID(reader.readString());
+        cashTran.setSecurityIDType(reader.readEnum(SecurityIDType.class));
+        cashTran.setFigi(reader.readString());
+        cashTran.setIsin(reader.readString());
+        cashTran.setListingExchange(reader.readString());
+        cashTran.setTradeID(reader.readString());
+        cashTran.setReportDate(reader.readDate());
+        cashTran.setTradeDate(reader.readDate());
+        cashTran.setSettleDateTarget(reader.readDate());
+        cashTran.setType(reader.readEnum(CashTransactionType.class));
+        cashTran.setExchange(reader.readString());
+        cashTran.setQuantity(reader.readDecimal());
+        cashTran.setTradePrice(reader.readDecimal());
+        cashTran.setTradeMoney(reader.readDecimal());
+        cashTran.setProceeds(reader.readDecimal());
+        cashTran.setTaxes(reader.readDecimal());
+        cashTran.setIbCommission(reader.readDecimal());
+        cashTran.setIbCommissionCurrency(reader.readEnum(Currency.class));
+        cashTran.setNetCash(reader.readDecimal());
+        cashTran.setCost(reader.readDecimal());
+        cashTran.setBuySell(reader.readEnum(BuySell.class));
+        cashTran.setTransactionID(reader.readString());
+        cashTran.setIbOrderID(reader.readString());
+        cashTran.setOrderTime(reader.readDateTime());
+        cashTran.setActionID(reader.readString());
+        cashTran.setSettleDate(reader.readDate());
+        cashTran.setAmount(reader.readDecimal());
+        return cashTran;
+    }
+
+    private static void writeTrade(BinaryWriter writer, Trade trade) {
+        writer.writeEnum(trade.getCurrency());
+        writer.writeEnum(trade.getAssetCategory());
+        writer.writeEnum(trade.getAssetSubCategory());
+        writer.writeString(trade.getSymbol());
+        writer.writeString(trade.getDescription());
+        writer.writeString(trade.getSecurityID());
+        writer.writeEnum(trade.getSecurityIDType());
+        writer.writeString(trade.getFigi());
+        writer.writeString(trade.getIsin());
+        writer.writeString(trade.getListingExchange());
+        writer.writeString(trade.getTradeID());
+        writer.writeDate(trade.getReportDate());
+        writer.writeZonedDateTime(trade.getDateTime());
+        writer.writeDate(trade.getTradeDate());
+        writer.writeDate(trade.getSettleDateTarget());
+        writer.writeEnum(trade.getTransactionType());
+        writer.writeString(trade.getExchange());
+        writer.writeDecimal(trade.getQuantity());
+        writer.writeDecimal(trade.getTradePrice());
+        writer.writeDecimal(trade.getTradeMoney());
+        writer.writeDecimal(trade.getProceeds());
+        writer.writeDecimal(trade.getTaxes());
+        writer.writeDecimal(trade.getIbCommission());
+        writer.writeEnum(trade.getIbCommissionCurrency());
+        writer.writeDecimal(trade.getNetCash());
+        writer.writeDecimal(trade.getCost());
+        writer.writeEnum(trade.getBuySell());
+        writer.writeString(trade.getTransactionID());
+        writer.writeString(trade.getIbOrderID());
+        writer.writeZonedDateTime(trade.getOrderTime());
+    }
+
+    private static Trade readTrade(BinaryReader reader) {
+        Trade trade = new Trade();
+        trade.setCurrency(reader.readEnum(Currency.class));
+        trade.setAssetCategory(reader.readEnum(AssetCategory.class));
+        trade.setAssetSubCategory(reader.readEnum(AssetSubCategory.class));
+        trade.setSymbol(reader.readString());
+        trade.setDescription(reader.readString());
+        trade.setSecurityID(reader.readString());
+        trade.setSecurityIDType(reader.readEnum(SecurityIDType.class));
+        trade.setFigi(reader.readString());
+        trade.setIsin(reader.readString());
+        trade.setListingExchange(reader.readString());
+        trade.setTradeID(reader.readString());
+        trade.setReportDate(reader.readDate());
+        trade.setDateTime(reader.readZonedDateTime());
+        trade.setTradeDate(reader.readDate());
+        trade.setSettleDateTarget(reader.readDate());
+        trade.setTransactionType(reader.readEnum(TradeType.class));
+        trade.setExchange(reader.readString());
+        trade.setQuantity(reader.readDecimal());
+        trade.setTradePrice(reader.readDecimal());
+        trade.setTradeMoney(reader.readDecimal());
+        trade.setProceeds(reader.readDecimal());
+        trade.setTaxes(reader.readDecimal());
+        trade.setIbCommission(reader.readDecimal());
+        trade.setIbCommissionCurrency(reader.readEnum(Currency.class));
+        trade.setNetCash(reader.readDecimal());
+        trade.setCost(reader.readDecimal());
+        trade.setBuySell(reader.readEnum(BuySell.class));
+        trade.setTransactionID(reader.readString());
+        trade.setIbOrderID(reader.readString());
+        trade.setOrderTime(reader.readZonedDateTime());
+        return trade;
+    }
+
+    private static void writeTradeConfirm(BinaryWriter writer, TradeConfirm tradeConfirm) {
+        writer.writeEnum(tradeConfirm.getCurrency());
+        writer.writeEnum(tradeConfirm.getAssetCategory());
+        writer.writeEnum(tradeConfirm.getAssetSubCategory());
+        writer.writeString(tradeConfirm.getSymbol());
+        writer.writeString(tradeConfirm.getDescription());
+        writer.writeString(tradeConfirm.getSecurityID());
+        writer.writeEnum(tradeConfirm.getSecurityIDType());
+        writer.writeString(tradeConfirm.getFigi());
+        writer.writeString(tradeConfirm.getIsin());
+        writer.writeString(tradeConfirm.getListingExchange());
+        writer.writeString(tradeConfirm.getTradeID());
+        writer.writeDate(tradeConfirm.getReportDate());
+        writer.writeZonedDateTime(tradeConfirm.getDateTime());
+        writer.writeDate(tradeConfirm.getTradeDate());
+        writer.writeDate(tradeConfirm.getSettleDate());
+        writer.writeEnum(tradeConfirm.getTransactionType());
+        writer.writeString(tradeConfirm.getExchange());
+        writer.writeDecimal(tradeConfirm.getQuantity());
+        writer.writeDecimal(tradeConfirm.getPrice());
+        writer.writeDecimal(tradeConfirm.getAmount());
+        writer.writeDecimal(tradeConfirm.getProceeds());
+        writer.writeDecimal(tradeConfirm.getNetCash());
+        writer.writeDecimal(tradeConfirm.getCommission());
+        writer.writeEnum(tradeConfirm.getCommissionCurrency());
+        writer.writeDecimal(tradeConfirm.getTax());
+        writer.writeEnum(tradeConfirm.getBuySell());
+        writer.writeString(tradeConfirm.getOrderID());
+        writer.writeZonedDateTime(tradeConfirm.getOrderTime());
+    }
+
+    private static TradeConfirm readTradeConfirm(BinaryReader reader) {
+        TradeConfirm tradeConfirm = new TradeConfirm();
+        tradeConfirm.setCurrency(reader.readEnum(Currency.class));
+        tradeConfirm.setAssetCategory(reader.readEnum(AssetCategory.class));
+        tradeConfirm.setAssetSubCategory(reader.readEnum(AssetSubCategory.class));
+        tradeConfirm.setSymbol(reader.readString());
+        tradeConfirm.setDescription(reader.readString());
+        tradeConfirm.setSecurityID(reader.readString());
+        tradeConfirm.setSecurityIDType(reader.readEnum(SecurityIDType.class));
+        tradeConfirm.setFigi(reader.readString());
+        tradeConfirm.setIsin(reader.readString());
+        tradeConfirm.setListingExchange(reader.readString());
+        tradeConfirm.setTradeID(reader.readString());
+        tradeConfirm.setReportDate(reader.readDate());
+        tradeConfirm.setDateTime(reader.readZonedDateTime());
+        tradeConfirm.setTradeDate(reader.readDate());
+        tradeConfirm.setSettleDate(reader.readDate());
+        tradeConfirm.setTransactionType(reader.readEnum(TradeType.class));
+        tradeConfirm.setExchange(reader.readString());
+        tradeConfirm.setQuantity(reader.readDecimal());
+        tradeConfirm.setPrice(reader.readDecimal());
+        tradeConfirm.setAmount(reader.readDecimal());
+        tradeConfirm.setProceeds(reader.readDecimal());
+        tradeConfirm.setNetCash(reader.readDecimal());
+        tradeConfirm.setCommission(reader.readDecimal());
+        tradeConfirm.setCommissionCurrency(reader.readEnum(Currency.class));
+        tradeConfirm.setTax(reader.readDecimal());
+        tradeConfirm.setBuySell(reader.readEnum(BuySell.class));
+        tradeConfirm.setOrderID(reader.readString());
+        tradeConfirm.setOrderTime(reader.readZonedDateTime());
+        return tradeConfirm;
+    }
+
+    private static void writeEquitySummary(BinaryWriter writer, EquitySummary equitySummary) {
+        writer.writeDate(equitySummary.getReportDate());
+        writer.writeEnum(equitySummary.getCurrency());
+        writer.writeDecimal(equitySummary.getCash());
+        writer.writeDecimal(equitySummary.getStock());
+        writer.writeDecimal(equitySummary.getDividendAccruals());
+        writer.writeDecimal(equitySummary.getInterestAccruals());
+        writer.writeDecimal(equitySummary.getTotal());
+    }
+
+    private static EquitySummary readEquitySummary(BinaryReader reader) {
+        EquitySummary equitySummary = new EquitySummary();
+        equitySummary.setReportDate(reader.readDate());
+        equitySummary.setCurrency(reader.readEnum(Currency.class));
+        equitySummary.setCash(reader.readDecimal());
+        equitySummary.setStock(reader.readDecimal());
+        equitySummary.setDividendAccruals(reader.readDecimal());
+        equitySummary.setInterestAccruals(reader.readDecimal());
+        equitySummary.setTotal(reader.readDecimal());
+        return equitySummary;
+    }
+
+    private static void writeCorporateAction(BinaryWriter writer, CorporateAction corpAction) {
+        writer.writeEnum(corpAction.getCurrency());
+        writer.writeEnum(corpAction.getAssetCategory());
+        writer.writeEnum(corpAction.getAssetSubCategory());
+        writer.writeString(corpAction.getSymbol());
+        writer.writeString(corpAction.getDescription());
+        writer.writeString(corpAction.getSecurityID());
+        writer.writeEnum(corpAction.getSecurityIDType());
+        writer.writeString(corpAction.getFigi());
+        writer.writeString(corpAction.getIsin());
+        writer.writeString(corpAction.getListingExchange());
+        writer.writeString(corpAction.getIssuerCountryCode());
+        writer.writeDate(corpAction.getReportDate());
+        writer.writeZonedDateTime(corpAction.getDateTime());
+        writer.writeEnum(corpAction.getType());
+        writer.writeDecimal(corpAction.getQuantity());
+        writer.writeDecimal(corpAction.getAmount());
+        writer.writeDecimal(corpAction.getProceeds());
+        writer.writeDecimal(corpAction.getValue());
+        writer.writeString(corpAction.getTransactionId());
+        writer.writeString(corpAction.getActionID());
+    }
+
+    private static CorporateAction readCorporateAction(BinaryReader reader) {
+        CorporateAction corpAction = new CorporateAction();
+        corpAction.setCurrency(reader.readEnum(Currency.class));
+        corpAction.setAssetCategory(reader.readEnum(AssetCategory.class));
+        corpAction.setAssetSubCategory(reader.readEnum(AssetSubCategory.class));
+        corpAction.setSymbol(reader.readString());
+        corpAction.setDescription(reader.readString());
+        corpAction.setSecurityID(reader.readString());
+        corpAction.setSecurityIDType(reader.readEnum(SecurityIDType.class));
+        corpAction.setFigi(reader.readString());
+        corpAction.setIsin(reader.readString());
+        corpAction.setListingExchange(reader.readString());
+        corpAction.setIssuerCountryCode(reader.readString());
+        corpAction.setReportDate(reader.readDate());
+        corpAction.setDateTime(reader.readZonedDateTime());
+        corpAction.setType(reader.readEnum(CorporateActionType.class));
+        corpAction.setQuantity(reader.readDecimal());
+        corpAction.setAmount(reader.readDecimal());
+        corpAction.setProceeds(reader.readDecimal());
+        corpAction.setValue(reader.readDecimal());
+        corpAction.setTransactionId(reader.readString());
+        corpAction.setActionID(reader.readString());
+        return corpAction;
+    }
+}
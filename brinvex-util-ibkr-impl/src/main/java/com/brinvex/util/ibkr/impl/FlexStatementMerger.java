@@ -0,0 +1,196 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
+import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
+import com.brinvex.util.ibkr.api.service.exception.IbkrServiceException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.Comparator.comparing;
+
+/**
+ * Merges the statements of one account into one statement.
+ * <p>
+ * The statements are taken in period order, each one is checked against the periods taken so far
+ * and the records of each section are kept as a run sorted by {@link TranId}s.
+ * The runs are then merged by a k-way merge, so that the records come out in ID order
+ * and duplicates meet each other; a record is dropped if it has the same ID as the record before it,
+ * which keeps the record of the statement taken first.
+ * Each ID is computed once; the runs are merged with a heap of one cursor per run
+ * instead of inserting every record into a sorted map.
+ */
+public class FlexStatementMerger {
+
+    private final List<Run<TranId, CashTransaction>> cashTranRuns = new ArrayList<>();
+    private final List<Run<TranId, Trade>> tradeRuns = new ArrayList<>();
+    private final List<Run<TranId, TradeConfirm>> tradeConfirmRuns = new ArrayList<>();
+    private final List<Run<TranId, CorporateAction>> corpActionRuns = new ArrayList<>();
+    private final List<Run<LocalDate, EquitySummary>> equitySummaryRuns = new ArrayList<>();
+
+    private FlexStatement result;
+
+    /**
+     * Sorts the statements by period and merges them.
+     */
+    public static FlexStatement merge(Stream<FlexStatement> flexStatements) {
+        FlexStatementMerger merger = new FlexStatementMerger();
+        flexStatements
+                .sorted(comparing(FlexStatement::getFromDate).thenComparing(FlexStatement::getToDate))
+                .forEachOrdered(merger::add);
+        return merger.finish();
+    }
+
+    /**
+     * Takes the next statement, the statements must be taken in the order of their fromDate and toDate.
+     */
+    public void add(FlexStatement flexStatement) {
+        LocalDate fromDate = flexStatement.getFromDate();
+        LocalDate toDate = flexStatement.getToDate();
+        String accountId = flexStatement.getAccountId();
+
+        if (result == null) {
+            result = new FlexStatement();
+            result.setAccountId(accountId);
+            result.setFromDate(fromDate);
+            result.setToDate(toDate);
+        } else {
+            String accountId0 = result.getAccountId();
+            if (!accountId0.equals(accountId)) {
+                throw new IbkrServiceException(format("Unexpected multiple accounts: %s, %s",
+                        accountId0,
+                        accountId
+                ));
+            }
+            if (fromDate.isBefore(result.getFromDate())) {
+                throw new IllegalArgumentException(format("Statements must be added in period order: %s, %s",
+                        result.getFromDate(), fromDate));
+            }
+            StatementPeriodIndex.Gap gap = StatementPeriodIndex.findGap(accountId0, result.getToDate(), flexStatement);
+            if (gap != null) {
+                throw gap.toException();
+            }
+            if (toDate.isAfter(result.getToDate())) {
+                result.setToDate(toDate);
+            }
+        }
+
+        addRun(cashTranRuns, flexStatement.getCashTransactions(), TranIdGenerator::getTranId);
+        addRun(tradeRuns, flexStatement.getTrades(), TranIdGenerator::getTranId);
+        addRun(tradeConfirmRuns, flexStatement.getTradeConfirms(), TranIdGenerator::getTranId);
+        addRun(corpActionRuns, flexStatement.getCorporateActions(), TranIdGenerator::getTranId);
+        addRun(equitySummaryRuns, flexStatement.getEquitySummaries(), EquitySummary::getReportDate);
+    }
+
+    /**
+     * Returns the merged statement, at least one statement must have been taken.
+     */
+    public FlexStatement finish() {
+        if (result == null) {
+            throw new IllegalArgumentException("Expected non-empty stream of statements");
+        }
+        mergeRuns(cashTranRuns, result.getCashTransactions());
+        mergeRuns(tradeRuns, result.getTrades());
+        mergeRuns(tradeConfirmRuns, result.getTradeConfirms());
+        mergeRuns(corpActionRuns, result.getCorporateActions());
+        mergeRuns(equitySummaryRuns, result.getEquitySummaries());
+        return result;
+    }
+
+    /**
+     * A section of one statement sorted by the record keys.
+     */
+    private record Run<K, T>(List<K> keys, List<T> records) {
+    }
+
+    /**
+     * Adds the records sorted by their keys, records with equal keys keep their order.
+     * Statements are mostly sorted already, then the records are added as they are.
+     */
+    private static <K extends Comparable<? super K>, T> void addRun(
+            List<Run<K, T>> runs,
+            List<T> records,
+            Function<T, K> keyFunction
+    ) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<K> keys = new ArrayList<>(records.size());
+        boolean sorted = true;
+        for (T record : records) {
+            K key = keyFunction.apply(record);
+            if (sorted && !keys.isEmpty() && keys.get(keys.size() - 1).compareTo(key) > 0) {
+                sorted = false;
+            }
+            keys.add(key);
+        }
+        if (sorted) {
+            runs.add(new Run<>(keys, records));
+            return;
+        }
+        Integer[] order = new Integer[records.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, comparing(keys::get));
+        List<K> sortedKeys = new ArrayList<>(order.length);
+        List<T> sortedRecords = new ArrayList<>(order.length);
+        for (Integer i : order) {
+            sortedKeys.add(keys.get(i));
+            sortedRecords.add(records.get(i));
+        }
+        runs.add(new Run<>(sortedKeys, sortedRecords));
+    }
+
+    private static final class RunCursor<K extends Comparable<? super K>, T> {
+
+        private final int runIndex;
+        private final Run<K, T> run;
+        private int position;
+
+        private RunCursor(int runIndex, Run<K, T> run) {
+            this.runIndex = runIndex;
+            this.run = run;
+        }
+
+        private K key() {
+            return run.keys.get(position);
+        }
+    }
+
+    private static <K extends Comparable<? super K>, T> void mergeRuns(List<Run<K, T>> runs, List<T> result) {
+        Comparator<RunCursor<K, T>> cursorComparator = Comparator
+                .<RunCursor<K, T>, K>comparing(RunCursor::key)
+                .thenComparingInt(c -> c.runIndex);
+        PriorityQueue<RunCursor<K, T>> heads = new PriorityQueue<>(Math.max(1, runs.size()), cursorComparator);
+        for (int i = 0; i < runs.size(); i++) {
+            heads.add(new RunCursor<>(i, runs.get(i)));
+        }
+        runs.clear();
+
+        K prevKey = null;
+        while (!heads.isEmpty()) {
+            RunCursor<K, T> cursor = heads.poll();
+            K key = cursor.key();
+            if (prevKey == null || prevKey.compareTo(key) != 0) {
+                result.add(cursor.run.records.get(cursor.position));
+                prevKey = key;
+            }
+            cursor.position++;
+            if (cursor.position < cursor.run.records.size()) {
+                heads.add(cursor);
+            }
+        }
+    }
+}
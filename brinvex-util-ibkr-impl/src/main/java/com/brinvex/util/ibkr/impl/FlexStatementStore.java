@@ -0,0 +1,249 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatementType;
+import com.brinvex.util.ibkr.api.service.exception.IbkrServiceException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.Comparator.comparing;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Local store of the raw records of the statements added so far, so that a new statement
+ * is merged with the stored records instead of parsing all statements again.
+ * <p>
+ * Each account has its own directory with one segment file per added statement.
+ * A segment holds the statement header and the records of the statement which were not stored before,
+ * its file name holds the statement period.
+ * A segment is written in the versioned binary format of {@link FlexStatementCodec},
+ * so a segment written by another version of the format is rejected instead of being misread.
+ * IBKR puts a record into every statement whose period holds the record's report date,
+ * so only the segments whose periods overlap a new statement are read to drop the records already stored,
+ * the records of each section are compared by {@link TranId} and the equity summaries by report date.
+ * <p>
+ * Segments are written to a temporary file which is then moved into place, so a failed write leaves no segment.
+ * The store is not meant to be written by more than one process at a time.
+ */
+public class FlexStatementStore {
+
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("(\\d{8})-(\\d{8})-(\\d+)\\.bin");
+
+    private static final Pattern ACCOUNT_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private static final DateTimeFormatter segmentDf = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private record Segment(Path path, LocalDate fromDate, LocalDate toDate, int sequence) {
+
+        boolean overlaps(LocalDate otherFromDate, LocalDate otherToDate) {
+            return !fromDate.isAfter(otherToDate) && !toDate.isBefore(otherFromDate);
+        }
+
+        boolean covers(LocalDate otherFromDate, LocalDate otherToDate) {
+            return !fromDate.isAfter(otherFromDate) && !toDate.isBefore(otherToDate);
+        }
+    }
+
+    private final Path storeDir;
+
+    public FlexStatementStore(Path storeDir) {
+        this.storeDir = requireNonNull(storeDir);
+    }
+
+    /**
+     * Stores the records of the statement which are not stored yet and returns them with the statement header.
+     * The statement period must be adjacent to or overlap the stored periods of the account,
+     * except for trade confirmation statements.
+     * A statement whose period is covered by one stored statement and which has no new records is not stored.
+     */
+    public FlexStatement add(FlexStatement flexStatement) {
+        String accountId = flexStatement.getAccountId();
+        LocalDate fromDate = flexStatement.getFromDate();
+        LocalDate toDate = flexStatement.getToDate();
+        Path accountDir = getAccountDir(accountId);
+        List<Segment> segments = listSegments(accountDir);
+        checkPeriod(segments, flexStatement);
+
+        // Each section has its own IDs, the same way as when merging statements
+        Set<TranId> storedCashTranIds = new HashSet<>();
+        Set<TranId> storedTradeIds = new HashSet<>();
+        Set<TranId> storedTradeConfirmIds = new HashSet<>();
+        Set<TranId> storedCorpActionIds = new HashSet<>();
+        Set<LocalDate> storedEquitySummaryDates = new HashSet<>();
+        for (Segment segment : segments) {
+            if (segment.overlaps(fromDate, toDate)) {
+                FlexStatement storedStatement = readSegment(segment);
+                addIds(storedCashTranIds, storedStatement.getCashTransactions(), TranIdGenerator::getTranId);
+                addIds(storedTradeIds, storedStatement.getTrades(), TranIdGenerator::getTranId);
+                addIds(storedTradeConfirmIds, storedStatement.getTradeConfirms(), TranIdGenerator::getTranId);
+                addIds(storedCorpActionIds, storedStatement.getCorporateActions(), TranIdGenerator::getTranId);
+                addIds(storedEquitySummaryDates, storedStatement.getEquitySummaries(), EquitySummary::getReportDate);
+            }
+        }
+
+        FlexStatement newRecords = new FlexStatement();
+        newRecords.setAccountId(accountId);
+        newRecords.setFromDate(fromDate);
+        newRecords.setToDate(toDate);
+        newRecords.setWhenGenerated(flexStatement.getWhenGenerated());
+        newRecords.setType(flexStatement.getType());
+        addNew(storedCashTranIds, flexStatement.getCashTransactions(), TranIdGenerator::getTranId, newRecords.getCashTransactions());
+        addNew(storedTradeIds, flexStatement.getTrades(), TranIdGenerator::getTranId, newRecords.getTrades());
+        addNew(storedTradeConfirmIds, flexStatement.getTradeConfirms(), TranIdGenerator::getTranId, newRecords.getTradeConfirms());
+        addNew(storedCorpActionIds, flexStatement.getCorporateActions(), TranIdGenerator::getTranId, newRecords.getCorporateActions());
+        addNew(storedEquitySummaryDates, flexStatement.getEquitySummaries(), EquitySummary::getReportDate, newRecords.getEquitySummaries());
+
+        boolean hasNewRecords = !newRecords.getCashTransactions().isEmpty()
+                                || !newRecords.getTrades().isEmpty()
+                                || !newRecords.getTradeConfirms().isEmpty()
+                                || !newRecords.getCorporateActions().isEmpty()
+                                || !newRecords.getEquitySummaries().isEmpty();
+        boolean isCoveredPeriod = segments.stream().anyMatch(segment -> segment.covers(fromDate, toDate));
+        if (hasNewRecords || !isCoveredPeriod) {
+            int sequence = segments.stream().mapToInt(Segment::sequence).max().orElse(0) + 1;
+            writeSegment(accountDir, sequence, newRecords);
+        }
+        return newRecords;
+    }
+
+    /**
+     * Returns all stored records of the account merged into one statement or null if nothing is stored.
+     */
+    public FlexStatement load(String accountId) {
+        return loadSince(accountId, null);
+    }
+
+    /**
+     * Returns the stored records of the account from the statements which end on or after the given date
+     * merged into one statement, or null if there are no such statements.
+     * The records of the statements which end earlier are not read.
+     */
+    public FlexStatement loadSince(String accountId, LocalDate date) {
+        List<FlexStatement> storedStatements = listSegments(getAccountDir(accountId))
+                .stream()
+                .filter(segment -> date == null || !segment.toDate().isBefore(date))
+                .map(this::readSegment)
+                .toList();
+        if (storedStatements.isEmpty()) {
+            return null;
+        }
+        return FlexStatementMerger.merge(storedStatements.stream());
+    }
+
+    private Path getAccountDir(String accountId) {
+        if (accountId == null || !ACCOUNT_ID_PATTERN.matcher(accountId).matches()) {
+            throw new IllegalArgumentException(format("Unexpected accountId: %s", accountId));
+        }
+        return storeDir.resolve(accountId);
+    }
+
+    /**
+     * Checks the statement period against the stored periods the same way as when merging statements.
+     */
+    private static void checkPeriod(List<Segment> segments, FlexStatement flexStatement) {
+        if (segments.isEmpty() || FlexStatementType.TCF.equals(flexStatement.getType())) {
+            return;
+        }
+        LocalDate storedFromDate = segments.stream().map(Segment::fromDate).min(LocalDate::compareTo).orElseThrow();
+        LocalDate storedToDate = segments.stream().map(Segment::toDate).max(LocalDate::compareTo).orElseThrow();
+        LocalDate toDate = flexStatement.getToDate();
+        StatementPeriodIndex.Gap gap = StatementPeriodIndex.findGap(flexStatement.getAccountId(), storedToDate, flexStatement);
+        if (gap == null && toDate.plusDays(1).isBefore(storedFromDate)) {
+            gap = new StatementPeriodIndex.Gap(flexStatement.getAccountId(), toDate.plusDays(1), storedFromDate.minusDays(1));
+        }
+        if (gap != null) {
+            throw gap.toException();
+        }
+    }
+
+    private static List<Segment> listSegments(Path accountDir) {
+        if (!Files.isDirectory(accountDir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(accountDir)) {
+            List<Segment> segments = new ArrayList<>();
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Matcher matcher = SEGMENT_NAME_PATTERN.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(new Segment(
+                            path,
+                            LocalDate.parse(matcher.group(1), segmentDf),
+                            LocalDate.parse(matcher.group(2), segmentDf),
+                            Integer.parseInt(matcher.group(3))
+                    ));
+                }
+            }
+            segments.sort(comparing(Segment::fromDate).thenComparing(Segment::toDate).thenComparingInt(Segment::sequence));
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FlexStatement readSegment(Segment segment) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(segment.path());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            return FlexStatementCodec.read(bytes);
+        } catch (IbkrServiceException e) {
+            throw new IbkrServiceException(format("Could not read stored statement: %s", segment.path()), e);
+        }
+    }
+
+    private static void writeSegment(Path accountDir, int sequence, FlexStatement flexStatement) {
+        String fileName = "%s-%s-%d%s".formatted(
+                flexStatement.getFromDate().format(segmentDf),
+                flexStatement.getToDate().format(segmentDf),
+                sequence,
+                SEGMENT_SUFFIX
+        );
+        try {
+            Files.createDirectories(accountDir);
+            Path tempPath = Files.createTempFile(accountDir, fileName, ".tmp");
+            try {
+                Files.write(tempPath, FlexStatementCodec.write(flexStatement));
+                Files.move(tempPath, accountDir.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <K, T> void addIds(Set<K> ids, List<T> records, Function<T, K> idFunction) {
+        for (T record : records) {
+            ids.add(idFunction.apply(record));
+        }
+    }
+
+    private static <K, T> void addNew(Set<K> storedIds, List<T> records, Function<T, K> idFunction, List<T> newRecords) {
+        for (T record : records) {
+            if (storedIds.add(idFunction.apply(record))) {
+                newRecords.add(record);
+            }
+        }
+    }
+}
@@ -5,13 +5,12 @@ import com.brinvex.util.ibkr.api.model.Transaction;
 import com.brinvex.util.ibkr.api.model.TransactionType;
 import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
 import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
-import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
 import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
-import com.brinvex.util.ibkr.api.model.raw.FlexStatementType;
 import com.brinvex.util.ibkr.api.model.raw.Trade;
 import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
 import com.brinvex.util.ibkr.api.service.IbkrService;
 import com.brinvex.util.ibkr.api.service.exception.IbkrServiceException;
+import com.brinvex.util.ibkr.impl.parser.FlexParseOptions;
 import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
 
 import java.io.IOException;
@@ -20,7 +19,6 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -30,16 +28,26 @@ import java.time.temporal.Temporal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
 import static java.util.Comparator.comparing;
-import static java.util.stream.Collectors.toCollection;
+import static java.util.Comparator.naturalOrder;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 
 @SuppressWarnings({"GrazieInspection", "DuplicatedCode"})
 public class IbkrServiceImpl implements IbkrService {
@@ -52,6 +60,16 @@ public class IbkrServiceImpl implements IbkrService {
 
     private final String flexQueryUrl;
 
+    /**
+     * Executor used to parse multiple statements concurrently, null means sequential parsing.
+     */
+    private final Executor parseExecutor;
+
+    /**
+     * Whether a single statement file is split into chunks parsed concurrently on {@link #parseExecutor}.
+     */
+    private final boolean chunkedParsing;
+
     private static class LazyHolder {
         private static final Pattern HTTP_RESP1_STATUS_PATTERN = Pattern.compile("<Status>(.*)</Status>");
         private static final Pattern HTTP_RESP1_REFERENCE_CODE_PATTERN = Pattern.compile("<ReferenceCode>(.*)</ReferenceCode>");
@@ -72,182 +90,209 @@ public class IbkrServiceImpl implements IbkrService {
             TransactionMapper transactionMapper,
             String flexQueryUrl
     ) {
+        this(flexStatementXmlParser, ptfManager, transactionMapper, flexQueryUrl, null);
+    }
+
+    /**
+     * @param parseExecutor if not null, statements are parsed concurrently on this executor,
+     *                      e.g. a bounded {@link java.util.concurrent.ForkJoinPool}.
+     *                      The merged result is the same as with sequential parsing.
+     */
+    public IbkrServiceImpl(
+            FlexStatementXmlParser flexStatementXmlParser,
+            PortfolioManager ptfManager,
+            TransactionMapper transactionMapper,
+            String flexQueryUrl,
+            Executor parseExecutor
+    ) {
+        this(flexStatementXmlParser, ptfManager, transactionMapper, flexQueryUrl, parseExecutor, false);
+    }
+
+    /**
+     * @param parseExecutor  if not null, statements are parsed concurrently on this executor,
+     *                       e.g. a bounded {@link java.util.concurrent.ForkJoinPool}.
+     *                       The merged result is the same as with sequential parsing.
+     * @param chunkedParsing if true and the parse executor is set, a single large statement file is split into chunks
+     *                       parsed concurrently, see {@link FlexStatementXmlParser#parseStatementsInChunks}.
+     *                       The chunks are parsed with the {@link FlexStatementXmlParser.Engine#SCAN} engine
+     *                       whatever the engine of the parser is, so the file is expected to be UTF-8 encoded.
+     */
+    public IbkrServiceImpl(
+            FlexStatementXmlParser flexStatementXmlParser,
+            PortfolioManager ptfManager,
+            TransactionMapper transactionMapper,
+            String flexQueryUrl,
+            Executor parseExecutor,
+            boolean chunkedParsing
+    ) {
+        if (chunkedParsing && parseExecutor == null) {
+            throw new IllegalArgumentException("Chunked parsing requires a parse executor");
+        }
         this.flexStatementXmlParser = flexStatementXmlParser;
         this.ptfManager = ptfManager;
         this.transactionMapper = transactionMapper;
         this.flexQueryUrl = flexQueryUrl;
+        this.parseExecutor = parseExecutor;
+        this.chunkedParsing = chunkedParsing;
     }
 
     @Override
     public FlexStatement parseActivitiesFromStatements(Collection<Path> statementFilePaths) {
-        return parseActivitiesFromStatements(statementFilePaths
-                .stream()
-                .map(filePath -> {
-                    try {
-                        return Files.readString(filePath);
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
-                })
-        );
+        return mergeStatements(parseFiles(selectStatementFiles(statementFilePaths, null), FlexParseOptions.ACTIVITIES));
     }
 
-    @SuppressWarnings("DuplicatedCode")
     @Override
     public FlexStatement parseActivitiesFromStatements(Stream<String> statementContents) {
-        List<FlexStatement> rawFlexStatements = statementContents
-                .map(flexStatementXmlParser::parseActivities)
-                .sorted(comparing(FlexStatement::getFromDate).thenComparing(FlexStatement::getToDate))
-                .toList();
-
-        if (rawFlexStatements.isEmpty()) {
-            throw new IllegalArgumentException("Expected non-empty stream of statements");
-        }
-
-        FlexStatement result = new FlexStatement();
-        String accountId0;
-        {
-            FlexStatement rawTranList0 = rawFlexStatements.get(0);
-            accountId0 = rawTranList0.getAccountId();
-
-            result.setAccountId(accountId0);
-            result.setFromDate(rawTranList0.getFromDate());
-            result.setToDate(rawTranList0.getToDate());
-        }
-
-        TreeMap<String, CashTransaction> rawCashTrans = new TreeMap<>();
-        TreeMap<String, Trade> rawTrades = new TreeMap<>();
-        TreeMap<String, TradeConfirm> rawTradeConfirms = new TreeMap<>();
-        TreeMap<String, CorporateAction> rawCorpActions = new TreeMap<>();
-
-        for (FlexStatement flexStatement : rawFlexStatements) {
-            LocalDate fromDate = flexStatement.getFromDate();
-            LocalDate toDate = flexStatement.getToDate();
-
-            String accountId = flexStatement.getAccountId();
-            if (!accountId0.equals(accountId)) {
-                throw new IbkrServiceException(format("Unexpected multiple accounts: %s, %s",
-                        accountId0,
-                        accountId
-                ));
-            }
-
-            LocalDate nextPeriodFrom = result.getToDate().plusDays(1);
-            if (nextPeriodFrom.isBefore(fromDate)) {
-                if (!FlexStatementType.TCF.equals(flexStatement.getType())) {
-                    throw new IbkrServiceException(format("Missing period: '%s - %s', accountId=%s",
-                            nextPeriodFrom, fromDate.minusDays(1), accountId0));
-                }
-            }
-            if (toDate.isAfter(result.getToDate())) {
-                result.setToDate(toDate);
-            }
-
-            for (CashTransaction rawCashTran : flexStatement.getCashTransactions()) {
-                rawCashTrans.putIfAbsent(TranIdGenerator.getId(rawCashTran), rawCashTran);
-            }
-            for (Trade rawTrade : flexStatement.getTrades()) {
-                rawTrades.putIfAbsent(TranIdGenerator.getId(rawTrade), rawTrade);
-            }
-            for (TradeConfirm rawTradeConfirm : flexStatement.getTradeConfirms()) {
-                rawTradeConfirms.putIfAbsent(TranIdGenerator.getId(rawTradeConfirm), rawTradeConfirm);
-            }
-            for (CorporateAction rawCorpAction : flexStatement.getCorporateActions()) {
-                rawCorpActions.putIfAbsent(TranIdGenerator.getId(rawCorpAction), rawCorpAction);
-            }
-        }
-
-        result.getCashTransactions().addAll(rawCashTrans.values());
-        result.getTrades().addAll(rawTrades.values());
-        result.getTradeConfirms().addAll(rawTradeConfirms.values());
-        result.getCorporateActions().addAll(rawCorpActions.values());
-
-        return result;
+        return mergeStatements(parseEach(
+                statementContents,
+                content -> flexStatementXmlParser.parseStatements(content, FlexParseOptions.ACTIVITIES)
+        ));
     }
 
     @Override
     public FlexStatement parseEquitySummariesFromStatements(Collection<Path> statementFilePaths) {
-        return parseEquitySummariesFromStatements(statementFilePaths
-                .stream()
-                .map(filePath -> {
-                    try {
-                        return Files.readString(filePath);
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
-                })
-        );
+        return mergeStatements(parseFiles(selectStatementFiles(statementFilePaths, null), FlexParseOptions.EQUITY_SUMMARIES));
     }
 
     @Override
     public FlexStatement parseEquitySummariesFromStatements(Stream<String> statementContents) {
-        List<FlexStatement> rawFlexStatements = statementContents
-                .map(flexStatementXmlParser::parseEquitySummaries)
-                .sorted(comparing(FlexStatement::getFromDate).thenComparing(FlexStatement::getToDate))
-                .toList();
+        return mergeStatements(parseEach(
+                statementContents,
+                content -> flexStatementXmlParser.parseStatements(content, FlexParseOptions.EQUITY_SUMMARIES)
+        ));
+    }
 
-        if (rawFlexStatements.isEmpty()) {
-            throw new IllegalArgumentException("Expected non-empty stream of statements");
-        }
+    @Override
+    public FlexStatement parseStatements(Collection<Path> statementFilePaths) {
+        return mergeStatements(parseFiles(selectStatementFiles(statementFilePaths, null), FlexParseOptions.ALL));
+    }
 
-        FlexStatement result = new FlexStatement();
-        String accountId0;
-        {
-            FlexStatement flexStatement = rawFlexStatements.get(0);
-            accountId0 = flexStatement.getAccountId();
+    @Override
+    public FlexStatement parseStatements(Stream<String> statementContents) {
+        return mergeStatements(parseEach(
+                statementContents,
+                content -> flexStatementXmlParser.parseStatements(content, FlexParseOptions.ALL)
+        ));
+    }
 
-            result.setAccountId(accountId0);
-            result.setFromDate(flexStatement.getFromDate());
-            result.setToDate(flexStatement.getToDate());
+    /**
+     * Parses the given statement files, concurrently if {@link #parseExecutor} is set.
+     * A single file is split into chunks which are parsed concurrently if {@link #chunkedParsing} is set.
+     */
+    private Stream<FlexStatement> parseFiles(List<Path> statementFilePaths, FlexParseOptions options) {
+        if (chunkedParsing && statementFilePaths.size() == 1) {
+            return flexStatementXmlParser.parseStatementsInChunks(statementFilePaths.get(0), options, parseExecutor).stream();
         }
+        return parseEach(statementFilePaths.stream(), path -> flexStatementXmlParser.parseStatements(path, options));
+    }
 
-        TreeMap<LocalDate, EquitySummary> equitySummaries = new TreeMap<>();
-
-        for (FlexStatement flexStatement : rawFlexStatements) {
-            LocalDate fromDate = flexStatement.getFromDate();
-            LocalDate toDate = flexStatement.getToDate();
-
-            String accountId = flexStatement.getAccountId();
-            if (!accountId0.equals(accountId)) {
-                throw new IbkrServiceException(format("Unexpected multiple accounts: %s, %s",
-                        accountId0,
-                        accountId
-                ));
-            }
+    /**
+     * Parses the given statements, concurrently if {@link #parseExecutor} is set.
+     * The results keep the encounter order of the sources in both cases.
+     */
+    private <S> Stream<FlexStatement> parseEach(Stream<S> statementSources, Function<S, List<FlexStatement>> parseFunction) {
+        return mapEach(statementSources, parseFunction).stream().flatMap(List::stream);
+    }
 
-            LocalDate nextPeriodFrom = result.getToDate().plusDays(1);
-            if (nextPeriodFrom.isBefore(fromDate)) {
-                if (!FlexStatementType.TCF.equals(flexStatement.getType())) {
-                    throw new IbkrServiceException(format("Missing period: '%s - %s', accountId=%s",
-                            nextPeriodFrom, fromDate.minusDays(1), accountId0));
+    /**
+     * Applies the function to each source, concurrently if {@link #parseExecutor} is set.
+     * The results keep the encounter order of the sources in both cases.
+     */
+    private <S, R> List<R> mapEach(Stream<S> sources, Function<S, R> function) {
+        if (parseExecutor == null) {
+            return sources.map(function).toList();
+        }
+        List<CompletableFuture<R>> futures = sources
+                .map(source -> CompletableFuture.supplyAsync(() -> function.apply(source), parseExecutor))
+                .toList();
+        List<R> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                futures.forEach(f -> f.cancel(false));
+                if (e.getCause() instanceof RuntimeException re) {
+                    throw re;
                 }
+                throw e;
             }
-            if (toDate.isAfter(result.getToDate())) {
-                result.setToDate(toDate);
+        }
+        return results;
+    }
+
+    /**
+     * Reads only the statement headers of the files and indexes their statement periods,
+     * see {@link StatementPeriodIndex} for the reported gaps, overlaps and redundant files.
+     * The file indexes of the result are the positions in the iteration order of the given paths.
+     */
+    StatementPeriodIndex indexStatementPeriods(Collection<Path> statementFilePaths) {
+        return new StatementPeriodIndex(mapEach(statementFilePaths.stream(), flexStatementXmlParser::parseHeaders));
+    }
+
+    /**
+     * Reads only the statement headers of the files to pick the files worth a full parse:
+     * <ul>
+     * <li>files whose statements all end before the period end of the given portfolio are dropped,
+     *     their records have already been applied,</li>
+     * <li>redundant files are dropped, see {@link StatementPeriodIndex},</li>
+     * <li>the periods of the remaining statements are checked for gaps, like when merging them.</li>
+     * </ul>
+     * Returns the selected files ordered by their statement periods.
+     */
+    private List<Path> selectStatementFiles(Collection<Path> statementFilePaths, Portfolio ptf) {
+        if (ptf == null && statementFilePaths.size() < 2) {
+            return List.copyOf(statementFilePaths);
+        }
+        List<Path> paths = new ArrayList<>(statementFilePaths.size());
+        List<List<FlexStatement>> headers = new ArrayList<>(statementFilePaths.size());
+        List<List<FlexStatement>> allHeaders = mapEach(statementFilePaths.stream(), flexStatementXmlParser::parseHeaders);
+        Iterator<Path> pathIterator = statementFilePaths.iterator();
+        for (List<FlexStatement> fileHeaders : allHeaders) {
+            Path path = pathIterator.next();
+            if (ptf == null || fileHeaders.stream().anyMatch(header -> !isAppliedPeriod(ptf, header))) {
+                paths.add(path);
+                headers.add(fileHeaders);
             }
+        }
+
+        StatementPeriodIndex periodIndex = new StatementPeriodIndex(headers);
+        periodIndex.checkGaps();
 
-            for (EquitySummary es : flexStatement.getEquitySummaries()) {
-                equitySummaries.putIfAbsent(es.getReportDate(), es);
+        List<Integer> selectedFiles = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            if (!periodIndex.isRedundantFile(i)) {
+                selectedFiles.add(i);
             }
         }
+        selectedFiles.sort(comparing((Integer i) -> headers.get(i)
+                        .stream()
+                        .map(FlexStatement::getFromDate)
+                        .min(naturalOrder())
+                        .orElseThrow())
+                .thenComparing(naturalOrder()));
+        return selectedFiles.stream().map(paths::get).toList();
+    }
 
-        result.getEquitySummaries().addAll(equitySummaries.values());
+    private static boolean isAppliedPeriod(Portfolio ptf, FlexStatement header) {
+        return header.getAccountId().equals(ptf.getAccountId()) && header.getToDate().isBefore(ptf.getPeriodTo());
+    }
 
-        return result;
+    private FlexStatement mergeStatements(Stream<FlexStatement> flexStatements) {
+        return FlexStatementMerger.merge(flexStatements);
     }
 
     @Override
     public Portfolio fillPortfolioFromStatements(Collection<Path> statementPaths) {
-        Stream<String> statementContentStream = statementPaths
-                .stream()
-                .map(filePath -> {
-                    try {
-                        return Files.readString(filePath);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-        return fillPortfolioFromStatements(statementContentStream);
+        return fillPortfolio(null, parseActivitiesFromStatements(statementPaths));
+    }
+
+    @Override
+    public Portfolio fillPortfolioFromStatements(Portfolio ptf, Collection<Path> statementPaths) {
+        List<Path> selectedPaths = selectStatementFiles(statementPaths, ptf);
+        if (ptf != null && selectedPaths.isEmpty()) {
+            return ptf;
+        }
+        return fillPortfolio(ptf, mergeStatements(parseFiles(selectedPaths, FlexParseOptions.ACTIVITIES)));
     }
 
     @Override
@@ -256,9 +301,67 @@ public class IbkrServiceImpl implements IbkrService {
     }
 
     @Override
-    @SuppressWarnings("DuplicatedCode")
     public Portfolio fillPortfolioFromStatements(Portfolio ptf, Stream<String> statementContents) {
-        FlexStatement flexStatement = parseActivitiesFromStatements(statementContents);
+        return fillPortfolio(ptf, parseActivitiesFromStatements(statementContents));
+    }
+
+    @Override
+    public Map<String, Portfolio> fillPortfoliosFromStatements(Collection<Path> statementPaths) {
+        return fillPortfolios(parseFiles(selectStatementFiles(statementPaths, null), FlexParseOptions.ACTIVITIES));
+    }
+
+    @Override
+    public Map<String, Portfolio> fillPortfoliosFromStatements(Stream<String> statementContents) {
+        return fillPortfolios(parseEach(
+                statementContents,
+                content -> flexStatementXmlParser.parseStatements(content, FlexParseOptions.ACTIVITIES)
+        ));
+    }
+
+    @Override
+    public void storeStatements(Path storeDir, Collection<Path> statementPaths) {
+        FlexStatementStore store = new FlexStatementStore(storeDir);
+        parseFiles(selectStatementFiles(statementPaths, null), FlexParseOptions.ALL)
+                .sorted(comparing(FlexStatement::getFromDate).thenComparing(FlexStatement::getToDate))
+                .forEachOrdered(store::add);
+    }
+
+    @Override
+    public Portfolio fillPortfolioFromStore(Portfolio ptf, Path storeDir, String accountId) {
+        FlexStatementStore store = new FlexStatementStore(storeDir);
+        FlexStatement flexStatement = ptf == null ? store.load(accountId) : store.loadSince(accountId, ptf.getPeriodTo());
+        if (flexStatement == null) {
+            if (ptf != null) {
+                return ptf;
+            }
+            throw new IbkrServiceException(format("No stored statements: accountId=%s", accountId));
+        }
+        return fillPortfolio(ptf, flexStatement);
+    }
+
+    /**
+     * Groups the statements by account and fills the portfolio of each account,
+     * concurrently if {@link #parseExecutor} is set.
+     */
+    private Map<String, Portfolio> fillPortfolios(Stream<FlexStatement> flexStatements) {
+        TreeMap<String, List<FlexStatement>> statementsByAccount = flexStatements
+                .collect(groupingBy(FlexStatement::getAccountId, TreeMap::new, toList()));
+        if (statementsByAccount.isEmpty()) {
+            throw new IllegalArgumentException("Expected non-empty stream of statements");
+        }
+        List<Portfolio> ptfs = mapEach(
+                statementsByAccount.values().stream(),
+                accountStatements -> fillPortfolio(null, mergeStatements(accountStatements.stream()))
+        );
+        Map<String, Portfolio> result = new LinkedHashMap<>();
+        for (Portfolio ptf : ptfs) {
+            result.put(ptf.getAccountId(), ptf);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("DuplicatedCode")
+    private Portfolio fillPortfolio(Portfolio ptf, FlexStatement flexStatement) {
         List<CashTransaction> rawCashTrans = flexStatement.getCashTransactions();
         List<Trade> rawTrades = flexStatement.getTrades();
         List<TradeConfirm> rawTradeConfirms = flexStatement.getTradeConfirms();
@@ -267,7 +370,6 @@ public class IbkrServiceImpl implements IbkrService {
         String accountId = flexStatement.getAccountId();
         LocalDate periodFrom = flexStatement.getFromDate();
         LocalDate periodTo = flexStatement.getToDate();
-        LocalDate today = LocalDate.now();
         if (ptf == null) {
             ptf = ptfManager.initPortfolio(accountId, periodFrom, periodTo);
         } else {
@@ -277,35 +379,30 @@ public class IbkrServiceImpl implements IbkrService {
                         accountId
                 ));
             }
-            LocalDate nextPeriodFrom = ptf.getPeriodTo().plusDays(1);
-            if (nextPeriodFrom.isBefore(periodFrom)) {
-                boolean isTodayPeriod = periodFrom.isEqual(today) && periodTo.isEqual(today);
-                FlexStatementType statementType = flexStatement.getType();
-                boolean tolerateMissingPeriod = (statementType == null && isTodayPeriod) || FlexStatementType.TCF.equals(statementType);
-                if (!tolerateMissingPeriod) {
-                    throw new IbkrServiceException(format("Missing period: '%s - %s', accountId=%s",
-                            nextPeriodFrom, periodFrom.minusDays(1), accountId));
-                }
+            StatementPeriodIndex.Gap gap = StatementPeriodIndex.findGap(accountId, ptf.getPeriodTo(), flexStatement);
+            if (gap != null) {
+                throw gap.toException();
             }
             if (periodTo.isAfter(ptf.getPeriodTo())) {
                 ptf.setPeriodTo(periodTo);
             }
         }
 
-        List<Transaction> ptfTrans = ptf.getTransactions();
-        Set<String> tranIds = ptfTrans.stream().map(Transaction::getId).collect(toCollection(HashSet::new));
+        // The portfolio ID index is looked up instead of copying all IDs for each statement
+        IndexedPortfolio indexedPtf = PortfolioManager.toIndexedPortfolio(ptf);
+        Set<String> newTranIds = new HashSet<>();
+        Predicate<String> oldTranId = tranId -> indexedPtf.containsTransaction(tranId) || newTranIds.contains(tranId);
 
-        List<Transaction> newCashTrans = transactionMapper.mapCashTransactions(tranIds, rawCashTrans);
-        tranIds.addAll(newCashTrans.stream().map(Transaction::getId).toList());
+        List<Transaction> newCashTrans = transactionMapper.mapCashTransactions(oldTranId, rawCashTrans);
+        newCashTrans.forEach(t -> newTranIds.add(t.getId()));
 
-        List<Transaction> newTrades = transactionMapper.mapTrades(tranIds, rawTrades);
-        tranIds.addAll(newTrades.stream().map(Transaction::getId).toList());
+        List<Transaction> newTrades = transactionMapper.mapTrades(oldTranId, rawTrades);
+        newTrades.forEach(t -> newTranIds.add(t.getId()));
 
-        List<Transaction> newTradeConfirms = transactionMapper.mapTradeConfirms(tranIds, rawTradeConfirms);
-        tranIds.addAll(newTradeConfirms.stream().map(Transaction::getId).toList());
+        List<Transaction> newTradeConfirms = transactionMapper.mapTradeConfirms(oldTranId, rawTradeConfirms);
+        newTradeConfirms.forEach(t -> newTranIds.add(t.getId()));
 
-        List<Transaction> newCorpActions = transactionMapper.mapCorporateAction(tranIds, rawCorpActions);
-        tranIds.addAll(newTradeConfirms.stream().map(Transaction::getId).toList());
+        List<Transaction> newCorpActions = transactionMapper.mapCorporateAction(oldTranId, rawCorpActions);
 
         List<Transaction> newTrans = new ArrayList<>();
         newTrans.addAll(newCorpActions);
@@ -322,14 +419,21 @@ public class IbkrServiceImpl implements IbkrService {
             return result;
         });
 
-        for (Transaction newTran : newTrans) {
-            ptfTrans.add(newTran);
-            ptfManager.applyTransaction(ptf, newTran);
-        }
+        ptfManager.applyTransactions(ptf, newTrans);
 
         return ptf;
     }
 
+    @Override
+    public void writePortfolioCheckpoint(Portfolio ptf, Path checkpointPath) {
+        PortfolioCheckpoint.write(ptf, checkpointPath);
+    }
+
+    @Override
+    public Portfolio readPortfolioCheckpoint(Path checkpointPath) {
+        return PortfolioCheckpoint.read(checkpointPath);
+    }
+
     @Override
     public String fetchStatement(String token, String flexQueryId) {
         HttpClient httpClient = HttpClient.newBuilder()
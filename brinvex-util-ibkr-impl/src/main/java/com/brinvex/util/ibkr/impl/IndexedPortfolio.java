@@ -0,0 +1,218 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.Country;
+import com.brinvex.util.ibkr.api.model.Currency;
+import com.brinvex.util.ibkr.api.model.Portfolio;
+import com.brinvex.util.ibkr.api.model.Position;
+import com.brinvex.util.ibkr.api.model.Transaction;
+
+import java.io.Serial;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Portfolio which keeps hash indexes of its transactions by ID and of its positions by country and symbol,
+ * so that {@link PortfolioManager} does not scan the whole portfolio for each applied transaction,
+ * and a {@link CashLedger} of the cash changes of its transactions,
+ * which {@link PortfolioManager} updates with each transaction it applies.
+ * <p>
+ * The indexes and the ledger follow the transaction and position lists, which are expected to be only appended to:
+ * elements appended by the caller are indexed on the next lookup,
+ * a list which was replaced or has shrunk is indexed again.
+ * The country and symbol of an indexed position must not change.
+ * <p>
+ * The indexes and the ledger are not serialized, the portfolio is serialized as a plain {@link Portfolio}.
+ */
+public class IndexedPortfolio extends Portfolio {
+
+    private record PositionKey(Country country, String symbol) {
+    }
+
+    private transient List<Transaction> indexedTransactions;
+
+    private transient int indexedTransactionCount;
+
+    private transient Map<String, Transaction> transactionsById;
+
+    /**
+     * IDs shared by more than one indexed transaction.
+     */
+    private transient Set<String> duplicateTranIds;
+
+    private transient List<Position> indexedPositions;
+
+    private transient int indexedPositionCount;
+
+    private transient Map<PositionKey, Position> positionsByKey;
+
+    private transient Set<PositionKey> duplicatePositionKeys;
+
+    private transient Map<String, List<Position>> positionsBySymbol;
+
+    private transient List<Transaction> ledgerTransactions;
+
+    private transient int ledgerTransactionCount;
+
+    private transient CashLedger cashLedger;
+
+    /**
+     * Returns true if the portfolio holds another transaction with the same ID as the given transaction.
+     */
+    public boolean hasOtherTransaction(Transaction tran) {
+        syncTransactions();
+        String tranId = tran.getId();
+        if (duplicateTranIds.contains(tranId)) {
+            return true;
+        }
+        Transaction indexedTran = transactionsById.get(tranId);
+        return indexedTran != null && indexedTran != tran;
+    }
+
+    /**
+     * Returns true if the portfolio holds a transaction with the given ID.
+     */
+    public boolean containsTransaction(String tranId) {
+        syncTransactions();
+        return transactionsById.containsKey(tranId);
+    }
+
+    public Optional<Position> findPosition(Country country, String symbol) {
+        syncPositions();
+        PositionKey key = new PositionKey(country, symbol);
+        Position position = positionsByKey.get(key);
+        if (position != null && duplicatePositionKeys.contains(key)) {
+            List<Position> duplicates = positionsBySymbol.get(symbol)
+                    .stream()
+                    .filter(p -> country.equals(p.getCountry()))
+                    .toList();
+            throw new IllegalStateException(format("Duplicate position: %s, %s", duplicates.get(0), duplicates.get(1)));
+        }
+        return Optional.ofNullable(position);
+    }
+
+    public List<Position> findPositions(String symbol) {
+        syncPositions();
+        return positionsBySymbol.getOrDefault(symbol, List.of());
+    }
+
+    /**
+     * Returns the cash ledger with the cash changes of all transactions of the portfolio.
+     */
+    CashLedger cashLedger() {
+        syncCashLedger(getTransactions().size());
+        return cashLedger;
+    }
+
+    /**
+     * Adds the cash changes of the transaction at the given index of the transaction list,
+     * computed by {@link PortfolioManager} when applying it, to the cash ledger.
+     * Nothing is added if the transaction is in the ledger already.
+     */
+    void addToCashLedger(int tranIndex, Transaction tran, Map<Currency, BigDecimal> tranCashChanges) {
+        syncCashLedger(tranIndex);
+        if (ledgerTransactionCount != tranIndex) {
+            return;
+        }
+        if (!tranCashChanges.isEmpty()) {
+            LocalDate tranDate = PortfolioManager.toLocalDate(tran.getDate());
+            tranCashChanges.forEach((ccy, amount) -> cashLedger.add(ccy, tranDate, amount));
+        }
+        ledgerTransactionCount = tranIndex + 1;
+    }
+
+    /**
+     * Adds the transactions, which were appended to the list without being applied by {@link PortfolioManager},
+     * up to the given index to the cash ledger.
+     */
+    private void syncCashLedger(int toIndex) {
+        List<Transaction> transactions = getTransactions();
+        if (transactions != ledgerTransactions || transactions.size() < ledgerTransactionCount) {
+            ledgerTransactions = transactions;
+            ledgerTransactionCount = 0;
+            cashLedger = new CashLedger();
+        }
+        if (ledgerTransactionCount >= toIndex) {
+            return;
+        }
+        Map<Currency, BigDecimal> cashChanges = new EnumMap<>(Currency.class);
+        for (ListIterator<Transaction> it = transactions.listIterator(ledgerTransactionCount); it.nextIndex() < toIndex; ) {
+            Transaction tran = it.next();
+            PortfolioManager.addCashChanges(tran, cashChanges);
+            if (!cashChanges.isEmpty()) {
+                LocalDate tranDate = PortfolioManager.toLocalDate(tran.getDate());
+                cashChanges.forEach((ccy, amount) -> cashLedger.add(ccy, tranDate, amount));
+                cashChanges.clear();
+            }
+        }
+        ledgerTransactionCount = toIndex;
+    }
+
+    private void syncTransactions() {
+        List<Transaction> transactions = getTransactions();
+        if (transactions != indexedTransactions || transactions.size() < indexedTransactionCount) {
+            indexedTransactions = transactions;
+            indexedTransactionCount = 0;
+            transactionsById = new HashMap<>();
+            duplicateTranIds = new HashSet<>();
+        }
+        int size = transactions.size();
+        if (indexedTransactionCount == size) {
+            return;
+        }
+        for (ListIterator<Transaction> it = transactions.listIterator(indexedTransactionCount); it.hasNext(); ) {
+            Transaction tran = it.next();
+            Transaction indexedTran = transactionsById.putIfAbsent(tran.getId(), tran);
+            if (indexedTran != null && indexedTran != tran) {
+                duplicateTranIds.add(tran.getId());
+            }
+        }
+        indexedTransactionCount = size;
+    }
+
+    private void syncPositions() {
+        List<Position> positions = getPositions();
+        if (positions != indexedPositions || positions.size() < indexedPositionCount) {
+            indexedPositions = positions;
+            indexedPositionCount = 0;
+            positionsByKey = new HashMap<>();
+            duplicatePositionKeys = new HashSet<>();
+            positionsBySymbol = new HashMap<>();
+        }
+        int size = positions.size();
+        if (indexedPositionCount == size) {
+            return;
+        }
+        for (ListIterator<Position> it = positions.listIterator(indexedPositionCount); it.hasNext(); ) {
+            Position position = it.next();
+            PositionKey key = new PositionKey(position.getCountry(), position.getSymbol());
+            if (positionsByKey.putIfAbsent(key, position) != null) {
+                duplicatePositionKeys.add(key);
+            }
+            positionsBySymbol.computeIfAbsent(position.getSymbol(), k -> new ArrayList<>(1)).add(position);
+        }
+        indexedPositionCount = size;
+    }
+
+    @Serial
+    private Object writeReplace() {
+        Portfolio ptf = new Portfolio();
+        ptf.setAccountId(getAccountId());
+        ptf.setPeriodFrom(getPeriodFrom());
+        ptf.setPeriodTo(getPeriodTo());
+        ptf.setCash(getCash());
+        ptf.setPositions(getPositions());
+        ptf.setTransactions(getTransactions());
+        return ptf;
+    }
+}
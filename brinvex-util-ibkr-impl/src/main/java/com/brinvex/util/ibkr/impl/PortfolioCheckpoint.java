@@ -0,0 +1,230 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.AssetCategory;
+import com.brinvex.util.ibkr.api.model.AssetSubCategory;
+import com.brinvex.util.ibkr.api.model.Country;
+import com.brinvex.util.ibkr.api.model.Currency;
+import com.brinvex.util.ibkr.api.model.Portfolio;
+import com.brinvex.util.ibkr.api.model.Position;
+import com.brinvex.util.ibkr.api.model.Transaction;
+import com.brinvex.util.ibkr.api.model.TransactionType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Compact binary checkpoint of a {@link Portfolio}: its period, cash, positions and transactions,
+ * so that a portfolio can be restored at startup and filled with the new statements only.
+ * <p>
+ * The format starts with a magic number and a version, a checkpoint of another version is rejected,
+ * and it ends with a CRC32 checksum of the preceding bytes, see {@link BinaryWriter} for the encoding.
+ * Positions refer to their transactions by their indexes in the portfolio transactions,
+ * so a restored transaction is the same object in both.
+ * <p>
+ * The restored portfolio is an {@link IndexedPortfolio}.
+ */
+public class PortfolioCheckpoint {
+
+    private static final int MAGIC = 0x42585043;
+
+    private static final int VERSION = 1;
+
+    private PortfolioCheckpoint() {
+    }
+
+    public static void write(Portfolio ptf, Path checkpointPath) {
+        try {
+            Path dir = checkpointPath.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tempPath = Files.createTempFile(dir, checkpointPath.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tempPath)) {
+                    write(ptf, out);
+                }
+                Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Portfolio read(Path checkpointPath) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(checkpointPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return read(bytes);
+    }
+
+    public static void write(Portfolio ptf, OutputStream out) {
+        BinaryWriter writer = new BinaryWriter();
+        writePortfolio(writer, ptf);
+        try {
+            out.write(writer.toByteArrayWithChecksum());
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Portfolio read(InputStream in) {
+        byte[] bytes;
+        try {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return read(bytes);
+    }
+
+    private static Portfolio read(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(bytes, "portfolio checkpoint");
+        Portfolio ptf = readPortfolio(reader);
+        reader.checkEnd();
+        return ptf;
+    }
+
+    private static void writePortfolio(BinaryWriter writer, Portfolio ptf) {
+        writer.writeHeader(MAGIC, VERSION);
+        writer.writeString(ptf.getAccountId());
+        writer.writeDate(ptf.getPeriodFrom());
+        writer.writeDate(ptf.getPeriodTo());
+
+        Map<Currency, BigDecimal> cash = ptf.getCash();
+        writer.writeVarInt(cash.size());
+        for (Map.Entry<Currency, BigDecimal> e : cash.entrySet()) {
+            writer.writeEnum(e.getKey());
+            writer.writeDecimal(e.getValue());
+        }
+
+        List<Transaction> transactions = ptf.getTransactions();
+        Map<Transaction, Integer> tranIndexes = new IdentityHashMap<>(transactions.size());
+        writer.writeVarInt(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction tran = transactions.get(i);
+            tranIndexes.putIfAbsent(tran, i);
+            writeTransaction(writer, tran);
+        }
+
+        List<Position> positions = ptf.getPositions();
+        writer.writeVarInt(positions.size());
+        for (Position position : positions) {
+            writer.writeEnum(position.getCountry());
+            writer.writeString(position.getSymbol());
+            writer.writeDecimal(position.getQty());
+            List<Transaction> positionTransactions = position.getTransactions();
+            writer.writeVarInt(positionTransactions.size());
+            for (Transaction tran : positionTransactions) {
+                Integer tranIndex = tranIndexes.get(tran);
+                if (tranIndex == null) {
+                    throw new IllegalArgumentException(format("Position transaction not found in portfolio transactions: %s", tran));
+                }
+                writer.writeVarInt(tranIndex);
+            }
+        }
+    }
+
+    private static void writeTransaction(BinaryWriter writer, Transaction tran) {
+        writer.writeString(tran.getId());
+        writer.writeTemporal(tran.getDate());
+        writer.writeEnum(tran.getType());
+        writer.writeEnum(tran.getCountry());
+        writer.writeString(tran.getSymbol());
+        writer.writeString(tran.getIsin());
+        writer.writeString(tran.getFigi());
+        writer.writeEnum(tran.getAssetCategory());
+        writer.writeEnum(tran.getAssetSubCategory());
+        writer.writeDecimal(tran.getQty());
+        writer.writeEnum(tran.getCurrency());
+        writer.writeDecimal(tran.getPrice());
+        writer.writeDecimal(tran.getGrossValue());
+        writer.writeDecimal(tran.getNetValue());
+        writer.writeDecimal(tran.getTax());
+        writer.writeDecimal(tran.getFees());
+        writer.writeDate(tran.getSettleDate());
+        writer.writeString(tran.getBunchId());
+        writer.writeString(tran.getDescription());
+    }
+
+    private static Portfolio readPortfolio(BinaryReader reader) {
+        reader.readHeader(MAGIC, VERSION);
+        IndexedPortfolio ptf = new IndexedPortfolio();
+        ptf.setAccountId(reader.readString());
+        ptf.setPeriodFrom(reader.readDate());
+        ptf.setPeriodTo(reader.readDate());
+
+        int cashSize = reader.readSize();
+        for (int i = 0; i < cashSize; i++) {
+            Currency ccy = reader.readEnum(Currency.class);
+            ptf.getCash().put(ccy, reader.readDecimal());
+        }
+
+        int transactionCount = reader.readSize();
+        List<Transaction> transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            transactions.add(readTransaction(reader));
+        }
+        ptf.setTransactions(transactions);
+
+        int positionCount = reader.readSize();
+        List<Position> positions = new ArrayList<>(positionCount);
+        for (int i = 0; i < positionCount; i++) {
+            Position position = new Position();
+            position.setCountry(reader.readEnum(Country.class));
+            position.setSymbol(reader.readString());
+            position.setQty(reader.readDecimal());
+            int positionTransactionCount = reader.readSize();
+            List<Transaction> positionTransactions = position.getTransactions();
+            for (int j = 0; j < positionTransactionCount; j++) {
+                int tranIndex = reader.readVarInt();
+                if (tranIndex < 0 || tranIndex >= transactionCount) {
+                    throw reader.corrupted("transaction index", tranIndex);
+                }
+                positionTransactions.add(transactions.get(tranIndex));
+            }
+            positions.add(position);
+        }
+        ptf.setPositions(positions);
+        return ptf;
+    }
+
+    private static Transaction readTransaction(BinaryReader reader) {
+        Transaction tran = new Transaction();
+        tran.setId(reader.readString());
+        tran.setDate(reader.readTemporal());
+        tran.setType(reader.readEnum(TransactionType.class));
+        tran.setCountry(reader.readEnum(Country.class));
+        tran.setSymbol(reader.readString());
+        tran.setIsin(reader.readString());
+        tran.setFigi(reader.readString());
+        tran.setAssetCategory(reader.readEnum(AssetCategory.class));
+        tran.setAssetSubCategory(reader.readEnum(AssetSubCategory.class));
+        tran.setQty(reader.readDecimal());
+        tran.setCurrency(reader.readEnum(Currency.class));
+        tran.setPrice(reader.readDecimal());
+        tran.setGrossValue(reader.readDecimal());
+        tran.setNetValue(reader.readDecimal());
+        tran.setTax(reader.readDecimal());
+        tran.setFees(reader.readDecimal());
+        tran.setSettleDate(reader.readDate());
+        tran.setBunchId(reader.readString());
+        tran.setDescription(reader.readString());
+        return tran;
+    }
+}
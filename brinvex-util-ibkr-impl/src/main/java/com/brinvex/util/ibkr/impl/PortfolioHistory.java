@@ -0,0 +1,204 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.Currency;
+import com.brinvex.util.ibkr.api.model.Portfolio;
+import com.brinvex.util.ibkr.api.model.Position;
+import com.brinvex.util.ibkr.api.model.Transaction;
+import com.brinvex.util.ibkr.impl.PortfolioManager.PositionKey;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.math.BigDecimal.ZERO;
+import static java.time.temporal.TemporalAdjusters.lastDayOfMonth;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Answers point-in-time queries over a built portfolio: the cash and positions as of the end of a given date.
+ * <p>
+ * The transactions of the portfolio are kept sorted by their local date,
+ * transactions of the same date keep their portfolio order.
+ * The cash and position quantities are snapshotted at the end of each month with a transaction,
+ * so that a query is answered from the latest snapshot not after the date
+ * and a replay of the transactions of at most one month.
+ * <p>
+ * The history does not follow later changes of the portfolio, a new history has to be created for them.
+ */
+public class PortfolioHistory {
+
+    private record Snapshot(
+            LocalDate date,
+            int tranCount,
+            Map<Currency, BigDecimal> cash,
+            Map<PositionKey, BigDecimal> positionQtys
+    ) {
+    }
+
+    private final Portfolio ptf;
+
+    private final List<Transaction> transactions;
+
+    private final LocalDate[] tranDates;
+
+    private final List<Snapshot> snapshots = new ArrayList<>();
+
+    /**
+     * Ascending indexes of the sorted transactions changing each position.
+     */
+    private final Map<PositionKey, int[]> positionTranIndexes = new HashMap<>();
+
+    public PortfolioHistory(Portfolio ptf) {
+        this.ptf = requireNonNull(ptf);
+        this.transactions = new ArrayList<>(ptf.getTransactions());
+        this.transactions.sort(Comparator.comparing(t -> PortfolioManager.toLocalDate(t.getDate())));
+
+        int tranCount = transactions.size();
+        tranDates = new LocalDate[tranCount];
+        Map<Currency, BigDecimal> cash = new LinkedHashMap<>();
+        Map<PositionKey, BigDecimal> positionQtys = new LinkedHashMap<>();
+        Map<PositionKey, List<Integer>> positionTrans = new HashMap<>();
+        for (int i = 0; i < tranCount; i++) {
+            LocalDate tranDate = PortfolioManager.toLocalDate(transactions.get(i).getDate());
+            if (i > 0 && tranDate.isAfter(tranDates[i - 1].with(lastDayOfMonth()))) {
+                snapshots.add(new Snapshot(tranDates[i - 1].with(lastDayOfMonth()), i, new LinkedHashMap<>(cash), new LinkedHashMap<>(positionQtys)));
+            }
+            tranDates[i] = tranDate;
+            PositionKey key = apply(transactions.get(i), cash, positionQtys);
+            if (key != null) {
+                positionTrans.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+        positionTrans.forEach((key, indexes) -> positionTranIndexes.put(key, indexes.stream().mapToInt(i -> i).toArray()));
+    }
+
+    /**
+     * Returns the portfolio with the cash, positions and transactions as of the end of the given date,
+     * as if only the transactions dated up to it were applied.
+     * The transactions of the returned portfolio and of its positions are ordered by date.
+     */
+    public Portfolio getPortfolioAsOf(LocalDate date) {
+        requireNonNull(date);
+        int tranCount = countTransactionsUpTo(date);
+        Map<Currency, BigDecimal> cash = new LinkedHashMap<>();
+        Map<PositionKey, BigDecimal> positionQtys = new LinkedHashMap<>();
+        replay(date, tranCount, cash, positionQtys);
+
+        Portfolio asOfPtf = new Portfolio();
+        asOfPtf.setAccountId(ptf.getAccountId());
+        asOfPtf.setPeriodFrom(ptf.getPeriodFrom());
+        asOfPtf.setPeriodTo(date);
+        asOfPtf.getCash().putAll(cash);
+        positionQtys.forEach((key, qty) -> {
+            Position position = new Position();
+            position.setCountry(key.country());
+            position.setSymbol(key.symbol());
+            position.setQty(qty);
+            int[] tranIndexes = positionTranIndexes.get(key);
+            int searchResult = Arrays.binarySearch(tranIndexes, tranCount);
+            int positionTranCount = searchResult >= 0 ? searchResult : -searchResult - 1;
+            for (int i = 0; i < positionTranCount; i++) {
+                position.getTransactions().add(transactions.get(tranIndexes[i]));
+            }
+            asOfPtf.getPositions().add(position);
+        });
+        asOfPtf.getTransactions().addAll(transactions.subList(0, tranCount));
+        return asOfPtf;
+    }
+
+    /**
+     * Returns the cash balances as of the end of the given date.
+     */
+    public Map<Currency, BigDecimal> getCashAsOf(LocalDate date) {
+        requireNonNull(date);
+        Map<Currency, BigDecimal> cash = new LinkedHashMap<>();
+        replay(date, countTransactionsUpTo(date), cash, new LinkedHashMap<>());
+        return cash;
+    }
+
+    /**
+     * Returns the quantity of the position as of the end of the given date, zero if it was not held.
+     */
+    public BigDecimal getPositionQtyAsOf(String symbol, LocalDate date) {
+        requireNonNull(symbol);
+        requireNonNull(date);
+        Map<PositionKey, BigDecimal> positionQtys = new LinkedHashMap<>();
+        replay(date, countTransactionsUpTo(date), new LinkedHashMap<>(), positionQtys);
+        return positionQtys.entrySet()
+                .stream()
+                .filter(e -> symbol.equals(e.getKey().symbol()))
+                .map(Map.Entry::getValue)
+                .reduce(BigDecimal::add)
+                .orElse(ZERO);
+    }
+
+    /**
+     * Fills the cash and position quantities after the first {@code tranCount} sorted transactions
+     * from the latest snapshot not after the date.
+     */
+    private void replay(
+            LocalDate date,
+            int tranCount,
+            Map<Currency, BigDecimal> cash,
+            Map<PositionKey, BigDecimal> positionQtys
+    ) {
+        int fromIndex = 0;
+        Snapshot snapshot = findSnapshot(date);
+        if (snapshot != null) {
+            cash.putAll(snapshot.cash);
+            positionQtys.putAll(snapshot.positionQtys);
+            fromIndex = snapshot.tranCount;
+        }
+        for (int i = fromIndex; i < tranCount; i++) {
+            apply(transactions.get(i), cash, positionQtys);
+        }
+    }
+
+    private Snapshot findSnapshot(LocalDate date) {
+        int low = 0;
+        int high = snapshots.size() - 1;
+        Snapshot found = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Snapshot snapshot = snapshots.get(mid);
+            if (snapshot.date.isAfter(date)) {
+                high = mid - 1;
+            } else {
+                found = snapshot;
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of sorted transactions dated up to the given date.
+     */
+    private int countTransactionsUpTo(LocalDate date) {
+        int low = 0;
+        int high = tranDates.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tranDates[mid].isAfter(date)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static PositionKey apply(Transaction tran, Map<Currency, BigDecimal> cash, Map<PositionKey, BigDecimal> positionQtys) {
+        PositionKey key = PortfolioManager.addCashChanges(tran, cash);
+        if (key != null) {
+            positionQtys.merge(key, tran.getQty(), BigDecimal::add);
+        }
+        return key;
+    }
+}
@@ -25,10 +25,16 @@ import com.brinvex.util.ibkr.api.service.exception.IbkrServiceException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 import static java.math.BigDecimal.ZERO;
@@ -37,7 +43,7 @@ import static java.util.Objects.requireNonNull;
 public class PortfolioManager {
 
     public Portfolio initPortfolio(String accountNumber, LocalDate periodFrom, LocalDate periodTo) {
-        Portfolio ptf = new Portfolio();
+        Portfolio ptf = new IndexedPortfolio();
         ptf.setAccountId(accountNumber);
         ptf.setPeriodFrom(periodFrom);
         ptf.setPeriodTo(periodTo);
@@ -47,10 +53,15 @@ public class PortfolioManager {
     public Position findPosition(Portfolio ptf, String symbol) {
         requireNonNull(ptf);
         requireNonNull(symbol);
-        List<Position> positions = ptf.getPositions()
-                .stream()
-                .filter(p -> symbol.equals(p.getSymbol()))
-                .toList();
+        List<Position> positions;
+        if (ptf instanceof IndexedPortfolio indexedPtf) {
+            positions = indexedPtf.findPositions(symbol);
+        } else {
+            positions = ptf.getPositions()
+                    .stream()
+                    .filter(p -> symbol.equals(p.getSymbol()))
+                    .toList();
+        }
         int size = positions.size();
         if (size == 0) {
             throw new IbkrServiceException(format("Could not find position by symbol: %s, ptf=%s", symbol, ptf));
@@ -62,13 +73,8 @@ public class PortfolioManager {
     }
 
     public void applyTransaction(Portfolio ptf, Transaction tran) {
-        Set<String> ptfTranIds = ptf.getTransactions()
-                .stream()
-                .filter(t -> t != tran)
-                .map(Transaction::getId)
-                .collect(Collectors.toSet());
         String tranId = tran.getId();
-        if (ptfTranIds.contains(tranId)) {
+        if (hasOtherTransaction(ptf, tran)) {
             throw new IbkrServiceException(format("Transaction ID conflict: %s", tranId));
         }
         TransactionType tranType = tran.getType();
@@ -76,24 +82,149 @@ public class PortfolioManager {
         if (!tranIsValid) {
             throw new IbkrServiceException(format("Invalid transaction: %s", tran));
         }
-        Country country = tran.getCountry();
-        String symbol = tran.getSymbol();
-        Currency ccy = tran.getCurrency();
+        Map<Currency, BigDecimal> cashChanges = new LinkedHashMap<>();
+        PositionKey key = addCashChanges(tran, cashChanges);
+        cashChanges.forEach((ccy, moneyToAdd) -> updateCash(ptf, ccy, moneyToAdd));
+        if (key != null) {
+            Position position = updatePosition(ptf, key.country(), key.symbol(), tran.getQty());
+            position.getTransactions().add(tran);
+        }
+
+        if (ptf instanceof IndexedPortfolio indexedPtf) {
+            List<Transaction> transactions = ptf.getTransactions();
+            int tranIndex = transactions.size() - 1;
+            if (tranIndex >= 0 && transactions.get(tranIndex) == tran) {
+                indexedPtf.addToCashLedger(tranIndex, tran, cashChanges);
+            }
+        }
+    }
+
+    /**
+     * Adds the transactions, which are not in the portfolio yet, to the portfolio and applies them
+     * with the same result as adding and applying them one by one with {@link #applyTransaction}.
+     * <p>
+     * The whole batch is checked before the portfolio is changed:
+     * the ID conflicts with the portfolio and the earlier transactions of the batch and the validity of each transaction.
+     * The first failing transaction is reported the same way as by {@link #applyTransaction}
+     * and the portfolio is left unchanged.
+     * The cash changes are summed per currency and the position changes per country and symbol before they are applied,
+     * both in the order of their first transaction.
+     */
+    public void applyTransactions(Portfolio ptf, List<Transaction> trans) {
+        IndexedPortfolio indexedPtf = toIndexedPortfolio(ptf);
+        Set<String> batchTranIds = new HashSet<>();
+        for (Transaction tran : trans) {
+            String tranId = tran.getId();
+            if (indexedPtf.containsTransaction(tranId) || !batchTranIds.add(tranId)) {
+                throw new IbkrServiceException(format("Transaction ID conflict: %s", tranId));
+            }
+            if (!tran.getType().isValid(tran)) {
+                throw new IbkrServiceException(format("Invalid transaction: %s", tran));
+            }
+        }
+
+        Map<Currency, BigDecimal> cashChanges = new LinkedHashMap<>();
+        Map<PositionKey, PositionChange> positionChanges = new LinkedHashMap<>();
+        Map<Currency, BigDecimal> tranCashChanges = new LinkedHashMap<>();
+        int tranIndex = ptf.getTransactions().size();
+        ptf.getTransactions().addAll(trans);
+        for (Transaction tran : trans) {
+            PositionKey key = addCashChanges(tran, tranCashChanges);
+            if (key != null) {
+                positionChanges.computeIfAbsent(key, k -> new PositionChange()).add(tran, tran.getQty());
+            }
+            tranCashChanges.forEach((ccy, moneyToAdd) -> cashChanges.merge(ccy, moneyToAdd, BigDecimal::add));
+            if (ptf instanceof IndexedPortfolio) {
+                indexedPtf.addToCashLedger(tranIndex++, tran, tranCashChanges);
+            }
+            tranCashChanges.clear();
+        }
+
+        cashChanges.forEach((ccy, moneyToAdd) -> updateCash(ptf, ccy, moneyToAdd));
+        positionChanges.forEach((key, change) -> {
+            Position position = updatePosition(indexedPtf, key.country(), key.symbol(), change.qty);
+            position.getTransactions().addAll(change.trans);
+        });
+    }
+
+    record PositionKey(Country country, String symbol) {
+    }
+
+    /**
+     * Adds the cash changes of the transaction to the cash balances the same way as {@link #applyTransaction},
+     * returns the country and symbol of the position changed by the transaction quantity or null if there is none.
+     */
+    static PositionKey addCashChanges(Transaction tran, Map<Currency, BigDecimal> cash) {
+        TransactionType tranType = tran.getType();
         BigDecimal netValue = tran.getNetValue();
         BigDecimal qty = tran.getQty();
 
         if (netValue != null && netValue.compareTo(ZERO) != 0) {
-            updateCash(ptf, ccy, netValue);
+            cash.merge(requireNonNull(tran.getCurrency()), netValue, BigDecimal::add);
         }
 
         if (qty.compareTo(ZERO) != 0) {
             if (tranType.equals(TransactionType.FX_BUY) || tranType.equals(TransactionType.FX_SELL)) {
-                updateCash(ptf, Currency.valueOf(symbol), qty);
+                cash.merge(Currency.valueOf(tran.getSymbol()), qty, BigDecimal::add);
             } else {
-                Position position = updatePosition(ptf, country, symbol, qty);
-                position.getTransactions().add(tran);
+                return new PositionKey(requireNonNull(tran.getCountry()), requireNonNull(tran.getSymbol()));
             }
         }
+        return null;
+    }
+
+    /**
+     * Returns the local date of the transaction date, which is either a date or a zoned date-time.
+     */
+    static LocalDate toLocalDate(Temporal date) {
+        if (date instanceof ZonedDateTime zdt) {
+            return zdt.toLocalDate();
+        }
+        return LocalDate.from(date);
+    }
+
+    /**
+     * Returns the cash ledger of the portfolio,
+     * which is kept up to date by applying transactions if the portfolio is indexed, otherwise built from its transactions.
+     */
+    public CashLedger getCashLedger(Portfolio ptf) {
+        requireNonNull(ptf);
+        return toIndexedPortfolio(ptf).cashLedger();
+    }
+
+    private static class PositionChange {
+
+        private final List<Transaction> trans = new ArrayList<>();
+
+        private BigDecimal qty;
+
+        void add(Transaction tran, BigDecimal qtyToAdd) {
+            trans.add(tran);
+            qty = qty == null ? qtyToAdd : qty.add(qtyToAdd);
+        }
+    }
+
+    /**
+     * Returns the portfolio itself if it is indexed, otherwise an indexed view of its transactions and positions.
+     */
+    static IndexedPortfolio toIndexedPortfolio(Portfolio ptf) {
+        if (ptf instanceof IndexedPortfolio indexedPtf) {
+            return indexedPtf;
+        }
+        IndexedPortfolio indexedPtf = new IndexedPortfolio();
+        indexedPtf.setTransactions(ptf.getTransactions());
+        indexedPtf.setPositions(ptf.getPositions());
+        return indexedPtf;
+    }
+
+    private boolean hasOtherTransaction(Portfolio ptf, Transaction tran) {
+        if (ptf instanceof IndexedPortfolio indexedPtf) {
+            return indexedPtf.hasOtherTransaction(tran);
+        }
+        String tranId = tran.getId();
+        return ptf.getTransactions()
+                .stream()
+                .anyMatch(t -> t != tran && Objects.equals(tranId, t.getId()));
     }
 
     private void updateCash(Portfolio ptf, Currency ccy, BigDecimal moneyToAdd) {
@@ -124,6 +255,9 @@ public class PortfolioManager {
         requireNonNull(ptf);
         requireNonNull(country);
         requireNonNull(symbol);
+        if (ptf instanceof IndexedPortfolio indexedPtf) {
+            return indexedPtf.findPosition(country, symbol);
+        }
         return ptf.getPositions()
                 .stream()
                 .filter(p -> country.equals(p.getCountry()))
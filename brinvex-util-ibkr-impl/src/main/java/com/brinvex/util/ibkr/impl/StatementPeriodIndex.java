@@ -0,0 +1,207 @@
+package com.brinvex.util.ibkr.impl;
+
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatementType;
+import com.brinvex.util.ibkr.api.service.exception.IbkrServiceException;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static java.lang.String.format;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.nullsLast;
+
+/**
+ * Index of the statement periods of statement files, built from the statement headers in one pass.
+ * <p>
+ * Per account it reports all gaps and overlaps between the periods and the covered date ranges,
+ * and tells which files are redundant:
+ * a statement is redundant if it is covered by a statement of the same account and type
+ * with an enclosing period which was not generated earlier,
+ * a file is redundant if all its statements are redundant.
+ * A redundant file can be skipped without losing any records.
+ */
+public class StatementPeriodIndex {
+
+    public record Gap(String accountId, LocalDate fromDate, LocalDate toDate) {
+
+        public IbkrServiceException toException() {
+            return new IbkrServiceException(format("Missing period: '%s - %s', accountId=%s", fromDate, toDate, accountId));
+        }
+    }
+
+    public record Overlap(String accountId, LocalDate fromDate, LocalDate toDate) {
+    }
+
+    public record DateRange(LocalDate fromDate, LocalDate toDate) {
+    }
+
+    private record Entry(int fileIndex, int fileSize, FlexStatement header) {
+    }
+
+    private record CoverKey(String accountId, FlexStatementType type) {
+    }
+
+    private final boolean[] redundantFiles;
+
+    private final List<Gap> gaps = new ArrayList<>();
+
+    private final List<Overlap> overlaps = new ArrayList<>();
+
+    private final Map<String, List<DateRange>> coverage = new LinkedHashMap<>();
+
+    /**
+     * @param fileHeaders the statement headers of each file
+     */
+    public StatementPeriodIndex(List<List<FlexStatement>> fileHeaders) {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < fileHeaders.size(); i++) {
+            for (FlexStatement header : fileHeaders.get(i)) {
+                entries.add(new Entry(i, fileHeaders.get(i).size(), header));
+            }
+        }
+        // Enclosing and later generated statements come first, so that they cover the statements after them,
+        // of equal statements the one from a file with more statements, which is more likely kept anyway
+        entries.sort(comparing((Entry e) -> e.header().getAccountId())
+                .thenComparing(e -> e.header().getFromDate())
+                .thenComparing(e -> e.header().getToDate(), Comparator.reverseOrder())
+                .thenComparing(e -> e.header().getWhenGenerated(), nullsLast(Comparator.<ZonedDateTime>reverseOrder()))
+                .thenComparing(Entry::fileSize, Comparator.reverseOrder())
+                .thenComparingInt(Entry::fileIndex));
+
+        int[] nonRedundantCounts = new int[fileHeaders.size()];
+        Map<CoverKey, NavigableMap<LocalDate, ZonedDateTime>> coveringPeriods = new HashMap<>();
+        String accountId = null;
+        LocalDate coveredToDate = null;
+        LocalDate rangeFromDate = null;
+        for (Entry entry : entries) {
+            FlexStatement header = entry.header();
+            LocalDate fromDate = header.getFromDate();
+            LocalDate toDate = header.getToDate();
+            if (!header.getAccountId().equals(accountId)) {
+                if (accountId != null) {
+                    coverage.get(accountId).add(new DateRange(rangeFromDate, coveredToDate));
+                }
+                accountId = header.getAccountId();
+                coverage.put(accountId, new ArrayList<>());
+                coveredToDate = toDate;
+                rangeFromDate = fromDate;
+            } else {
+                Gap gap = findGap(accountId, coveredToDate, header);
+                if (gap != null) {
+                    gaps.add(gap);
+                }
+                if (fromDate.isAfter(coveredToDate.plusDays(1))) {
+                    coverage.get(accountId).add(new DateRange(rangeFromDate, coveredToDate));
+                    rangeFromDate = fromDate;
+                } else if (!fromDate.isAfter(coveredToDate) && !FlexStatementType.TCF.equals(header.getType())) {
+                    overlaps.add(new Overlap(accountId, fromDate, toDate.isBefore(coveredToDate) ? toDate : coveredToDate));
+                }
+                if (toDate.isAfter(coveredToDate)) {
+                    coveredToDate = toDate;
+                }
+            }
+
+            NavigableMap<LocalDate, ZonedDateTime> periods = coveringPeriods
+                    .computeIfAbsent(new CoverKey(accountId, header.getType()), k -> new TreeMap<>());
+            if (!isCovered(periods, toDate, header.getWhenGenerated())) {
+                nonRedundantCounts[entry.fileIndex()]++;
+                addCoveringPeriod(periods, toDate, header.getWhenGenerated());
+            }
+        }
+        if (accountId != null) {
+            coverage.get(accountId).add(new DateRange(rangeFromDate, coveredToDate));
+        }
+
+        redundantFiles = new boolean[fileHeaders.size()];
+        for (int i = 0; i < redundantFiles.length; i++) {
+            redundantFiles[i] = !fileHeaders.get(i).isEmpty() && nonRedundantCounts[i] == 0;
+        }
+    }
+
+    /**
+     * Returns a gap between the date covered so far and the statement, or null.
+     * Trade confirmation statements and statements of unknown type for today only never make a gap.
+     */
+    public static Gap findGap(String accountId, LocalDate coveredToDate, FlexStatement header) {
+        LocalDate nextPeriodFrom = coveredToDate.plusDays(1);
+        LocalDate fromDate = header.getFromDate();
+        if (!nextPeriodFrom.isBefore(fromDate)) {
+            return null;
+        }
+        FlexStatementType type = header.getType();
+        LocalDate today = LocalDate.now();
+        boolean isTodayPeriod = fromDate.isEqual(today) && header.getToDate().isEqual(today);
+        if (FlexStatementType.TCF.equals(type) || (type == null && isTodayPeriod)) {
+            return null;
+        }
+        return new Gap(accountId, nextPeriodFrom, fromDate.minusDays(1));
+    }
+
+    /**
+     * The covering periods of one account and type seen so far, all of them start on or before the current statement.
+     * Only the periods not dominated by a longer and later generated one are kept,
+     * so with rising end dates their generation times fall,
+     * and the first period ending on or after a date is the latest generated one of those.
+     */
+    private static boolean isCovered(NavigableMap<LocalDate, ZonedDateTime> periods, LocalDate toDate, ZonedDateTime whenGenerated) {
+        if (whenGenerated == null) {
+            return false;
+        }
+        Map.Entry<LocalDate, ZonedDateTime> coveringPeriod = periods.ceilingEntry(toDate);
+        return coveringPeriod != null && !coveringPeriod.getValue().isBefore(whenGenerated);
+    }
+
+    private static void addCoveringPeriod(NavigableMap<LocalDate, ZonedDateTime> periods, LocalDate toDate, ZonedDateTime whenGenerated) {
+        if (whenGenerated == null) {
+            return;
+        }
+        NavigableMap<LocalDate, ZonedDateTime> dominatedPeriods = periods.headMap(toDate, true).descendingMap();
+        dominatedPeriods.values().removeIf(periodWhenGenerated -> !periodWhenGenerated.isAfter(whenGenerated));
+        periods.put(toDate, whenGenerated);
+    }
+
+    public List<Gap> getGaps() {
+        return Collections.unmodifiableList(gaps);
+    }
+
+    public List<Overlap> getOverlaps() {
+        return Collections.unmodifiableList(overlaps);
+    }
+
+    public boolean isRedundantFile(int fileIndex) {
+        return redundantFiles[fileIndex];
+    }
+
+    /**
+     * Returns the covered date ranges of the account in date order.
+     */
+    public List<DateRange> getCoverage(String accountId) {
+        return Collections.unmodifiableList(coverage.getOrDefault(accountId, List.of()));
+    }
+
+    public boolean isCovered(String accountId, LocalDate fromDate, LocalDate toDate) {
+        List<DateRange> ranges = coverage.getOrDefault(accountId, List.of());
+        int i = Collections.binarySearch(ranges, new DateRange(fromDate, fromDate), comparing(DateRange::fromDate));
+        int rangeIndex = i >= 0 ? i : -i - 2;
+        return rangeIndex >= 0 && !ranges.get(rangeIndex).toDate().isBefore(toDate);
+    }
+
+    /**
+     * Throws the first gap in account and date order, the same way as merging the statements.
+     */
+    public void checkGaps() {
+        if (!gaps.isEmpty()) {
+            throw gaps.get(0).toException();
+        }
+    }
+}
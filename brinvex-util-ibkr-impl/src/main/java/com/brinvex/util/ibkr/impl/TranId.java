@@ -0,0 +1,283 @@
+package com.brinvex.util.ibkr.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.Objects;
+
+/**
+ * ID of a raw transaction made of its date-time, two IBKR IDs and a kind.
+ * <p>
+ * The natural ordering is the same as the ordering of the string form {@code dateTime/id1/id2/kind},
+ * but it is computed from the date-time fields and the numeric values of the IBKR IDs,
+ * so that sorting and deduplication do not need the string form, which is built only when it is asked for.
+ */
+public final class TranId implements Comparable<TranId> {
+
+    public enum Kind {
+        CASH_TRAN("CashTran"),
+        TRADE("Trade"),
+        TRADE_CONFIRM("TradeConfirm");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * IBKR IDs of up to 18 digits are kept as numbers.
+     */
+    private static final int MAX_NUMERIC_ID_LENGTH = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_NUMERIC_ID_LENGTH + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final Temporal dateTime;
+
+    /**
+     * Local date-time of a {@link ZonedDateTime} in epoch seconds, unused for other date-times.
+     */
+    private final long localEpochSecond;
+
+    private final long id1;
+    private final long id2;
+    private final int id1Length;
+    private final int id2Length;
+
+    /**
+     * IBKR IDs which are not numbers, otherwise null.
+     */
+    private final String id1String;
+    private final String id2String;
+
+    private final Kind kind;
+
+    private String dateTimeString;
+
+    private String string;
+
+    private TranId(Temporal dateTime, String id1, String id2, Kind kind) {
+        this.dateTime = dateTime;
+        this.localEpochSecond = dateTime instanceof ZonedDateTime zdt ? zdt.toLocalDateTime().toEpochSecond(ZoneOffset.UTC) : 0;
+        this.id1Length = numericLength(id1);
+        this.id1 = id1Length > 0 ? Long.parseLong(id1) : 0;
+        this.id1String = id1Length > 0 ? null : String.valueOf(id1);
+        this.id2Length = numericLength(id2);
+        this.id2 = id2Length > 0 ? Long.parseLong(id2) : 0;
+        this.id2String = id2Length > 0 ? null : String.valueOf(id2);
+        this.kind = Objects.requireNonNull(kind);
+    }
+
+    public static TranId of(Temporal dateTime, String id1, String id2, Kind kind) {
+        return new TranId(dateTime, id1, id2, kind);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public int compareTo(TranId other) {
+        int result = compareDateTimes(other);
+        if (result != 0) {
+            return result;
+        }
+        result = compareIds(id1, id1Length, id1String, other.id1, other.id1Length, other.id1String);
+        if (result != 0) {
+            return result;
+        }
+        result = compareIds(id2, id2Length, id2String, other.id2, other.id2Length, other.id2String);
+        if (result != 0) {
+            return result;
+        }
+        return kind.label.compareTo(other.kind.label);
+    }
+
+    /**
+     * Compares the date-times the way their strings followed by {@code /} are compared.
+     * Dates and the local date-times of zoned date-times are compared as numbers except for the cases
+     * in which the ISO string order differs from the time order, e.g. a whole minute with the offset {@code Z}.
+     */
+    private int compareDateTimes(TranId other) {
+        LocalDate date1 = toFourDigitYearDate(dateTime);
+        LocalDate date2 = toFourDigitYearDate(other.dateTime);
+        if (date1 != null && date2 != null && (dateTime instanceof LocalDate || other.dateTime instanceof LocalDate)) {
+            int result = date1.compareTo(date2);
+            if (result != 0) {
+                return result;
+            }
+            // A date is followed by '/', a date-time by 'T'
+            boolean isDate1 = dateTime instanceof LocalDate;
+            boolean isDate2 = other.dateTime instanceof LocalDate;
+            return isDate1 == isDate2 ? 0 : isDate1 ? -1 : 1;
+        }
+        if (date1 != null && date2 != null && dateTime instanceof ZonedDateTime zdt1 && other.dateTime instanceof ZonedDateTime zdt2) {
+            long minute1 = Math.floorDiv(localEpochSecond, 60);
+            long minute2 = Math.floorDiv(other.localEpochSecond, 60);
+            if (minute1 != minute2) {
+                return Long.compare(minute1, minute2);
+            }
+            boolean seconds1 = zdt1.getSecond() != 0 || zdt1.getNano() != 0;
+            boolean seconds2 = zdt2.getSecond() != 0 || zdt2.getNano() != 0;
+            if (seconds1 && seconds2) {
+                if (zdt1.getSecond() != zdt2.getSecond()) {
+                    return Integer.compare(zdt1.getSecond(), zdt2.getSecond());
+                }
+                if (zdt1.getNano() == zdt2.getNano()) {
+                    return compareZones(zdt1, zdt2);
+                }
+            } else if (seconds1 != seconds2) {
+                // A whole minute is followed by its offset, the other date-time by ':' and its seconds
+                char offsetStart = (seconds1 ? zdt2 : zdt1).getOffset().getId().charAt(0);
+                int wholeMinuteResult = offsetStart < ':' ? -1 : 1;
+                return seconds1 ? -wholeMinuteResult : wholeMinuteResult;
+            } else {
+                return compareZones(zdt1, zdt2);
+            }
+        }
+        return compareTerminated(dateTimeString(), other.dateTimeString());
+    }
+
+    /**
+     * Returns the date of a date or a zoned date-time whose year has four digits in the ISO format, otherwise null.
+     */
+    private static LocalDate toFourDigitYearDate(Temporal dateTime) {
+        LocalDate date;
+        if (dateTime instanceof LocalDate d) {
+            date = d;
+        } else if (dateTime instanceof ZonedDateTime zdt) {
+            date = zdt.toLocalDate();
+        } else {
+            return null;
+        }
+        return date.getYear() >= 0 && date.getYear() <= 9999 ? date : null;
+    }
+
+    private String dateTimeString() {
+        String s = dateTimeString;
+        if (s == null) {
+            s = String.valueOf(dateTime);
+            dateTimeString = s;
+        }
+        return s;
+    }
+
+    private static int compareZones(ZonedDateTime zdt1, ZonedDateTime zdt2) {
+        if (zdt1.getOffset().equals(zdt2.getOffset()) && zdt1.getZone().equals(zdt2.getZone())) {
+            return 0;
+        }
+        return compareTerminated(zdt1.toString(), zdt2.toString());
+    }
+
+    /**
+     * Compares the IDs the way their strings followed by {@code /} are compared.
+     * Numbers of different lengths are compared digit by digit, e.g. 100 is before 99.
+     */
+    private static int compareIds(long id1, int length1, String string1, long id2, int length2, String string2) {
+        if (string1 == null && string2 == null) {
+            if (length1 == length2) {
+                return Long.compare(id1, id2);
+            }
+            int length = Math.max(length1, length2);
+            int result = Long.compare(id1 * POWERS_OF_TEN[length - length1], id2 * POWERS_OF_TEN[length - length2]);
+            return result != 0 ? result : Integer.compare(length1, length2);
+        }
+        return compareTerminated(
+                string1 != null ? string1 : Long.toString(id1),
+                string2 != null ? string2 : Long.toString(id2)
+        );
+    }
+
+    /**
+     * Compares the strings as if both were followed by {@code /}.
+     */
+    private static int compareTerminated(String s1, String s2) {
+        int length1 = s1.length();
+        int length2 = s2.length();
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            char c1 = s1.charAt(i);
+            char c2 = s2.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        if (length1 == length2) {
+            return 0;
+        }
+        return length1 < length2 ? '/' - s2.charAt(length) : s1.charAt(length) - '/';
+    }
+
+    /**
+     * Returns the length of the ID if it is a number without leading zeros which is kept as a number, otherwise 0.
+     */
+    private static int numericLength(String id) {
+        if (id == null) {
+            return 0;
+        }
+        int length = id.length();
+        if (length == 0 || length > MAX_NUMERIC_ID_LENGTH || (id.charAt(0) == '0' && length > 1)) {
+            return 0;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TranId other)) {
+            return false;
+        }
+        return id1 == other.id1
+               && id2 == other.id2
+               && id1Length == other.id1Length
+               && id2Length == other.id2Length
+               && kind == other.kind
+               && Objects.equals(id1String, other.id1String)
+               && Objects.equals(id2String, other.id2String)
+               && Objects.equals(dateTime, other.dateTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dateTime, id1, id2, id1String, id2String, kind);
+    }
+
+    /**
+     * Returns the string form {@code dateTime/id1/id2/kind}, it is built once.
+     */
+    @Override
+    public String toString() {
+        String s = string;
+        if (s == null) {
+            s = dateTimeString() + '/'
+                + (id1String != null ? id1String : Long.toString(id1)) + '/'
+                + (id2String != null ? id2String : Long.toString(id2)) + '/'
+                + kind.label;
+            string = s;
+        }
+        return s;
+    }
+}
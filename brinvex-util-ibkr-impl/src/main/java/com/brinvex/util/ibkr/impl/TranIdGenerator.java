@@ -5,33 +5,62 @@ import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
 import com.brinvex.util.ibkr.api.model.raw.Trade;
 import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * Natural ordering of all returned IDs is consistent with natural ordering of CashTransaction+Trade+TradeConfirm.
  */
 public class TranIdGenerator {
 
     public static String getId(CashTransaction cashTran) {
-        return "%s/%s/%s/CashTran".formatted(
-                cashTran.getDateTime(), cashTran.getTransactionID(), cashTran.getActionID()
-        );
+        return getTranId(cashTran).toString();
     }
 
     public static String getId(Trade trade) {
-        return "%s/%s/%s/Trade".formatted(
-                trade.getDateTime(), trade.getTradeID(), trade.getIbOrderID()
-        );
+        return getTranId(trade).toString();
     }
 
     public static String getId(TradeConfirm tradeConfirm) {
-        return "%s/%s/%s/TradeConfirm".formatted(
-                tradeConfirm.getDateTime(), tradeConfirm.getTradeID(), tradeConfirm.getOrderID()
-        );
+        return getTranId(tradeConfirm).toString();
     }
 
     public static String getId(CorporateAction corpAction) {
-        return "%s/%s/%s/Trade".formatted(
-                corpAction.getDateTime(), corpAction.getTransactionId(), corpAction.getActionID()
-        );
+        return getTranId(corpAction).toString();
+    }
+
+    public static TranId getTranId(CashTransaction cashTran) {
+        return TranId.of(cashTran.getDateTime(), cashTran.getTransactionID(), cashTran.getActionID(), TranId.Kind.CASH_TRAN);
+    }
+
+    public static TranId getTranId(Trade trade) {
+        return TranId.of(trade.getDateTime(), trade.getTradeID(), trade.getIbOrderID(), TranId.Kind.TRADE);
+    }
+
+    public static TranId getTranId(TradeConfirm tradeConfirm) {
+        return TranId.of(tradeConfirm.getDateTime(), tradeConfirm.getTradeID(), tradeConfirm.getOrderID(), TranId.Kind.TRADE_CONFIRM);
+    }
+
+    /**
+     * Corporate actions have the kind of trades, as their string IDs always had.
+     */
+    public static TranId getTranId(CorporateAction corpAction) {
+        return TranId.of(corpAction.getDateTime(), corpAction.getTransactionId(), corpAction.getActionID(), TranId.Kind.TRADE);
+    }
+
+    /**
+     * Returns the records with their IDs sorted by the IDs, each ID is computed once.
+     */
+    public static <T> List<Map.Entry<TranId, T>> sortById(Collection<T> records, Function<T, TranId> idFunction) {
+        List<Map.Entry<TranId, T>> sortedRecords = new ArrayList<>(records.size());
+        for (T record : records) {
+            sortedRecords.add(Map.entry(idFunction.apply(record), record));
+        }
+        sortedRecords.sort(Map.Entry.comparingByKey());
+        return sortedRecords;
     }
 
 }
@@ -40,20 +40,27 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import static com.brinvex.util.ibkr.impl.ValidationUtil.assertIsNegative;
 import static com.brinvex.util.ibkr.impl.ValidationUtil.assertTrue;
 import static java.math.BigDecimal.ZERO;
 import static java.util.Collections.emptyList;
-import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNullElse;
 
 @SuppressWarnings({"DuplicatedCode"})
 public class TransactionMapper {
 
     public List<Transaction> mapCashTransactions(Set<String> oldTranIds, List<CashTransaction> rawCashTrans) {
-        rawCashTrans = new ArrayList<>(rawCashTrans);
-        rawCashTrans.sort(comparing(TranIdGenerator::getId));
+        return mapCashTransactions(oldTranIds::contains, rawCashTrans);
+    }
+
+    /**
+     * Maps the cash transactions and leaves out those whose ID the given test reports as already known.
+     */
+    public List<Transaction> mapCashTransactions(Predicate<String> oldTranId, List<CashTransaction> rawCashTrans) {
+        List<Map.Entry<TranId, CashTransaction>> sortedRawCashTrans = TranIdGenerator.sortById(rawCashTrans, TranIdGenerator::getTranId);
+        rawCashTrans = sortedRawCashTrans.stream().map(Map.Entry::getValue).toList();
 
         Map<String, List<CashTransaction>> rawTransByActionId = new LinkedHashMap<>();
         for (CashTransaction rawTran : rawCashTrans) {
@@ -63,11 +70,12 @@ public class TransactionMapper {
         List<Transaction> resultTrans = new ArrayList<>();
         Set<CashTransaction> rawTransToSkip = new HashSet<>();
         Set<String> newTranIds = new HashSet<>();
-        for (CashTransaction rawCashTran : rawCashTrans) {
+        for (Map.Entry<TranId, CashTransaction> sortedRawCashTran : sortedRawCashTrans) {
+            CashTransaction rawCashTran = sortedRawCashTran.getValue();
             if (rawTransToSkip.contains(rawCashTran)) {
                 continue;
             }
-            var tranId = TranIdGenerator.getId(rawCashTran);
+            var tranId = sortedRawCashTran.getKey().toString();
             if (!newTranIds.add(tranId)) {
                 throw new IbkrServiceException("ID collision: %s, %s".formatted(tranId, rawCashTran));
             }
@@ -211,15 +219,22 @@ public class TransactionMapper {
                 throw new IbkrServiceException("Not yet implemented tran=%s".formatted(rawCashTran));
             }
         }
-        return resultTrans.stream().filter(t -> !oldTranIds.contains(t.getId())).toList();
+        return resultTrans.stream().filter(t -> !oldTranId.test(t.getId())).toList();
     }
 
     public List<Transaction> mapTrades(
             Set<String> oldTranIds,
             List<Trade> rawTrades
     ) {
-        rawTrades = new ArrayList<>(rawTrades);
-        rawTrades.sort(comparing(TranIdGenerator::getId));
+        return mapTrades(oldTranIds::contains, rawTrades);
+    }
+
+    public List<Transaction> mapTrades(
+            Predicate<String> oldTranId,
+            List<Trade> rawTrades
+    ) {
+        List<Map.Entry<TranId, Trade>> sortedRawTrades = TranIdGenerator.sortById(rawTrades, TranIdGenerator::getTranId);
+        rawTrades = sortedRawTrades.stream().map(Map.Entry::getValue).toList();
 
         Map<String, List<Trade>> rawTradesByIbOrderId = new LinkedHashMap<>();
         for (Trade rawTran : rawTrades) {
@@ -228,8 +243,9 @@ public class TransactionMapper {
 
         List<Transaction> resultTrans = new ArrayList<>();
         Set<String> newTranIds = new HashSet<>();
-        for (Trade rawTrade : rawTrades) {
-            String tranId = TranIdGenerator.getId(rawTrade);
+        for (Map.Entry<TranId, Trade> sortedRawTrade : sortedRawTrades) {
+            Trade rawTrade = sortedRawTrade.getValue();
+            String tranId = sortedRawTrade.getKey().toString();
             if (!newTranIds.add(tranId)) {
                 throw new IbkrServiceException("ID collision: %s, %s".formatted(tranId, rawTrade));
             }
@@ -345,12 +361,19 @@ public class TransactionMapper {
                 throw new IbkrServiceException("Not yet implemented tran=%s".formatted(rawTrade));
             }
         }
-        return resultTrans.stream().filter(t -> !oldTranIds.contains(t.getId())).toList();
+        return resultTrans.stream().filter(t -> !oldTranId.test(t.getId())).toList();
     }
 
     public List<Transaction> mapTradeConfirms(
             Set<String> oldTranIds,
             List<TradeConfirm> rawTradeConfirms
+    ) {
+        return mapTradeConfirms(oldTranIds::contains, rawTradeConfirms);
+    }
+
+    public List<Transaction> mapTradeConfirms(
+            Predicate<String> oldTranId,
+            List<TradeConfirm> rawTradeConfirms
     ) {
         List<Trade> tradeConfirmTrades = new ArrayList<>();
         for (TradeConfirm rawTradeConfirm : rawTradeConfirms) {
@@ -383,20 +406,27 @@ public class TransactionMapper {
             trade.setOrderTime(rawTradeConfirm.getOrderTime());
             tradeConfirmTrades.add(trade);
         }
-        return mapTrades(oldTranIds, tradeConfirmTrades);
+        return mapTrades(oldTranId, tradeConfirmTrades);
     }
 
     public List<Transaction> mapCorporateAction(
             Set<String> oldTranIds,
             List<CorporateAction> rawCorpActions
     ) {
-        rawCorpActions = new ArrayList<>(rawCorpActions);
-        rawCorpActions.sort(comparing(TranIdGenerator::getId));
+        return mapCorporateAction(oldTranIds::contains, rawCorpActions);
+    }
+
+    public List<Transaction> mapCorporateAction(
+            Predicate<String> oldTranId,
+            List<CorporateAction> rawCorpActions
+    ) {
+        List<Map.Entry<TranId, CorporateAction>> sortedRawCorpActions = TranIdGenerator.sortById(rawCorpActions, TranIdGenerator::getTranId);
 
         List<Transaction> resultTrans = new ArrayList<>();
         Set<String> newTranIds = new HashSet<>();
-        for (CorporateAction rawCorpAction : rawCorpActions) {
-            String tranId = TranIdGenerator.getId(rawCorpAction);
+        for (Map.Entry<TranId, CorporateAction> sortedRawCorpAction : sortedRawCorpActions) {
+            CorporateAction rawCorpAction = sortedRawCorpAction.getValue();
+            String tranId = sortedRawCorpAction.getKey().toString();
             if (!newTranIds.add(tranId)) {
                 throw new IbkrServiceException("ID collision: %s, %s".formatted(tranId, rawCorpAction));
             }
@@ -479,7 +509,7 @@ public class TransactionMapper {
                 throw new IbkrServiceException("Not yet implemented rawCorpAction=%s".formatted(rawCorpAction));
             }
         }
-        return resultTrans.stream().filter(t -> !oldTranIds.contains(t.getId())).toList();
+        return resultTrans.stream().filter(t -> !oldTranId.test(t.getId())).toList();
     }
 
     private Country detectCountryByExchange(String listingExchange) {
@@ -0,0 +1,59 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link FlexXmlCursor} backed by {@link XMLEventReader}.
+ */
+class EventFlexXmlCursor extends FlexXmlCursor {
+
+    private final XMLEventReader reader;
+
+    private final Map<String, QName> attributeQNames = new HashMap<>();
+
+    private StartElement startElement;
+
+    private String elementName;
+
+    EventFlexXmlCursor(XMLEventReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    boolean nextStartElement() throws XMLStreamException {
+        while (reader.hasNext()) {
+            XMLEvent xmlEvent = reader.nextEvent();
+            if (xmlEvent.isStartElement()) {
+                startElement = xmlEvent.asStartElement();
+                elementName = startElement.getName().getLocalPart();
+                return true;
+            }
+        }
+        startElement = null;
+        elementName = null;
+        return false;
+    }
+
+    @Override
+    String getElementName() {
+        return elementName;
+    }
+
+    @Override
+    String findAttributeValue(String attributeName) {
+        Attribute attribute = startElement.getAttributeByName(attributeQNames.computeIfAbsent(attributeName, QName::new));
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+}
@@ -0,0 +1,86 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the UTF-8 bytes of a Flex statement into chunks which can be parsed independently.
+ * <p>
+ * Every chunk but the first starts at the start tag of a record element.
+ * Records are self-contained attribute-only elements and a literal {@code '<'}
+ * cannot occur in an attribute value, so a record start tag is found by looking for {@code '<'}
+ * followed by a record element name and a whitespace.
+ * Flex statements have no comments or CDATA sections which could hide such a tag.
+ */
+class FlexChunkSplitter {
+
+    private static final byte[][] recordTags = {
+            "<Trade".getBytes(StandardCharsets.US_ASCII),
+            "<CashTransaction".getBytes(StandardCharsets.US_ASCII),
+            "<TradeConfirm".getBytes(StandardCharsets.US_ASCII),
+            "<CorporateAction".getBytes(StandardCharsets.US_ASCII),
+            "<EquitySummaryByReportDateInBase".getBytes(StandardCharsets.US_ASCII),
+    };
+
+    private FlexChunkSplitter() {
+    }
+
+    /**
+     * Returns the chunk start offsets followed by the end offset of the last chunk,
+     * chunks are at least {@code chunkSize} bytes long except for the last one.
+     */
+    static int[] split(ByteBuffer buf, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        int start = buf.position();
+        int limit = buf.limit();
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(start);
+        int p = start;
+        while (limit - p > chunkSize) {
+            int recordStart = findRecordStart(buf, p + chunkSize, limit);
+            if (recordStart < 0) {
+                break;
+            }
+            bounds.add(recordStart);
+            p = recordStart;
+        }
+        bounds.add(limit);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int findRecordStart(ByteBuffer buf, int from, int limit) {
+        for (int p = from; p < limit; p++) {
+            if (buf.get(p) == '<' && isRecordTag(buf, p, limit)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isRecordTag(ByteBuffer buf, int p, int limit) {
+        for (byte[] tag : recordTags) {
+            int end = p + tag.length;
+            if (end < limit && isWhitespace(buf.get(end)) && startsWith(buf, p, tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int p, byte[] bytes) {
+        for (int i = 1; i < bytes.length; i++) {
+            if (buf.get(p + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,93 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decodes the fixed-width IBKR formats {@code yyyyMMdd} and {@code yyyyMMdd;HHmmss zzz}
+ * without going through {@link DateTimeFormatter}.
+ * <p>
+ * The results are the same as the ones of the formatters:
+ * the zone abbreviation is resolved by the formatter the first time it is seen and then taken from a cache,
+ * and any input the fast path is not sure about (other widths, out-of-range fields,
+ * local date-times falling into a zone offset transition) is handed over to the formatter.
+ */
+class FlexDateTimeDecoder {
+
+    private static class LazyHolder {
+        private static final DateTimeFormatter ibkrDf = DateTimeFormatter.ofPattern("yyyyMMdd");
+        // 20230727;052240 EDT ---> 2023-07-27T05:22:40-04:00[America/New_York]
+        private static final DateTimeFormatter ibkrDtf = DateTimeFormatter.ofPattern("yyyyMMdd;HHmmss z");
+    }
+
+    private static final int MAX_CACHED_ZONES = 64;
+
+    private static final ConcurrentMap<String, ZoneId> zoneCache = new ConcurrentHashMap<>();
+
+    private FlexDateTimeDecoder() {
+    }
+
+    static LocalDate parseDate(String str) {
+        if (str.length() == 8) {
+            int year = digits(str, 0, 4);
+            int month = digits(str, 4, 2);
+            int day = digits(str, 6, 2);
+            if (isValidDate(year, month, day)) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(str, LazyHolder.ibkrDf);
+    }
+
+    static ZonedDateTime parseZonedDateTime(String str) {
+        if (str.length() > 16 && str.charAt(8) == ';' && str.charAt(15) == ' ') {
+            int year = digits(str, 0, 4);
+            int month = digits(str, 4, 2);
+            int day = digits(str, 6, 2);
+            int hour = digits(str, 9, 2);
+            int minute = digits(str, 11, 2);
+            int second = digits(str, 13, 2);
+            ZoneId zone = zoneCache.get(str.substring(16));
+            if (zone != null
+                && isValidDate(year, month, day)
+                && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59) {
+                LocalDateTime localDateTime = LocalDateTime.of(year, month, day, hour, minute, second);
+                if (zone.getRules().getTransition(localDateTime) == null) {
+                    return ZonedDateTime.of(localDateTime, zone);
+                }
+            }
+        }
+        ZonedDateTime zonedDateTime = ZonedDateTime.parse(str, LazyHolder.ibkrDtf);
+        if (str.length() > 16 && zoneCache.size() < MAX_CACHED_ZONES) {
+            zoneCache.putIfAbsent(str.substring(16), zonedDateTime.getZone());
+        }
+        return zonedDateTime;
+    }
+
+    private static boolean isValidDate(int year, int month, int day) {
+        return year >= 1 && month >= 1 && month <= 12 && day >= 1
+               && (day <= 28 || day <= Month.of(month).length(Year.isLeap(year)));
+    }
+
+    /**
+     * Returns the non-negative value of the given ASCII digits or -1 if there is a non-digit character.
+     */
+    private static int digits(String str, int start, int length) {
+        int value = 0;
+        for (int i = start, end = start + length; i < end; i++) {
+            int d = str.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,126 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Selects which records {@link FlexStatementXmlParser} builds.
+ * <p>
+ * Records of the sections which are not selected and records with a report date outside of
+ * the {@code [fromDate, toDate]} range (a null bound means unbounded) are skipped before they are built.
+ * Statement headers are always parsed.
+ * When all the selected sections of the last statement of the document have been read,
+ * the rest of the document is not read at all.
+ */
+public class FlexParseOptions {
+
+    public enum Section {
+        TRADES("Trades"),
+        TRADE_CONFIRMS("TradeConfirms"),
+        CASH_TRANSACTIONS("CashTransactions"),
+        CORPORATE_ACTIONS("CorporateActions"),
+        EQUITY_SUMMARIES("EquitySummaryInBase");
+
+        /**
+         * Name of the XML element enclosing the records of the section.
+         */
+        private final String elementName;
+
+        Section(String elementName) {
+            this.elementName = elementName;
+        }
+
+        public String getElementName() {
+            return elementName;
+        }
+    }
+
+    public static final FlexParseOptions ALL = new FlexParseOptions(EnumSet.allOf(Section.class));
+
+    public static final FlexParseOptions ACTIVITIES = new FlexParseOptions(EnumSet.of(
+            Section.TRADES, Section.TRADE_CONFIRMS, Section.CASH_TRANSACTIONS, Section.CORPORATE_ACTIONS));
+
+    public static final FlexParseOptions EQUITY_SUMMARIES = new FlexParseOptions(EnumSet.of(Section.EQUITY_SUMMARIES));
+
+    /**
+     * Selects no section, only the statement headers are parsed.
+     */
+    public static final FlexParseOptions HEADERS = new FlexParseOptions(EnumSet.noneOf(Section.class));
+
+    private final Set<Section> sections;
+
+    private final LocalDate fromDate;
+
+    private final LocalDate toDate;
+
+    /**
+     * Bounds formatted as the report dates in the XML, {@code yyyyMMdd} values are compared as strings.
+     */
+    private final String rawFromDate;
+
+    private final String rawToDate;
+
+    public FlexParseOptions(Set<Section> sections) {
+        this(sections, null, null);
+    }
+
+    public FlexParseOptions(Set<Section> sections, LocalDate fromDate, LocalDate toDate) {
+        if (fromDate != null && toDate != null && fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException("fromDate must not be after toDate: %s, %s".formatted(fromDate, toDate));
+        }
+        this.sections = Collections.unmodifiableSet(sections.isEmpty() ? EnumSet.noneOf(Section.class) : EnumSet.copyOf(sections));
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.rawFromDate = fromDate == null ? null : fromDate.format(DateTimeFormatter.BASIC_ISO_DATE);
+        this.rawToDate = toDate == null ? null : toDate.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    public Set<Section> getSections() {
+        return sections;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public boolean includes(Section section) {
+        return sections.contains(section);
+    }
+
+    boolean hasDateRange() {
+        return fromDate != null || toDate != null;
+    }
+
+    /**
+     * Returns true if the given raw report date is within the date range.
+     * A missing date is accepted, so that the record builder reports it.
+     */
+    boolean isInDateRange(String rawDate) {
+        if (rawDate == null || rawDate.isBlank()) {
+            return true;
+        }
+        if (rawDate.length() != 8) {
+            LocalDate date = FlexDateTimeDecoder.parseDate(rawDate);
+            return (fromDate == null || !date.isBefore(fromDate)) && (toDate == null || !date.isAfter(toDate));
+        }
+        return (rawFromDate == null || rawDate.compareTo(rawFromDate) >= 0)
+               && (rawToDate == null || rawDate.compareTo(rawToDate) <= 0);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", FlexParseOptions.class.getSimpleName() + "[", "]")
+                .add("sections=" + sections)
+                .add("fromDate=" + fromDate)
+                .add("toDate=" + toDate)
+                .toString();
+    }
+}
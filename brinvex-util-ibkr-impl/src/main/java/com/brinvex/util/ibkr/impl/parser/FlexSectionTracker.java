@@ -0,0 +1,80 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import com.brinvex.util.ibkr.impl.parser.FlexParseOptions.Section;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Follows the section elements of a Flex document to tell when all the selected sections have been read.
+ * <p>
+ * A section element is considered finished when the next section element starts,
+ * sections do not nest and each appears at most once per statement.
+ * Reading can stop only within the last statement announced by {@code <FlexStatements count="...">};
+ * if the count is missing, the whole document is read.
+ */
+class FlexSectionTracker {
+
+    private static final Section[] sections = Section.values();
+
+    private final Set<Section> selectedSections;
+
+    private final Set<Section> finishedSections = EnumSet.noneOf(Section.class);
+
+    private Section currentSection;
+
+    /**
+     * Number of statements still to come, -1 if unknown.
+     */
+    private int remainingStatements = -1;
+
+    private boolean done;
+
+    FlexSectionTracker(Set<Section> selectedSections) {
+        this.selectedSections = selectedSections;
+    }
+
+    void onStatements(String count) {
+        try {
+            remainingStatements = count == null ? -1 : Integer.parseInt(count.trim());
+        } catch (NumberFormatException e) {
+            remainingStatements = -1;
+        }
+    }
+
+    void onStatement() {
+        currentSection = null;
+        finishedSections.clear();
+        if (remainingStatements > 0) {
+            remainingStatements--;
+        } else {
+            remainingStatements = -1;
+        }
+        done = remainingStatements == 0 && selectedSections.isEmpty();
+    }
+
+    void onElement(String elementName) {
+        Section section = findSection(elementName);
+        if (section == null) {
+            return;
+        }
+        if (currentSection != null) {
+            finishedSections.add(currentSection);
+        }
+        currentSection = section;
+        done = remainingStatements == 0 && finishedSections.containsAll(selectedSections);
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    private static Section findSection(String elementName) {
+        for (Section section : sections) {
+            if (section.getElementName().equals(elementName)) {
+                return section;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,70 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
+import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the received statement headers and records in their order to pass them on to another handler later,
+ * e.g. on another thread. The end of the document is not kept.
+ */
+class FlexStatementBuffer implements FlexStatementHandler {
+
+    private final List<Object> items = new ArrayList<>();
+
+    @Override
+    public void onStatementHeader(FlexStatement header) {
+        items.add(header);
+    }
+
+    @Override
+    public void onTrade(Trade trade) {
+        items.add(trade);
+    }
+
+    @Override
+    public void onCashTransaction(CashTransaction cashTransaction) {
+        items.add(cashTransaction);
+    }
+
+    @Override
+    public void onTradeConfirm(TradeConfirm tradeConfirm) {
+        items.add(tradeConfirm);
+    }
+
+    @Override
+    public void onCorporateAction(CorporateAction corporateAction) {
+        items.add(corporateAction);
+    }
+
+    @Override
+    public void onEquitySummary(EquitySummary equitySummary) {
+        items.add(equitySummary);
+    }
+
+    void replay(FlexStatementHandler handler) {
+        for (Object item : items) {
+            if (item instanceof FlexStatement header) {
+                handler.onStatementHeader(header);
+            } else if (item instanceof Trade trade) {
+                handler.onTrade(trade);
+            } else if (item instanceof CashTransaction cashTransaction) {
+                handler.onCashTransaction(cashTransaction);
+            } else if (item instanceof TradeConfirm tradeConfirm) {
+                handler.onTradeConfirm(tradeConfirm);
+            } else if (item instanceof CorporateAction corporateAction) {
+                handler.onCorporateAction(corporateAction);
+            } else if (item instanceof EquitySummary equitySummary) {
+                handler.onEquitySummary(equitySummary);
+            } else {
+                throw new IllegalStateException("Unexpected item: " + item);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
+import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Builds a {@link FlexStatement} with all the received records for each received statement header.
+ */
+class FlexStatementCollector implements FlexStatementHandler {
+
+    private final boolean multipleStatements;
+
+    private final List<FlexStatement> flexStatements = new ArrayList<>();
+
+    private FlexStatement flexStatement;
+
+    /**
+     * @param multipleStatements if false, a second statement header is rejected
+     */
+    FlexStatementCollector(boolean multipleStatements) {
+        this.multipleStatements = multipleStatements;
+    }
+
+    @Override
+    public void onStatementHeader(FlexStatement header) {
+        if (flexStatement != null && !multipleStatements) {
+            throw new IllegalArgumentException("Unexpected xml node FlexStatement, multiple statements must be parsed by parseStatements");
+        }
+        flexStatement = header;
+        flexStatements.add(header);
+    }
+
+    @Override
+    public void onTrade(Trade trade) {
+        requireNonNull(flexStatement);
+        flexStatement.getTrades().add(trade);
+    }
+
+    @Override
+    public void onCashTransaction(CashTransaction cashTransaction) {
+        requireNonNull(flexStatement);
+        flexStatement.getCashTransactions().add(cashTransaction);
+    }
+
+    @Override
+    public void onTradeConfirm(TradeConfirm tradeConfirm) {
+        requireNonNull(flexStatement);
+        flexStatement.getTradeConfirms().add(tradeConfirm);
+    }
+
+    @Override
+    public void onCorporateAction(CorporateAction corporateAction) {
+        requireNonNull(flexStatement);
+        flexStatement.getCorporateActions().add(corporateAction);
+    }
+
+    @Override
+    public void onEquitySummary(EquitySummary equitySummary) {
+        requireNonNull(flexStatement);
+        flexStatement.getEquitySummaries().add(equitySummary);
+    }
+
+    /**
+     * Returns the first statement or null if there is none.
+     */
+    FlexStatement getFlexStatement() {
+        return flexStatements.isEmpty() ? null : flexStatements.get(0);
+    }
+
+    List<FlexStatement> getFlexStatements() {
+        return flexStatements;
+    }
+}
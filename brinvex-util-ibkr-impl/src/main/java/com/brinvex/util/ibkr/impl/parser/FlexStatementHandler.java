@@ -0,0 +1,48 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
+import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
+
+/**
+ * Receives the content of a Flex statement record by record, in document order,
+ * as it is read by {@link FlexStatementXmlParser}.
+ * The StAX engines retain nothing, so their memory use does not depend on the statement size.
+ * Exceptions to this: the {@link FlexStatementXmlParser.Engine#SCAN} engine reads a String or InputStream input
+ * into memory as a whole, its conformance mode keeps the whole output and passes it on
+ * only after it has been verified against the StAX run,
+ * and the chunked parsing keeps whole chunks until they are passed on.
+ */
+public interface FlexStatementHandler {
+
+    /**
+     * Called for every FlexStatement element before any of its records.
+     * The given statement carries only the header attributes, its record lists are empty.
+     */
+    default void onStatementHeader(FlexStatement header) {
+    }
+
+    default void onTrade(Trade trade) {
+    }
+
+    default void onCashTransaction(CashTransaction cashTransaction) {
+    }
+
+    default void onTradeConfirm(TradeConfirm tradeConfirm) {
+    }
+
+    default void onCorporateAction(CorporateAction corporateAction) {
+    }
+
+    default void onEquitySummary(EquitySummary equitySummary) {
+    }
+
+    /**
+     * Called once the whole input has been read, for a zip file once after its last entry.
+     */
+    default void onEnd() {
+    }
+}
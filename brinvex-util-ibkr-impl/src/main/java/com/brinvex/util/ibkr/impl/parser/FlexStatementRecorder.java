@@ -0,0 +1,86 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
+import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the string form of every received record and passes the record on to the delegate, if any.
+ * Used to compare the output of two parsing engines.
+ */
+class FlexStatementRecorder implements FlexStatementHandler {
+
+    private final FlexStatementHandler delegate;
+
+    private final List<String> records = new ArrayList<>();
+
+    FlexStatementRecorder(FlexStatementHandler delegate) {
+        this.delegate = delegate == null ? new FlexStatementHandler() {
+        } : delegate;
+    }
+
+    @Override
+    public void onStatementHeader(FlexStatement header) {
+        records.add(header.toString());
+        delegate.onStatementHeader(header);
+    }
+
+    @Override
+    public void onTrade(Trade trade) {
+        records.add(trade.toString());
+        delegate.onTrade(trade);
+    }
+
+    @Override
+    public void onCashTransaction(CashTransaction cashTransaction) {
+        records.add(cashTransaction.toString());
+        delegate.onCashTransaction(cashTransaction);
+    }
+
+    @Override
+    public void onTradeConfirm(TradeConfirm tradeConfirm) {
+        records.add(tradeConfirm.toString());
+        delegate.onTradeConfirm(tradeConfirm);
+    }
+
+    @Override
+    public void onCorporateAction(CorporateAction corporateAction) {
+        records.add(corporateAction.toString());
+        delegate.onCorporateAction(corporateAction);
+    }
+
+    @Override
+    public void onEquitySummary(EquitySummary equitySummary) {
+        records.add(equitySummary.toString());
+        delegate.onEquitySummary(equitySummary);
+    }
+
+    @Override
+    public void onEnd() {
+        delegate.onEnd();
+    }
+
+    /**
+     * Throws {@link IllegalStateException} describing the first difference if the recorded records differ.
+     */
+    void verifySameAs(FlexStatementRecorder expected, String description) {
+        List<String> expectedRecords = expected.records;
+        int size = Math.min(records.size(), expectedRecords.size());
+        for (int i = 0; i < size; i++) {
+            if (!records.get(i).equals(expectedRecords.get(i))) {
+                throw new IllegalStateException("%s - record #%s differs, expected: %s, actual: %s".formatted(
+                        description, i, expectedRecords.get(i), records.get(i)));
+            }
+        }
+        if (records.size() != expectedRecords.size()) {
+            throw new IllegalStateException("%s - record count differs, expected: %s, actual: %s".formatted(
+                    description, expectedRecords.size(), records.size()));
+        }
+    }
+}
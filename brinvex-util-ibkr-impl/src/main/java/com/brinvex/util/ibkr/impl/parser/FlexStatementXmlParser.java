@@ -15,19 +15,38 @@ import com.brinvex.util.ibkr.api.model.raw.SecurityIDType;
 import com.brinvex.util.ibkr.api.model.raw.Trade;
 import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
 import com.brinvex.util.ibkr.api.model.raw.TradeType;
+import com.brinvex.util.ibkr.impl.parser.FlexParseOptions.Section;
 
-import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static java.util.Objects.requireNonNull;
 
@@ -35,351 +54,920 @@ import static java.util.Objects.requireNonNull;
 public class FlexStatementXmlParser {
 
     private static class LazyHolder {
-        private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-
-        private static final DateTimeFormatter ibkrDf = DateTimeFormatter.ofPattern("yyyyMMdd");
-        // 20230727;052240 EDT ---> 2023-07-27T05:22:40-04:00[America/New_York]
-        private static final DateTimeFormatter ibkrDtf = DateTimeFormatter.ofPattern("yyyyMMdd;HHmmss z");
-
-    }
-
-    private static class FlexQueryResponseQN {
-        static final QName type = new QName("type");
-    }
-
-    private static class FlexStatementQN {
-        static final QName accountId = new QName("accountId");
-        static final QName fromDate = new QName("fromDate");
-        static final QName toDate = new QName("toDate");
-        static final QName whenGenerated = new QName("whenGenerated");
-    }
-
-    private static class CashTransactionQN {
-        static final QName currency = new QName("currency");
-        static final QName description = new QName("description");
-        static final QName symbol = new QName("symbol");
-        static final QName listingExchange = new QName("listingExchange");
-        static final QName assetCategory = new QName("assetCategory");
-        static final QName subCategory = new QName("subCategory");
-        static final QName figi = new QName("figi");
-        static final QName isin = new QName("isin");
-        static final QName dateTime = new QName("dateTime");
-        static final QName settleDate = new QName("settleDate");
-        static final QName amount = new QName("amount");
-        static final QName type = new QName("type");
-        static final QName transactionID = new QName("transactionID");
-        static final QName reportDate = new QName("reportDate");
-        static final QName actionID = new QName("actionID");
-    }
-
-    private static class TradeQN {
-        static final QName currency = new QName("currency");
-        static final QName assetCategory = new QName("assetCategory");
-        static final QName subCategory = new QName("subCategory");
-        static final QName symbol = new QName("symbol");
-        static final QName description = new QName("description");
-        static final QName securityID = new QName("securityID");
-        static final QName securityIDType = new QName("securityIDType");
-        static final QName figi = new QName("figi");
-        static final QName isin = new QName("isin");
-        static final QName listingExchange = new QName("listingExchange");
-        static final QName tradeID = new QName("tradeID");
-        static final QName reportDate = new QName("reportDate");
-        static final QName dateTime = new QName("dateTime");
-        static final QName tradeDate = new QName("tradeDate");
-        static final QName settleDateTarget = new QName("settleDateTarget");
-        static final QName transactionType = new QName("transactionType");
-        static final QName exchange = new QName("exchange");
-        static final QName quantity = new QName("quantity");
-        static final QName tradePrice = new QName("tradePrice");
-        static final QName tradeMoney = new QName("tradeMoney");
-        static final QName proceeds = new QName("proceeds");
-        static final QName taxes = new QName("taxes");
-        static final QName ibCommission = new QName("ibCommission");
-        static final QName ibCommissionCurrency = new QName("ibCommissionCurrency");
-        static final QName netCash = new QName("netCash");
-        static final QName cost = new QName("cost");
-        static final QName buySell = new QName("buySell");
-        static final QName transactionID = new QName("transactionID");
-        static final QName ibOrderID = new QName("ibOrderID");
-        static final QName orderTime = new QName("orderTime");
-    }
-
-    private static class TradeConfirmQN {
-        static final QName currency = new QName("currency");
-        static final QName assetCategory = new QName("assetCategory");
-        static final QName subCategory = new QName("subCategory");
-        static final QName symbol = new QName("symbol");
-        static final QName description = new QName("description");
-        static final QName securityID = new QName("securityID");
-        static final QName securityIDType = new QName("securityIDType");
-        static final QName figi = new QName("figi");
-        static final QName isin = new QName("isin");
-        static final QName listingExchange = new QName("listingExchange");
-        static final QName tradeID = new QName("tradeID");
-        static final QName reportDate = new QName("reportDate");
-        static final QName dateTime = new QName("dateTime");
-        static final QName tradeDate = new QName("tradeDate");
-        static final QName settleDate = new QName("settleDate");
-        static final QName transactionType = new QName("transactionType");
-        static final QName exchange = new QName("exchange");
-        static final QName quantity = new QName("quantity");
-        static final QName price = new QName("price");
-        static final QName amount = new QName("amount");
-        static final QName proceeds = new QName("proceeds");
-        static final QName netCash = new QName("netCash");
-        static final QName tax = new QName("tax");
-        static final QName commission = new QName("commission");
-        static final QName commissionCurrency = new QName("commissionCurrency");
-        static final QName buySell = new QName("buySell");
-        static final QName orderID = new QName("orderID");
-        static final QName orderTime = new QName("orderTime");
-    }
-    private static class CorporateActionQN {
-        static final QName currency = new QName("currency");
-        static final QName assetCategory = new QName("assetCategory");
-        static final QName subCategory = new QName("subCategory");
-        static final QName symbol = new QName("symbol");
-        static final QName description = new QName("description");
-        static final QName securityID = new QName("securityID");
-        static final QName securityIDType = new QName("securityIDType");
-        static final QName figi = new QName("figi");
-        static final QName isin = new QName("isin");
-        static final QName listingExchange = new QName("listingExchange");
-        static final QName issuerCountryCode = new QName("issuerCountryCode");
-        static final QName reportDate = new QName("reportDate");
-        static final QName dateTime = new QName("dateTime");
-        static final QName type = new QName("type");
-        static final QName quantity = new QName("quantity");
-        static final QName amount = new QName("amount");
-        static final QName proceeds = new QName("proceeds");
-        static final QName value = new QName("value");
-        static final QName transactionID = new QName("transactionID");
-        static final QName actionID = new QName("actionID");
-    }
-
-    private static class EquitySummaryQN {
-        static final QName currency = new QName("currency");
-        static final QName reportDate = new QName("reportDate");
-        static final QName cash = new QName("cash");
-        static final QName stock = new QName("stock");
-        static final QName dividendAccruals = new QName("dividendAccruals");
-        static final QName interestAccruals = new QName("interestAccruals");
-        static final QName total = new QName("total");
+        /**
+         * XMLInputFactory is not guaranteed to be thread-safe, each thread gets its own instance.
+         */
+        private static final ThreadLocal<XMLInputFactory> xmlInputFactory = ThreadLocal.withInitial(XMLInputFactory::newInstance);
+    }
+
+    /**
+     * Engine used to read the statement XML.
+     */
+    public enum Engine {
+
+        /**
+         * {@link XMLEventReader} based engine, allocates an event object for every XML node.
+         */
+        EVENT,
+
+        /**
+         * {@link XMLStreamReader} based engine, reads attributes by index without per-event objects.
+         */
+        CURSOR,
+
+        /**
+         * Byte-level scanner over the UTF-8 content, files are memory-mapped.
+         * Only start tags are tokenized and attribute values are decoded on demand.
+         * Relies on the flat structure of Flex statements, it is not a general XML parser.
+         */
+        SCAN
+    }
+
+    /**
+     * Default chunk size of {@link #parseInChunks}, smaller files are not split.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final int DECOMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+    private final Engine engine;
+
+    private final boolean conformanceCheck;
+
+    private final Supplier<FlexValueDictionary> dictionarySupplier;
+
+    private final boolean lazyRecords;
+
+    public FlexStatementXmlParser() {
+        this(Engine.CURSOR);
+    }
+
+    public FlexStatementXmlParser(Engine engine) {
+        this(engine, false);
+    }
+
+    /**
+     * @param conformanceCheck if true and the engine is {@link Engine#SCAN}, every statement is parsed
+     *                         also by the {@link Engine#CURSOR} engine and an {@link IllegalStateException}
+     *                         is thrown at the end of the parsing if the two outputs differ,
+     *                         a handler receives the records only after the outputs were found equal
+     */
+    public FlexStatementXmlParser(Engine engine, boolean conformanceCheck) {
+        this(engine, conformanceCheck, null);
+    }
+
+    /**
+     * @param dictionarySupplier if not null, it is called at the start of each parsing and the returned dictionary
+     *                           canonicalizes the repeated strings and small decimals of the parsed records;
+     *                           use {@code FlexValueDictionary::new} for a dictionary per parsing
+     *                           or {@code () -> sharedDictionary} for a dictionary shared by all parsings
+     */
+    public FlexStatementXmlParser(Engine engine, boolean conformanceCheck, Supplier<FlexValueDictionary> dictionarySupplier) {
+        this(engine, conformanceCheck, dictionarySupplier, false);
+    }
+
+    /**
+     * @param lazyRecords if true, trades and cash transactions keep the raw values of the fields
+     *                    which are not needed to build portfolio transactions
+     *                    (e.g. {@link Trade#getCost()}, {@link Trade#getOrderTime()}, report dates)
+     *                    and convert them on the first call of their getters;
+     *                    an invalid value of such a field is reported by the getter, not by the parser
+     */
+    public FlexStatementXmlParser(
+            Engine engine,
+            boolean conformanceCheck,
+            Supplier<FlexValueDictionary> dictionarySupplier,
+            boolean lazyRecords
+    ) {
+        this.engine = requireNonNull(engine);
+        this.conformanceCheck = conformanceCheck;
+        this.dictionarySupplier = dictionarySupplier;
+        this.lazyRecords = lazyRecords;
     }
 
-    @SuppressWarnings("RedundantLabeledSwitchRuleCodeBlock")
     public FlexStatement parseActivities(String statementXmlContent) {
-        FlexStatement flexStatement = null;
+        return parse(statementXmlContent, FlexParseOptions.ACTIVITIES);
+    }
+
+    /**
+     * Reads the statement directly from the given byte stream, the encoding is detected from the XML declaration.
+     * The stream is not closed.
+     */
+    public FlexStatement parseActivities(InputStream statementXmlStream) {
+        return parse(statementXmlStream, FlexParseOptions.ACTIVITIES);
+    }
+
+    public FlexStatement parseActivities(Path statementFilePath) {
+        return parse(statementFilePath, FlexParseOptions.ACTIVITIES);
+    }
+
+    public FlexStatement parseEquitySummaries(String statementXmlContent) {
+        return parse(statementXmlContent, FlexParseOptions.EQUITY_SUMMARIES);
+    }
+
+    /**
+     * Reads the statement directly from the given byte stream, the encoding is detected from the XML declaration.
+     * The stream is not closed.
+     */
+    public FlexStatement parseEquitySummaries(InputStream statementXmlStream) {
+        return parse(statementXmlStream, FlexParseOptions.EQUITY_SUMMARIES);
+    }
+
+    public FlexStatement parseEquitySummaries(Path statementFilePath) {
+        return parse(statementFilePath, FlexParseOptions.EQUITY_SUMMARIES);
+    }
+
+    /**
+     * Parses activities and equity summaries in one pass.
+     */
+    public FlexStatement parseAll(String statementXmlContent) {
+        return parse(statementXmlContent, FlexParseOptions.ALL);
+    }
+
+    /**
+     * Parses activities and equity summaries in one pass.
+     * The stream is not closed.
+     */
+    public FlexStatement parseAll(InputStream statementXmlStream) {
+        return parse(statementXmlStream, FlexParseOptions.ALL);
+    }
+
+    /**
+     * Parses activities and equity summaries in one pass.
+     */
+    public FlexStatement parseAll(Path statementFilePath) {
+        return parse(statementFilePath, FlexParseOptions.ALL);
+    }
+
+    /**
+     * Pushes all records of the statement to the given handler without building a {@link FlexStatement}.
+     */
+    public void parse(String statementXmlContent, FlexStatementHandler handler) {
+        parse(statementXmlContent, FlexParseOptions.ALL, handler);
+    }
+
+    /**
+     * Pushes all records of the statement to the given handler without building a {@link FlexStatement}.
+     * The stream is not closed.
+     */
+    public void parse(InputStream statementXmlStream, FlexStatementHandler handler) {
+        parse(statementXmlStream, FlexParseOptions.ALL, handler);
+    }
+
+    /**
+     * Pushes all records of the statement to the given handler without building a {@link FlexStatement}.
+     */
+    public void parse(Path statementFilePath, FlexStatementHandler handler) {
+        parse(statementFilePath, FlexParseOptions.ALL, handler);
+    }
+
+    /**
+     * Pushes the records selected by the options to the given handler without building a {@link FlexStatement}.
+     */
+    public void parse(String statementXmlContent, FlexParseOptions options, FlexStatementHandler handler) {
         try {
-            XMLEventReader reader = LazyHolder.xmlInputFactory.createXMLEventReader(new StringReader(statementXmlContent));
-            FlexStatementType flexStatementType = null;
-            while (reader.hasNext()) {
-                XMLEvent xmlEvent = reader.nextEvent();
-                if (xmlEvent.isStartElement()) {
-                    StartElement e = xmlEvent.asStartElement();
-                    String elementName = e.getName().getLocalPart();
-
-                    switch (elementName) {
-                        case "FlexQueryResponse" -> {
-                            flexStatementType = FlexStatementType.valueOf(e.getAttributeByName(FlexQueryResponseQN.type).getValue());
-                        }
-                        case "FlexStatement" -> {
-                            if (flexStatement != null) {
-                                throw new IllegalArgumentException("Unexpected xml node FlexStatement");
-                            }
-                            flexStatement = new FlexStatement();
-                            flexStatement.setAccountId(e.getAttributeByName(FlexStatementQN.accountId).getValue());
-                            flexStatement.setFromDate(parseDate(e.getAttributeByName(FlexStatementQN.fromDate).getValue()));
-                            flexStatement.setToDate(parseDate(e.getAttributeByName(FlexStatementQN.toDate).getValue()));
-                            flexStatement.setWhenGenerated(parseZonedDateTime(e.getAttributeByName(FlexStatementQN.whenGenerated).getValue()));
-                            flexStatement.setType(requireNonNull(flexStatementType));
-                        }
-                        case "Trade" -> {
-                            Trade trade = new Trade();
-                            trade.setCurrency(Currency.valueOf(e.getAttributeByName(TradeQN.currency).getValue()));
-                            trade.setAssetCategory(parseAssetCategory(e.getAttributeByName(TradeQN.assetCategory).getValue()));
-                            trade.setAssetSubCategory(parseAssetSubCategory(trade.getAssetCategory(), e.getAttributeByName(TradeQN.subCategory).getValue()));
-                            trade.setSymbol(e.getAttributeByName(TradeQN.symbol).getValue());
-                            trade.setDescription(e.getAttributeByName(TradeQN.description).getValue());
-                            trade.setSecurityID(e.getAttributeByName(TradeQN.securityID).getValue());
-                            trade.setSecurityIDType(parseSecurityIDType(e.getAttributeByName(TradeQN.securityIDType).getValue()));
-                            trade.setFigi(e.getAttributeByName(TradeQN.figi).getValue());
-                            trade.setIsin(e.getAttributeByName(TradeQN.isin).getValue());
-                            trade.setListingExchange(e.getAttributeByName(TradeQN.listingExchange).getValue());
-                            trade.setTradeID(e.getAttributeByName(TradeQN.tradeID).getValue());
-                            trade.setReportDate(parseDate(e.getAttributeByName(TradeQN.reportDate).getValue()));
-                            trade.setDateTime(parseZonedDateTime(e.getAttributeByName(TradeQN.dateTime).getValue()));
-                            trade.setTradeDate(parseDate(e.getAttributeByName(TradeQN.tradeDate).getValue()));
-                            trade.setSettleDateTarget(parseDate(e.getAttributeByName(TradeQN.settleDateTarget).getValue()));
-                            trade.setTransactionType(parseTradeType(e.getAttributeByName(TradeQN.transactionType).getValue()));
-                            trade.setExchange(e.getAttributeByName(TradeQN.exchange).getValue());
-                            trade.setQuantity(new BigDecimal(e.getAttributeByName(TradeQN.quantity).getValue()));
-                            trade.setTradePrice(new BigDecimal(e.getAttributeByName(TradeQN.tradePrice).getValue()));
-                            trade.setTradeMoney(new BigDecimal(e.getAttributeByName(TradeQN.tradeMoney).getValue()));
-                            trade.setProceeds(new BigDecimal(e.getAttributeByName(TradeQN.proceeds).getValue()));
-                            trade.setTaxes(new BigDecimal(e.getAttributeByName(TradeQN.taxes).getValue()));
-                            trade.setIbCommission(new BigDecimal(e.getAttributeByName(TradeQN.ibCommission).getValue()));
-                            trade.setIbCommissionCurrency(Currency.valueOf(e.getAttributeByName(TradeQN.ibCommissionCurrency).getValue()));
-                            trade.setNetCash(new BigDecimal(e.getAttributeByName(TradeQN.netCash).getValue()));
-                            trade.setCost(new BigDecimal(e.getAttributeByName(TradeQN.cost).getValue()));
-                            trade.setBuySell(BuySell.valueOf(e.getAttributeByName(TradeQN.buySell).getValue()));
-                            trade.setTransactionID(e.getAttributeByName(TradeQN.transactionID).getValue());
-                            trade.setIbOrderID(e.getAttributeByName(TradeQN.ibOrderID).getValue());
-                            trade.setOrderTime(parseZonedDateTime(e.getAttributeByName(TradeQN.orderTime).getValue()));
-
-                            requireNonNull(flexStatement);
-                            flexStatement.getTrades().add(trade);
-                        }
-                        case "TradeConfirm" -> {
-                            TradeConfirm tradeConfirm = new TradeConfirm();
-                            tradeConfirm.setCurrency(Currency.valueOf(e.getAttributeByName(TradeConfirmQN.currency).getValue()));
-                            tradeConfirm.setAssetCategory(parseAssetCategory(e.getAttributeByName(TradeConfirmQN.assetCategory).getValue()));
-                            tradeConfirm.setAssetSubCategory(parseAssetSubCategory(tradeConfirm.getAssetCategory(), e.getAttributeByName(TradeConfirmQN.subCategory).getValue()));
-                            tradeConfirm.setSymbol(e.getAttributeByName(TradeConfirmQN.symbol).getValue());
-                            tradeConfirm.setDescription(e.getAttributeByName(TradeConfirmQN.description).getValue());
-                            tradeConfirm.setSecurityID(e.getAttributeByName(TradeConfirmQN.securityID).getValue());
-                            tradeConfirm.setSecurityIDType(parseSecurityIDType(e.getAttributeByName(TradeConfirmQN.securityIDType).getValue()));
-                            tradeConfirm.setFigi(e.getAttributeByName(TradeConfirmQN.figi).getValue());
-                            tradeConfirm.setIsin(e.getAttributeByName(TradeConfirmQN.isin).getValue());
-                            tradeConfirm.setListingExchange(e.getAttributeByName(TradeConfirmQN.listingExchange).getValue());
-                            tradeConfirm.setTradeID(e.getAttributeByName(TradeConfirmQN.tradeID).getValue());
-                            tradeConfirm.setReportDate(parseDate(e.getAttributeByName(TradeConfirmQN.reportDate).getValue()));
-                            tradeConfirm.setDateTime(parseZonedDateTime(e.getAttributeByName(TradeConfirmQN.dateTime).getValue()));
-                            tradeConfirm.setTradeDate(parseDate(e.getAttributeByName(TradeConfirmQN.tradeDate).getValue()));
-                            tradeConfirm.setSettleDate(parseDate(e.getAttributeByName(TradeConfirmQN.settleDate).getValue()));
-                            tradeConfirm.setTransactionType(parseTradeType(e.getAttributeByName(TradeConfirmQN.transactionType).getValue()));
-                            tradeConfirm.setExchange(e.getAttributeByName(TradeConfirmQN.exchange).getValue());
-                            tradeConfirm.setQuantity(new BigDecimal(e.getAttributeByName(TradeConfirmQN.quantity).getValue()));
-                            tradeConfirm.setPrice(new BigDecimal(e.getAttributeByName(TradeConfirmQN.price).getValue()));
-                            tradeConfirm.setAmount(new BigDecimal(e.getAttributeByName(TradeConfirmQN.amount).getValue()));
-                            tradeConfirm.setProceeds(new BigDecimal(e.getAttributeByName(TradeConfirmQN.proceeds).getValue()));
-                            tradeConfirm.setNetCash(new BigDecimal(e.getAttributeByName(TradeConfirmQN.netCash).getValue()));
-                            tradeConfirm.setCommission(new BigDecimal(e.getAttributeByName(TradeConfirmQN.commission).getValue()));
-                            tradeConfirm.setCommissionCurrency(Currency.valueOf(e.getAttributeByName(TradeConfirmQN.commissionCurrency).getValue()));
-                            tradeConfirm.setTax(new BigDecimal(e.getAttributeByName(TradeConfirmQN.tax).getValue()));
-                            tradeConfirm.setBuySell(BuySell.valueOf(e.getAttributeByName(TradeConfirmQN.buySell).getValue()));
-                            tradeConfirm.setOrderID(e.getAttributeByName(TradeConfirmQN.orderID).getValue());
-                            tradeConfirm.setOrderTime(parseZonedDateTime(e.getAttributeByName(TradeConfirmQN.orderTime).getValue()));
-
-                            requireNonNull(flexStatement);
-                            flexStatement.getTradeConfirms().add(tradeConfirm);
-                        }
-                        case "CashTransaction" -> {
-                            CashTransaction cashTran = new CashTransaction();
-                            cashTran.setCurrency(Currency.valueOf(e.getAttributeByName(CashTransactionQN.currency).getValue()));
-                            cashTran.setSymbol(e.getAttributeByName(CashTransactionQN.symbol).getValue());
-                            cashTran.setListingExchange(e.getAttributeByName(CashTransactionQN.listingExchange).getValue());
-                            cashTran.setAssetCategory(parseAssetCategory(e.getAttributeByName(CashTransactionQN.assetCategory).getValue()));
-                            cashTran.setAssetSubCategory(parseAssetSubCategory(cashTran.getAssetCategory(), e.getAttributeByName(CashTransactionQN.subCategory).getValue()));
-                            cashTran.setFigi(e.getAttributeByName(CashTransactionQN.figi).getValue());
-                            cashTran.setIsin(e.getAttributeByName(CashTransactionQN.isin).getValue());
-                            cashTran.setDescription(e.getAttributeByName(CashTransactionQN.description).getValue());
-                            cashTran.setDateTime(parseTemporal(e.getAttributeByName(CashTransactionQN.dateTime).getValue()));
-                            cashTran.setSettleDate(parseDate(e.getAttributeByName(CashTransactionQN.settleDate).getValue()));
-                            cashTran.setAmount(new BigDecimal(e.getAttributeByName(CashTransactionQN.amount).getValue()));
-                            cashTran.setType(parseCashTransactionType(e.getAttributeByName(CashTransactionQN.type).getValue()));
-                            cashTran.setTransactionID(e.getAttributeByName(CashTransactionQN.transactionID).getValue());
-                            cashTran.setReportDate(parseDate(e.getAttributeByName(CashTransactionQN.reportDate).getValue()));
-                            cashTran.setActionID(e.getAttributeByName(CashTransactionQN.actionID).getValue());
-
-                            requireNonNull(flexStatement);
-                            flexStatement.getCashTransactions().add(cashTran);
-                        }
-                        case "CorporateAction" -> {
-                            CorporateAction corpAction = new CorporateAction();
-                            corpAction.setCurrency(Currency.valueOf(e.getAttributeByName(CorporateActionQN.currency).getValue()));
-                            corpAction.setAssetCategory(parseAssetCategory(e.getAttributeByName(CorporateActionQN.assetCategory).getValue()));
-                            corpAction.setAssetSubCategory(parseAssetSubCategory(corpAction.getAssetCategory(), e.getAttributeByName(CorporateActionQN.subCategory).getValue()));
-                            corpAction.setSymbol(e.getAttributeByName(CorporateActionQN.symbol).getValue());
-                            corpAction.setDescription(e.getAttributeByName(CorporateActionQN.description).getValue());
-                            corpAction.setSecurityID(e.getAttributeByName(CorporateActionQN.securityID).getValue());
-                            corpAction.setSecurityIDType(parseSecurityIDType(e.getAttributeByName(CorporateActionQN.securityIDType).getValue()));
-                            corpAction.setFigi(e.getAttributeByName(CorporateActionQN.figi).getValue());
-                            corpAction.setIsin(e.getAttributeByName(CorporateActionQN.isin).getValue());
-                            corpAction.setListingExchange(e.getAttributeByName(CorporateActionQN.listingExchange).getValue());
-                            corpAction.setIssuerCountryCode(e.getAttributeByName(CorporateActionQN.issuerCountryCode).getValue());
-                            corpAction.setReportDate(parseDate(e.getAttributeByName(CorporateActionQN.reportDate).getValue()));
-                            corpAction.setDateTime(parseZonedDateTime(e.getAttributeByName(CorporateActionQN.dateTime).getValue()));
-                            corpAction.setType(parseCorporateActionType(e.getAttributeByName(CorporateActionQN.type).getValue()));
-                            corpAction.setQuantity(new BigDecimal(e.getAttributeByName(CorporateActionQN.quantity).getValue()));
-                            corpAction.setAmount(new BigDecimal(e.getAttributeByName(CorporateActionQN.amount).getValue()));
-                            corpAction.setProceeds(new BigDecimal(e.getAttributeByName(CorporateActionQN.proceeds).getValue()));
-                            corpAction.setValue(new BigDecimal(e.getAttributeByName(CorporateActionQN.value).getValue()));
-                            corpAction.setTransactionId(e.getAttributeByName(CorporateActionQN.transactionID).getValue());
-                            corpAction.setActionID(e.getAttributeByName(CorporateActionQN.actionID).getValue());
-
-                            requireNonNull(flexStatement);
-                            flexStatement.getCorporateActions().add(corpAction);
-                        }
-                    }
-                }
-            }
+            parseInto(statementXmlContent, options, handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    /**
+     * Pushes the records selected by the options to the given handler without building a {@link FlexStatement}.
+     * The stream is not closed.
+     */
+    public void parse(InputStream statementXmlStream, FlexParseOptions options, FlexStatementHandler handler) {
+        try {
+            parseInto(statementXmlStream, options, handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         } catch (XMLStreamException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    /**
+     * Pushes the records selected by the options to the given handler without building a {@link FlexStatement}.
+     * For a {@code .zip} file the statements of all its entries are pushed in the entry order,
+     * {@code .gz} and {@code .zip} files are decompressed as a stream.
+     */
+    public void parse(Path statementFilePath, FlexParseOptions options, FlexStatementHandler handler) {
+        try {
+            parseInto(statementFilePath, options, handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Could not parse: " + statementFilePath, e);
+        }
+    }
 
+    /**
+     * Parses the records selected by the options.
+     */
+    public FlexStatement parse(String statementXmlContent, FlexParseOptions options) {
+        FlexStatementCollector collector = new FlexStatementCollector(false);
+        try {
+            parseInto(statementXmlContent, options, collector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+        FlexStatement flexStatement = collector.getFlexStatement();
         if (flexStatement == null) {
             throw new IllegalArgumentException("Could not parse: " + statementXmlContent);
         }
         return flexStatement;
     }
 
-    public FlexStatement parseEquitySummaries(String statementXmlContent) {
-        FlexStatement flexStatement = null;
-        FlexStatementType flexStatementType = null;
+    /**
+     * Parses the records selected by the options.
+     * The stream is not closed.
+     */
+    public FlexStatement parse(InputStream statementXmlStream, FlexParseOptions options) {
+        FlexStatementCollector collector = new FlexStatementCollector(false);
         try {
-            XMLEventReader reader = LazyHolder.xmlInputFactory.createXMLEventReader(new StringReader(statementXmlContent));
-            while (reader.hasNext()) {
-                XMLEvent xmlEvent = reader.nextEvent();
-                if (xmlEvent.isStartElement()) {
-                    StartElement e = xmlEvent.asStartElement();
-                    String elementName = e.getName().getLocalPart();
-
-                    switch (elementName) {
-                        case "FlexQueryResponse" -> {
-                            flexStatementType = FlexStatementType.valueOf(e.getAttributeByName(FlexQueryResponseQN.type).getValue());
-                        }
-                        case "FlexStatement" -> {
-                            if (flexStatement != null) {
-                                throw new IllegalArgumentException("Unexpected xml node FlexStatement");
-                            }
-                            flexStatement = new FlexStatement();
-                            flexStatement.setType(requireNonNull(flexStatementType));
-                            flexStatement.setAccountId(e.getAttributeByName(FlexStatementQN.accountId).getValue());
-                            flexStatement.setFromDate(parseDate(e.getAttributeByName(FlexStatementQN.fromDate).getValue()));
-                            flexStatement.setToDate(parseDate(e.getAttributeByName(FlexStatementQN.toDate).getValue()));
-                            flexStatement.setWhenGenerated(parseZonedDateTime(e.getAttributeByName(FlexStatementQN.whenGenerated).getValue()));
-                        }
-                        case "EquitySummaryByReportDateInBase" -> {
-                            EquitySummary equitySummary = new EquitySummary();
-                            equitySummary.setCurrency(Currency.valueOf(e.getAttributeByName(EquitySummaryQN.currency).getValue()));
-                            equitySummary.setReportDate(parseDate(e.getAttributeByName(EquitySummaryQN.reportDate).getValue()));
-                            equitySummary.setCash(new BigDecimal(e.getAttributeByName(EquitySummaryQN.cash).getValue()));
-                            equitySummary.setStock(new BigDecimal(e.getAttributeByName(EquitySummaryQN.stock).getValue()));
-                            equitySummary.setDividendAccruals(new BigDecimal(e.getAttributeByName(EquitySummaryQN.dividendAccruals).getValue()));
-                            equitySummary.setInterestAccruals(new BigDecimal(e.getAttributeByName(EquitySummaryQN.interestAccruals).getValue()));
-                            equitySummary.setTotal(new BigDecimal(e.getAttributeByName(EquitySummaryQN.total).getValue()));
-
-                            requireNonNull(flexStatement);
-                            flexStatement.getEquitySummaries().add(equitySummary);
-                        }
-                    }
-                }
-            }
-
+            parseInto(statementXmlStream, options, collector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         } catch (XMLStreamException e) {
             throw new RuntimeException(e);
         }
+        FlexStatement flexStatement = collector.getFlexStatement();
+        if (flexStatement == null) {
+            throw new IllegalArgumentException("Could not parse statement stream");
+        }
+        return flexStatement;
+    }
 
+    /**
+     * Parses the records selected by the options.
+     */
+    public FlexStatement parse(Path statementFilePath, FlexParseOptions options) {
+        if (isZipFile(statementFilePath)) {
+            List<FlexStatement> flexStatements = parseStatements(statementFilePath, options);
+            if (flexStatements.size() != 1) {
+                throw new IllegalArgumentException("Expected one statement in %s, found: %s".formatted(
+                        statementFilePath, flexStatements.size()));
+            }
+            return flexStatements.get(0);
+        }
+        FlexStatementCollector collector = new FlexStatementCollector(false);
+        try {
+            parseInto(statementFilePath, options, collector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Could not parse: " + statementFilePath, e);
+        }
+        FlexStatement flexStatement = collector.getFlexStatement();
         if (flexStatement == null) {
+            throw new IllegalArgumentException("Could not parse: " + statementFilePath);
+        }
+        return flexStatement;
+    }
+
+    /**
+     * Parses the records selected by the options from each statement of a response which can hold
+     * multiple statements, e.g. one per account. Returns one {@link FlexStatement} per statement in the document order.
+     */
+    public List<FlexStatement> parseStatements(String statementXmlContent, FlexParseOptions options) {
+        FlexStatementCollector collector = new FlexStatementCollector(true);
+        try {
+            parseInto(statementXmlContent, options, collector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+        if (collector.getFlexStatements().isEmpty()) {
             throw new IllegalArgumentException("Could not parse: " + statementXmlContent);
         }
+        return collector.getFlexStatements();
+    }
+
+    /**
+     * Parses the records selected by the options from each statement of a response which can hold
+     * multiple statements, e.g. one per account. Returns one {@link FlexStatement} per statement in the document order.
+     * The stream is not closed.
+     */
+    public List<FlexStatement> parseStatements(InputStream statementXmlStream, FlexParseOptions options) {
+        FlexStatementCollector collector = new FlexStatementCollector(true);
+        try {
+            parseInto(statementXmlStream, options, collector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+        if (collector.getFlexStatements().isEmpty()) {
+            throw new IllegalArgumentException("Could not parse statement stream");
+        }
+        return collector.getFlexStatements();
+    }
+
+    /**
+     * Parses the records selected by the options from each statement of the file.
+     * A response can hold multiple statements, e.g. one per account,
+     * and every file entry of a {@code .zip} file is a separate response.
+     * Returns one {@link FlexStatement} per statement in the file order.
+     */
+    public List<FlexStatement> parseStatements(Path statementFilePath, FlexParseOptions options) {
+        if (!isZipFile(statementFilePath)) {
+            FlexStatementCollector collector = new FlexStatementCollector(true);
+            try {
+                parseInto(statementFilePath, options, collector);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (XMLStreamException e) {
+                throw new RuntimeException("Could not parse: " + statementFilePath, e);
+            }
+            if (collector.getFlexStatements().isEmpty()) {
+                throw new IllegalArgumentException("Could not parse: " + statementFilePath);
+            }
+            return collector.getFlexStatements();
+        }
+        List<FlexStatement> flexStatements = new ArrayList<>();
+        try {
+            forEachZipEntry(statementFilePath, (entryName, is) -> {
+                FlexStatementCollector collector = new FlexStatementCollector(true);
+                parseInto(is, options, collector);
+                if (collector.getFlexStatements().isEmpty()) {
+                    throw new IllegalArgumentException("Could not parse: %s!%s".formatted(statementFilePath, entryName));
+                }
+                flexStatements.addAll(collector.getFlexStatements());
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return flexStatements;
+    }
+
+    /**
+     * Parses a large plain XML statement file on several threads:
+     * the file is split into chunks of about {@code chunkSize} bytes at record boundaries,
+     * the chunks are parsed concurrently on the given executor and the handler receives the headers and records
+     * on the calling thread in document order, as with {@link #parse(Path, FlexParseOptions, FlexStatementHandler)}.
+     * <p>
+     * The chunks are always parsed by the {@link Engine#SCAN} engine.
+     * Compressed files and files not larger than the chunk size are parsed by this parser's engine on the calling thread.
+     */
+    public void parseInChunks(
+            Path statementFilePath,
+            FlexParseOptions options,
+            FlexStatementHandler handler,
+            Executor chunkExecutor,
+            int chunkSize
+    ) {
+        try {
+            if (isGzipFile(statementFilePath) || isZipFile(statementFilePath) || Files.size(statementFilePath) <= chunkSize) {
+                parseInto(statementFilePath, options, handler);
+            } else {
+                scanFile(statementFilePath, options, handler, requireNonNull(chunkExecutor), chunkSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Could not parse: " + statementFilePath, e);
+        }
+    }
+
+    /**
+     * Like {@link #parseStatements(Path, FlexParseOptions)}, but a large plain XML file is parsed
+     * in chunks of {@link #DEFAULT_CHUNK_SIZE} bytes concurrently, see {@link #parseInChunks}.
+     */
+    public List<FlexStatement> parseStatementsInChunks(Path statementFilePath, FlexParseOptions options, Executor chunkExecutor) {
+        if (isZipFile(statementFilePath)) {
+            return parseStatements(statementFilePath, options);
+        }
+        FlexStatementCollector collector = new FlexStatementCollector(true);
+        parseInChunks(statementFilePath, options, collector, chunkExecutor, DEFAULT_CHUNK_SIZE);
+        if (collector.getFlexStatements().isEmpty()) {
+            throw new IllegalArgumentException("Could not parse: " + statementFilePath);
+        }
+        return collector.getFlexStatements();
+    }
+
+    /**
+     * Parses only the statement headers of the file, i.e. the account, the period, the generation time and the type.
+     * Returns one {@link FlexStatement} without records per statement in the file order.
+     * Reading stops after the last statement header if the response announces its statement count.
+     */
+    public List<FlexStatement> parseHeaders(Path statementFilePath) {
+        return parseStatements(statementFilePath, FlexParseOptions.HEADERS);
+    }
+
+    private void parseInto(
+            String statementXmlContent,
+            FlexParseOptions options,
+            FlexStatementHandler handler
+    ) throws XMLStreamException, IOException {
+        if (engine == Engine.SCAN) {
+            ByteBuffer bytes = ByteBuffer.wrap(statementXmlContent.getBytes(StandardCharsets.UTF_8));
+            parse(bytes, handler, options, null, 0, staxHandler -> {
+                try (FlexXmlCursor cursor = openCursor(Engine.CURSOR, new StringReader(statementXmlContent))) {
+                    parse(cursor, staxHandler, options);
+                }
+            });
+        } else {
+            try (FlexXmlCursor cursor = openCursor(engine, new StringReader(statementXmlContent))) {
+                parse(cursor, handler, options);
+            }
+        }
+    }
+
+    private void parseInto(
+            InputStream statementXmlStream,
+            FlexParseOptions options,
+            FlexStatementHandler handler
+    ) throws XMLStreamException, IOException {
+        if (engine == Engine.SCAN) {
+            byte[] bytes = statementXmlStream.readAllBytes();
+            parse(ByteBuffer.wrap(bytes), handler, options, null, 0, staxHandler -> {
+                try (FlexXmlCursor cursor = openCursor(Engine.CURSOR, new ByteArrayInputStream(bytes))) {
+                    parse(cursor, staxHandler, options);
+                }
+            });
+        } else {
+            try (FlexXmlCursor cursor = openCursor(engine, nonClosing(statementXmlStream))) {
+                parse(cursor, handler, options);
+            }
+        }
+    }
+
+    private void parseInto(
+            Path statementFilePath,
+            FlexParseOptions options,
+            FlexStatementHandler handler
+    ) throws XMLStreamException, IOException {
+        if (isGzipFile(statementFilePath)) {
+            try (InputStream is = new GZIPInputStream(Files.newInputStream(statementFilePath), DECOMPRESSION_BUFFER_SIZE)) {
+                parseInto(is, options, handler);
+            }
+        } else if (isZipFile(statementFilePath)) {
+            FlexStatementHandler entryHandler = withoutEnd(handler);
+            forEachZipEntry(statementFilePath, (entryName, is) -> parseInto(is, options, entryHandler));
+            handler.onEnd();
+        } else if (engine == Engine.SCAN) {
+            scanFile(statementFilePath, options, handler, null, 0);
+        } else {
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(statementFilePath));
+                 FlexXmlCursor cursor = openCursor(engine, is)) {
+                parse(cursor, handler, options);
+            }
+        }
+    }
+
+    private void scanFile(
+            Path statementFilePath,
+            FlexParseOptions options,
+            FlexStatementHandler handler,
+            Executor chunkExecutor,
+            int chunkSize
+    ) throws XMLStreamException, IOException {
+        parse(ScanFlexXmlCursor.map(statementFilePath), handler, options, chunkExecutor, chunkSize, staxHandler -> {
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(statementFilePath));
+                 FlexXmlCursor cursor = openCursor(Engine.CURSOR, is)) {
+                parse(cursor, staxHandler, options);
+            }
+        });
+    }
+
+    private interface ZipEntryParsing {
+        void parse(String entryName, InputStream entryStream) throws XMLStreamException, IOException;
+    }
+
+    /**
+     * Streams the file entries of the zip file in their order, directories are skipped.
+     */
+    private void forEachZipEntry(Path zipFilePath, ZipEntryParsing entryParsing) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(Files.newInputStream(zipFilePath), DECOMPRESSION_BUFFER_SIZE))) {
+            InputStream entryStream = nonClosing(zis);
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                try {
+                    entryParsing.parse(entry.getName(), entryStream);
+                } catch (XMLStreamException e) {
+                    throw new RuntimeException("Could not parse: %s!%s".formatted(zipFilePath, entry.getName()), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a handler passing everything but the end of the document on,
+     * so that the handler of a zip file receives the end once after the last entry.
+     */
+    private static FlexStatementHandler withoutEnd(FlexStatementHandler handler) {
+        return new FlexStatementHandler() {
+            @Override
+            public void onStatementHeader(FlexStatement header) {
+                handler.onStatementHeader(header);
+            }
+
+            @Override
+            public void onTrade(Trade trade) {
+                handler.onTrade(trade);
+            }
+
+            @Override
+            public void onCashTransaction(CashTransaction cashTransaction) {
+                handler.onCashTransaction(cashTransaction);
+            }
+
+            @Override
+            public void onTradeConfirm(TradeConfirm tradeConfirm) {
+                handler.onTradeConfirm(tradeConfirm);
+            }
+
+            @Override
+            public void onCorporateAction(CorporateAction corporateAction) {
+                handler.onCorporateAction(corporateAction);
+            }
+
+            @Override
+            public void onEquitySummary(EquitySummary equitySummary) {
+                handler.onEquitySummary(equitySummary);
+            }
+        };
+    }
+
+    /**
+     * The XML reader closes its input at the end of the document, the returned wrapper keeps the given stream open.
+     */
+    private static InputStream nonClosing(InputStream inputStream) {
+        return new FilterInputStream(inputStream) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static boolean isGzipFile(Path filePath) {
+        return hasExtension(filePath, ".gz");
+    }
+
+    private static boolean isZipFile(Path filePath) {
+        return hasExtension(filePath, ".zip");
+    }
+
+    private static boolean hasExtension(Path filePath, String extension) {
+        Path fileName = filePath.getFileName();
+        return fileName != null && fileName.toString().toLowerCase(Locale.ROOT).endsWith(extension);
+    }
+
+    private interface StaxParsing {
+        void parse(FlexStatementHandler handler) throws XMLStreamException, IOException;
+    }
+
+    /**
+     * Runs the {@link Engine#SCAN} engine and, in the conformance mode, the given StAX parsing to cross-check it.
+     */
+    private void parse(
+            ByteBuffer statementXmlBytes,
+            FlexStatementHandler handler,
+            FlexParseOptions options,
+            Executor chunkExecutor,
+            int chunkSize,
+            StaxParsing staxParsing
+    ) throws XMLStreamException, IOException {
+        if (!conformanceCheck) {
+            scan(statementXmlBytes, handler, options, chunkExecutor, chunkSize);
+            return;
+        }
+        // The handler receives the records only once they are verified
+        FlexStatementBuffer buffer = new FlexStatementBuffer();
+        FlexStatementRecorder scanned = new FlexStatementRecorder(buffer);
+        scan(statementXmlBytes, scanned, options, chunkExecutor, chunkSize);
+        FlexStatementRecorder expected = new FlexStatementRecorder(null);
+        staxParsing.parse(expected);
+        scanned.verifySameAs(expected, "SCAN engine does not conform to CURSOR engine");
+        buffer.replay(handler);
+        handler.onEnd();
+    }
+
+    /**
+     * Scans the whole content with one cursor, or, if the chunk executor is given,
+     * scans the chunks made by {@link FlexChunkSplitter} concurrently and passes their records on in document order.
+     */
+    private void scan(
+            ByteBuffer statementXmlBytes,
+            FlexStatementHandler handler,
+            FlexParseOptions options,
+            Executor chunkExecutor,
+            int chunkSize
+    ) throws XMLStreamException {
+        if (chunkExecutor == null) {
+            try (FlexXmlCursor cursor = new ScanFlexXmlCursor(statementXmlBytes)) {
+                parse(cursor, handler, options);
+            }
+            return;
+        }
+        int[] bounds = FlexChunkSplitter.split(statementXmlBytes, chunkSize);
+        FlexStatementType flexStatementType = findFlexStatementType(statementXmlBytes);
+        List<CompletableFuture<FlexStatementBuffer>> futures = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            ByteBuffer chunk = statementXmlBytes.duplicate().limit(bounds[i + 1]).position(bounds[i]);
+            // The first chunk reads the FlexQueryResponse element itself
+            FlexStatementType chunkStatementType = i == 0 ? null : flexStatementType;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                FlexStatementBuffer buffer = new FlexStatementBuffer();
+                try (FlexXmlCursor cursor = new ScanFlexXmlCursor(chunk)) {
+                    parse(cursor, buffer, options, chunkStatementType);
+                } catch (XMLStreamException e) {
+                    throw new RuntimeException(e);
+                }
+                return buffer;
+            }, chunkExecutor));
+        }
+        for (CompletableFuture<FlexStatementBuffer> future : futures) {
+            FlexStatementBuffer buffer;
+            try {
+                buffer = future.join();
+            } catch (CompletionException e) {
+                futures.forEach(f -> f.cancel(false));
+                if (e.getCause() instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw e;
+            }
+            buffer.replay(handler);
+        }
+        handler.onEnd();
+    }
+
+    private FlexStatementType findFlexStatementType(ByteBuffer statementXmlBytes) {
+        try (ScanFlexXmlCursor cursor = new ScanFlexXmlCursor(statementXmlBytes.duplicate())) {
+            while (cursor.nextStartElement()) {
+                switch (cursor.getElementName()) {
+                    case "FlexQueryResponse" -> {
+                        return parseFlexStatementType(cursor);
+                    }
+                    case "FlexStatement" -> {
+                        return null;
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    @SuppressWarnings("RedundantLabeledSwitchRuleCodeBlock")
+    private void parse(
+            FlexXmlCursor e,
+            FlexStatementHandler handler,
+            FlexParseOptions options
+    ) throws XMLStreamException {
+        parse(e, handler, options, null);
+    }
+
+    /**
+     * @param flexStatementType the statement type when the cursor starts after the FlexQueryResponse element
+     */
+    private void parse(
+            FlexXmlCursor e,
+            FlexStatementHandler handler,
+            FlexParseOptions options,
+            FlexStatementType flexStatementType
+    ) throws XMLStreamException {
+        FlexValueDictionary dictionary = dictionarySupplier == null ? null : dictionarySupplier.get();
+        FlexSectionTracker sectionTracker = new FlexSectionTracker(options.getSections());
+        while (e.nextStartElement()) {
+            switch (e.getElementName()) {
+                case "FlexQueryResponse" -> {
+                    flexStatementType = parseFlexStatementType(e);
+                }
+                case "FlexStatements" -> {
+                    sectionTracker.onStatements(e.findAttributeValue("count"));
+                }
+                case "FlexStatement" -> {
+                    handler.onStatementHeader(parseFlexStatement(e, flexStatementType));
+                    sectionTracker.onStatement();
+                }
+                case "Trade" -> {
+                    if (isSelected(e, options, Section.TRADES)) {
+                        handler.onTrade(parseTrade(e, dictionary));
+                    }
+                }
+                case "TradeConfirm" -> {
+                    if (isSelected(e, options, Section.TRADE_CONFIRMS)) {
+                        handler.onTradeConfirm(parseTradeConfirm(e, dictionary));
+                    }
+                }
+                case "CashTransaction" -> {
+                    if (isSelected(e, options, Section.CASH_TRANSACTIONS)) {
+                        handler.onCashTransaction(parseCashTransaction(e, dictionary));
+                    }
+                }
+                case "CorporateAction" -> {
+                    if (isSelected(e, options, Section.CORPORATE_ACTIONS)) {
+                        handler.onCorporateAction(parseCorporateAction(e, dictionary));
+                    }
+                }
+                case "EquitySummaryByReportDateInBase" -> {
+                    if (isSelected(e, options, Section.EQUITY_SUMMARIES)) {
+                        handler.onEquitySummary(parseEquitySummary(e, dictionary));
+                    }
+                }
+                default -> {
+                    sectionTracker.onElement(e.getElementName());
+                }
+            }
+            if (sectionTracker.isDone()) {
+                break;
+            }
+        }
+        handler.onEnd();
+    }
+
+    private boolean isSelected(FlexXmlCursor e, FlexParseOptions options, Section section) {
+        return options.includes(section) && (!options.hasDateRange() || options.isInDateRange(e.findAttributeValue("reportDate")));
+    }
+
+    private FlexXmlCursor openCursor(Engine staxEngine, Reader reader) throws XMLStreamException {
+        XMLInputFactory xmlInputFactory = LazyHolder.xmlInputFactory.get();
+        return switch (staxEngine) {
+            case EVENT -> new EventFlexXmlCursor(xmlInputFactory.createXMLEventReader(reader));
+            case CURSOR -> new StreamFlexXmlCursor(xmlInputFactory.createXMLStreamReader(reader));
+            case SCAN -> throw new IllegalArgumentException("Not a StAX engine: " + staxEngine);
+        };
+    }
+
+    private FlexXmlCursor openCursor(Engine staxEngine, InputStream inputStream) throws XMLStreamException {
+        XMLInputFactory xmlInputFactory = LazyHolder.xmlInputFactory.get();
+        return switch (staxEngine) {
+            case EVENT -> new EventFlexXmlCursor(xmlInputFactory.createXMLEventReader(inputStream));
+            case CURSOR -> new StreamFlexXmlCursor(xmlInputFactory.createXMLStreamReader(inputStream));
+            case SCAN -> throw new IllegalArgumentException("Not a StAX engine: " + staxEngine);
+        };
+    }
+
+    private FlexStatementType parseFlexStatementType(FlexXmlCursor e) {
+        return FlexStatementType.valueOf(e.getAttributeValue("type"));
+    }
+
+    private FlexStatement parseFlexStatement(FlexXmlCursor e, FlexStatementType flexStatementType) {
+        FlexStatement flexStatement = new FlexStatement();
+        flexStatement.setAccountId(e.getAttributeValue("accountId"));
+        flexStatement.setFromDate(parseDate(e.getAttributeValue("fromDate")));
+        flexStatement.setToDate(parseDate(e.getAttributeValue("toDate")));
+        flexStatement.setWhenGenerated(parseZonedDateTime(e.getAttributeValue("whenGenerated")));
+        flexStatement.setType(requireNonNull(flexStatementType));
         return flexStatement;
     }
 
-    private SecurityIDType parseSecurityIDType(String str) {
+    private Trade parseTrade(FlexXmlCursor e, FlexValueDictionary dictionary) {
+        Trade trade = lazyRecords ? new LazyTrade(this, dictionary) : new Trade();
+        trade.setCurrency(Currency.valueOf(e.getAttributeValue("currency")));
+        trade.setAssetCategory(parseAssetCategory(e.getAttributeValue("assetCategory")));
+        trade.setAssetSubCategory(parseAssetSubCategory(trade.getAssetCategory(), e.getAttributeValue("subCategory")));
+        trade.setSymbol(canonical(e.getAttributeValue("symbol"), dictionary));
+        trade.setDescription(canonical(e.getAttributeValue("description"), dictionary));
+        trade.setSecurityID(canonical(e.getAttributeValue("securityID"), dictionary));
+        trade.setFigi(canonical(e.getAttributeValue("figi"), dictionary));
+        trade.setIsin(canonical(e.getAttributeValue("isin"), dictionary));
+        trade.setListingExchange(canonical(e.getAttributeValue("listingExchange"), dictionary));
+        trade.setTradeID(e.getAttributeValue("tradeID"));
+        trade.setDateTime(parseZonedDateTime(e.getAttributeValue("dateTime")));
+        trade.setSettleDateTarget(parseDate(e.getAttributeValue("settleDateTarget")));
+        trade.setTransactionType(parseTradeType(e.getAttributeValue("transactionType")));
+        trade.setExchange(canonical(e.getAttributeValue("exchange"), dictionary));
+        trade.setQuantity(parseDecimal(e.getAttributeValue("quantity"), dictionary));
+        trade.setTradePrice(parseDecimal(e.getAttributeValue("tradePrice"), dictionary));
+        trade.setTradeMoney(parseDecimal(e.getAttributeValue("tradeMoney"), dictionary));
+        trade.setProceeds(parseDecimal(e.getAttributeValue("proceeds"), dictionary));
+        trade.setTaxes(parseDecimal(e.getAttributeValue("taxes"), dictionary));
+        trade.setIbCommission(parseDecimal(e.getAttributeValue("ibCommission"), dictionary));
+        trade.setIbCommissionCurrency(Currency.valueOf(e.getAttributeValue("ibCommissionCurrency")));
+        trade.setNetCash(parseDecimal(e.getAttributeValue("netCash"), dictionary));
+        trade.setBuySell(BuySell.valueOf(e.getAttributeValue("buySell")));
+        trade.setTransactionID(e.getAttributeValue("transactionID"));
+        trade.setIbOrderID(canonical(e.getAttributeValue("ibOrderID"), dictionary));
+        if (trade instanceof LazyTrade lazyTrade) {
+            lazyTrade.setRawSecurityIDType(e.getAttributeValue("securityIDType"));
+            lazyTrade.setRawReportDate(e.getAttributeValue("reportDate"));
+            lazyTrade.setRawTradeDate(e.getAttributeValue("tradeDate"));
+            lazyTrade.setRawCost(e.getAttributeValue("cost"));
+            lazyTrade.setRawOrderTime(e.getAttributeValue("orderTime"));
+        } else {
+            trade.setSecurityIDType(parseSecurityIDType(e.getAttributeValue("securityIDType")));
+            trade.setReportDate(parseDate(e.getAttributeValue("reportDate")));
+            trade.setTradeDate(parseDate(e.getAttributeValue("tradeDate")));
+            trade.setCost(parseDecimal(e.getAttributeValue("cost"), dictionary));
+            trade.setOrderTime(parseZonedDateTime(e.getAttributeValue("orderTime")));
+        }
+        return trade;
+    }
+
+    private TradeConfirm parseTradeConfirm(FlexXmlCursor e, FlexValueDictionary dictionary) {
+        TradeConfirm tradeConfirm = new TradeConfirm();
+        tradeConfirm.setCurrency(Currency.valueOf(e.getAttributeValue("currency")));
+        tradeConfirm.setAssetCategory(parseAssetCategory(e.getAttributeValue("assetCategory")));
+        tradeConfirm.setAssetSubCategory(parseAssetSubCategory(tradeConfirm.getAssetCategory(), e.getAttributeValue("subCategory")));
+        tradeConfirm.setSymbol(canonical(e.getAttributeValue("symbol"), dictionary));
+        tradeConfirm.setDescription(canonical(e.getAttributeValue("description"), dictionary));
+        tradeConfirm.setSecurityID(canonical(e.getAttributeValue("securityID"), dictionary));
+        tradeConfirm.setSecurityIDType(parseSecurityIDType(e.getAttributeValue("securityIDType")));
+        tradeConfirm.setFigi(canonical(e.getAttributeValue("figi"), dictionary));
+        tradeConfirm.setIsin(canonical(e.getAttributeValue("isin"), dictionary));
+        tradeConfirm.setListingExchange(canonical(e.getAttributeValue("listingExchange"), dictionary));
+        tradeConfirm.setTradeID(e.getAttributeValue("tradeID"));
+        tradeConfirm.setReportDate(parseDate(e.getAttributeValue("reportDate")));
+        tradeConfirm.setDateTime(parseZonedDateTime(e.getAttributeValue("dateTime")));
+        tradeConfirm.setTradeDate(parseDate(e.getAttributeValue("tradeDate")));
+        tradeConfirm.setSettleDate(parseDate(e.getAttributeValue("settleDate")));
+        tradeConfirm.setTransactionType(parseTradeType(e.getAttributeValue("transactionType")));
+        tradeConfirm.setExchange(canonical(e.getAttributeValue("exchange"), dictionary));
+        tradeConfirm.setQuantity(parseDecimal(e.getAttributeValue("quantity"), dictionary));
+        tradeConfirm.setPrice(parseDecimal(e.getAttributeValue("price"), dictionary));
+        tradeConfirm.setAmount(parseDecimal(e.getAttributeValue("amount"), dictionary));
+        tradeConfirm.setProceeds(parseDecimal(e.getAttributeValue("proceeds"), dictionary));
+        tradeConfirm.setNetCash(parseDecimal(e.getAttributeValue("netCash"), dictionary));
+        tradeConfirm.setCommission(parseDecimal(e.getAttributeValue("commission"), dictionary));
+        tradeConfirm.setCommissionCurrency(Currency.valueOf(e.getAttributeValue("commissionCurrency")));
+        tradeConfirm.setTax(parseDecimal(e.getAttributeValue("tax"), dictionary));
+        tradeConfirm.setBuySell(BuySell.valueOf(e.getAttributeValue("buySell")));
+        tradeConfirm.setOrderID(canonical(e.getAttributeValue("orderID"), dictionary));
+        tradeConfirm.setOrderTime(parseZonedDateTime(e.getAttributeValue("orderTime")));
+        return tradeConfirm;
+    }
+
+    private CashTransaction parseCashTransaction(FlexXmlCursor e, FlexValueDictionary dictionary) {
+        CashTransaction cashTran = lazyRecords ? new LazyCashTransaction(this) : new CashTransaction();
+        cashTran.setCurrency(Currency.valueOf(e.getAttributeValue("currency")));
+        cashTran.setSymbol(canonical(e.getAttributeValue("symbol"), dictionary));
+        cashTran.setListingExchange(canonical(e.getAttributeValue("listingExchange"), dictionary));
+        cashTran.setAssetCategory(parseAssetCategory(e.getAttributeValue("assetCategory")));
+        cashTran.setAssetSubCategory(parseAssetSubCategory(cashTran.getAssetCategory(), e.getAttributeValue("subCategory")));
+        cashTran.setFigi(canonical(e.getAttributeValue("figi"), dictionary));
+        cashTran.setIsin(canonical(e.getAttributeValue("isin"), dictionary));
+        cashTran.setDescription(canonical(e.getAttributeValue("description"), dictionary));
+        cashTran.setDateTime(parseTemporal(e.getAttributeValue("dateTime")));
+        cashTran.setSettleDate(parseDate(e.getAttributeValue("settleDate")));
+        cashTran.setAmount(parseDecimal(e.getAttributeValue("amount"), dictionary));
+        cashTran.setType(parseCashTransactionType(e.getAttributeValue("type")));
+        cashTran.setTransactionID(e.getAttributeValue("transactionID"));
+        cashTran.setActionID(canonical(e.getAttributeValue("actionID"), dictionary));
+        if (cashTran instanceof LazyCashTransaction lazyCashTran) {
+            lazyCashTran.setRawReportDate(e.getAttributeValue("reportDate"));
+        } else {
+            cashTran.setReportDate(parseDate(e.getAttributeValue("reportDate")));
+        }
+        return cashTran;
+    }
+
+    private CorporateAction parseCorporateAction(FlexXmlCursor e, FlexValueDictionary dictionary) {
+        CorporateAction corpAction = new CorporateAction();
+        corpAction.setCurrency(Currency.valueOf(e.getAttributeValue("currency")));
+        corpAction.setAssetCategory(parseAssetCategory(e.getAttributeValue("assetCategory")));
+        corpAction.setAssetSubCategory(parseAssetSubCategory(corpAction.getAssetCategory(), e.getAttributeValue("subCategory")));
+        corpAction.setSymbol(canonical(e.getAttributeValue("symbol"), dictionary));
+        corpAction.setDescription(canonical(e.getAttributeValue("description"), dictionary));
+        corpAction.setSecurityID(canonical(e.getAttributeValue("securityID"), dictionary));
+        corpAction.setSecurityIDType(parseSecurityIDType(e.getAttributeValue("securityIDType")));
+        corpAction.setFigi(canonical(e.getAttributeValue("figi"), dictionary));
+        corpAction.setIsin(canonical(e.getAttributeValue("isin"), dictionary));
+        corpAction.setListingExchange(canonical(e.getAttributeValue("listingExchange"), dictionary));
+        corpAction.setIssuerCountryCode(canonical(e.getAttributeValue("issuerCountryCode"), dictionary));
+        corpAction.setReportDate(parseDate(e.getAttributeValue("reportDate")));
+        corpAction.setDateTime(parseZonedDateTime(e.getAttributeValue("dateTime")));
+        corpAction.setType(parseCorporateActionType(e.getAttributeValue("type")));
+        corpAction.setQuantity(parseDecimal(e.getAttributeValue("quantity"), dictionary));
+        corpAction.setAmount(parseDecimal(e.getAttributeValue("amount"), dictionary));
+        corpAction.setProceeds(parseDecimal(e.getAttributeValue("proceeds"), dictionary));
+        corpAction.setValue(parseDecimal(e.getAttributeValue("value"), dictionary));
+        corpAction.setTransactionId(e.getAttributeValue("transactionID"));
+        corpAction.setActionID(canonical(e.getAttributeValue("actionID"), dictionary));
+        return corpAction;
+    }
+
+    private EquitySummary parseEquitySummary(FlexXmlCursor e, FlexValueDictionary dictionary) {
+        EquitySummary equitySummary = new EquitySummary();
+        equitySummary.setCurrency(Currency.valueOf(e.getAttributeValue("currency")));
+        equitySummary.setReportDate(parseDate(e.getAttributeValue("reportDate")));
+        equitySummary.setCash(parseDecimal(e.getAttributeValue("cash"), dictionary));
+        equitySummary.setStock(parseDecimal(e.getAttributeValue("stock"), dictionary));
+        equitySummary.setDividendAccruals(parseDecimal(e.getAttributeValue("dividendAccruals"), dictionary));
+        equitySummary.setInterestAccruals(parseDecimal(e.getAttributeValue("interestAccruals"), dictionary));
+        equitySummary.setTotal(parseDecimal(e.getAttributeValue("total"), dictionary));
+        return equitySummary;
+    }
+
+    String canonical(String str, FlexValueDictionary dictionary) {
+        return dictionary == null ? str : dictionary.string(str);
+    }
+
+    BigDecimal parseDecimal(String str, FlexValueDictionary dictionary) {
+        return dictionary == null ? new BigDecimal(str) : dictionary.decimal(str);
+    }
+
+    SecurityIDType parseSecurityIDType(String str) {
         return str == null || str.isBlank() ? null : SecurityIDType.valueOf(str);
     }
 
@@ -388,9 +976,9 @@ public class FlexStatementXmlParser {
             return null;
         }
         if (str.indexOf(';') > -1) {
-            return ZonedDateTime.parse(str, LazyHolder.ibkrDtf);
+            return FlexDateTimeDecoder.parseZonedDateTime(str);
         } else {
-            return LocalDate.parse(str, LazyHolder.ibkrDf);
+            return FlexDateTimeDecoder.parseDate(str);
         }
     }
 
@@ -399,17 +987,17 @@ public class FlexStatementXmlParser {
             return null;
         }
         if (str.indexOf(';') > -1) {
-            return ZonedDateTime.parse(str, LazyHolder.ibkrDtf);
+            return FlexDateTimeDecoder.parseZonedDateTime(str);
         } else {
             throw new IllegalArgumentException("Unexpected format: " + str);
         }
     }
 
-    private LocalDate parseDate(String str) {
+    LocalDate parseDate(String str) {
         if (str == null || str.isBlank()) {
             return null;
         }
-        return LocalDate.parse(str, LazyHolder.ibkrDf);
+        return FlexDateTimeDecoder.parseDate(str);
     }
 
     private CashTransactionType parseCashTransactionType(String str) {
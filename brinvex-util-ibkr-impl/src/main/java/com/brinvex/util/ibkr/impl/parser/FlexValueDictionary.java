@@ -0,0 +1,146 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Canonicalizes repeated attribute values so that parsed records share
+ * one instance of e.g. a symbol, an ISIN or a decimal like "0" instead of holding their own copies.
+ * <p>
+ * Strings are canonicalized by value; decimals are canonicalized by their literal,
+ * so "0" and "0.00" stay different instances with their own scale.
+ * Only decimal literals up to {@code maxDecimalLength} characters are canonicalized,
+ * longer ones are mostly unique amounts.
+ * When {@code maxEntries} values are stored, new values are no longer added.
+ * <p>
+ * The dictionary is thread-safe, so it can be shared by statements parsed concurrently.
+ */
+public class FlexValueDictionary {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 16;
+
+    public static final int DEFAULT_MAX_DECIMAL_LENGTH = 8;
+
+    private final int maxEntries;
+
+    private final int maxDecimalLength;
+
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, BigDecimal> decimals = new ConcurrentHashMap<>();
+
+    private final LongAdder stringLookups = new LongAdder();
+    private final LongAdder stringHits = new LongAdder();
+    private final LongAdder decimalLookups = new LongAdder();
+    private final LongAdder decimalHits = new LongAdder();
+
+    public FlexValueDictionary() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_DECIMAL_LENGTH);
+    }
+
+    public FlexValueDictionary(int maxEntries, int maxDecimalLength) {
+        if (maxEntries < 0 || maxDecimalLength < 0) {
+            throw new IllegalArgumentException("Negative limit: maxEntries=%s, maxDecimalLength=%s"
+                    .formatted(maxEntries, maxDecimalLength));
+        }
+        this.maxEntries = maxEntries;
+        this.maxDecimalLength = maxDecimalLength;
+    }
+
+    /**
+     * Returns the canonical instance equal to the given string.
+     */
+    public String string(String str) {
+        if (str == null) {
+            return null;
+        }
+        stringLookups.increment();
+        String canonical = strings.get(str);
+        if (canonical != null) {
+            stringHits.increment();
+            return canonical;
+        }
+        if (size() < maxEntries) {
+            canonical = strings.putIfAbsent(str, str);
+            if (canonical != null) {
+                stringHits.increment();
+                return canonical;
+            }
+        }
+        return str;
+    }
+
+    /**
+     * Returns the canonical decimal for the given literal, or a new decimal if the literal is too long.
+     */
+    public BigDecimal decimal(String literal) {
+        if (literal.length() > maxDecimalLength) {
+            return new BigDecimal(literal);
+        }
+        decimalLookups.increment();
+        BigDecimal canonical = decimals.get(literal);
+        if (canonical != null) {
+            decimalHits.increment();
+            return canonical;
+        }
+        BigDecimal decimal = new BigDecimal(literal);
+        if (size() < maxEntries) {
+            canonical = decimals.putIfAbsent(literal, decimal);
+            if (canonical != null) {
+                decimalHits.increment();
+                return canonical;
+            }
+        }
+        return decimal;
+    }
+
+    public int size() {
+        return strings.size() + decimals.size();
+    }
+
+    public long getStringLookups() {
+        return stringLookups.sum();
+    }
+
+    public long getStringHits() {
+        return stringHits.sum();
+    }
+
+    public long getDecimalLookups() {
+        return decimalLookups.sum();
+    }
+
+    public long getDecimalHits() {
+        return decimalHits.sum();
+    }
+
+    /**
+     * Returns the share of lookups which returned an already known instance, 0 if there was no lookup.
+     */
+    public double getHitRate() {
+        long lookups = getStringLookups() + getDecimalLookups();
+        return lookups == 0 ? 0 : (double) (getStringHits() + getDecimalHits()) / lookups;
+    }
+
+    public void clear() {
+        strings.clear();
+        decimals.clear();
+        stringLookups.reset();
+        stringHits.reset();
+        decimalLookups.reset();
+        decimalHits.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "FlexValueDictionary{" +
+               "size=" + size() +
+               ", stringHits=" + getStringHits() + "/" + getStringLookups() +
+               ", decimalHits=" + getDecimalHits() + "/" + getDecimalLookups() +
+               ", hitRate=" + String.format(Locale.ROOT, "%.3f", getHitRate()) +
+               '}';
+    }
+}
@@ -0,0 +1,33 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Forward-only view of the start elements of a Flex statement document.
+ */
+abstract class FlexXmlCursor implements AutoCloseable {
+
+    /**
+     * Moves to the next start element.
+     * Returns false when the end of the document has been reached.
+     */
+    abstract boolean nextStartElement() throws XMLStreamException;
+
+    abstract String getElementName();
+
+    /**
+     * Returns the value of the given attribute of the current start element or null if there is no such attribute.
+     */
+    abstract String findAttributeValue(String attributeName);
+
+    @Override
+    public abstract void close() throws XMLStreamException;
+
+    String getAttributeValue(String attributeName) {
+        String value = findAttributeValue(attributeName);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing attribute '%s' in element %s".formatted(attributeName, getElementName()));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,56 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+
+import java.io.Serial;
+import java.time.LocalDate;
+
+/**
+ * {@link CashTransaction} which keeps the raw report date, which is not needed to build transactions,
+ * and converts it when its getter is called for the first time.
+ * The raw value is converted before the cash transaction is printed or serialized.
+ * The getters may be called concurrently once the record is published,
+ * a raw value is then converted by one or more of the calling threads to the same result.
+ */
+class LazyCashTransaction extends CashTransaction {
+
+    private transient FlexStatementXmlParser parser;
+
+    private transient volatile String rawReportDate;
+
+    LazyCashTransaction(FlexStatementXmlParser parser) {
+        this.parser = parser;
+    }
+
+    void setRawReportDate(String rawReportDate) {
+        this.rawReportDate = rawReportDate;
+    }
+
+    @Override
+    public LocalDate getReportDate() {
+        String raw = rawReportDate;
+        if (raw != null) {
+            super.setReportDate(parser.parseDate(raw));
+            rawReportDate = null;
+        }
+        return super.getReportDate();
+    }
+
+    @Override
+    public void setReportDate(LocalDate reportDate) {
+        rawReportDate = null;
+        super.setReportDate(reportDate);
+    }
+
+    @Override
+    public String toString() {
+        getReportDate();
+        return super.toString();
+    }
+
+    @Serial
+    private Object writeReplace() {
+        getReportDate();
+        return this;
+    }
+}
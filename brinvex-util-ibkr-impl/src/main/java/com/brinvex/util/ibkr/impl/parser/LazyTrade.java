@@ -0,0 +1,158 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import com.brinvex.util.ibkr.api.model.raw.SecurityIDType;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+
+import java.io.Serial;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * {@link Trade} which keeps the raw attribute values of the fields not needed to build transactions
+ * and converts them when their getter is called for the first time.
+ * The raw values are converted before the trade is printed or serialized.
+ * The getters may be called concurrently once the record is published,
+ * a raw value is then converted by one or more of the calling threads to the same result.
+ */
+class LazyTrade extends Trade {
+
+    private transient FlexStatementXmlParser parser;
+
+    private transient FlexValueDictionary dictionary;
+
+    private transient volatile String rawSecurityIDType;
+
+    private transient volatile String rawReportDate;
+
+    private transient volatile String rawTradeDate;
+
+    private transient volatile String rawCost;
+
+    private transient volatile String rawOrderTime;
+
+    LazyTrade(FlexStatementXmlParser parser, FlexValueDictionary dictionary) {
+        this.parser = parser;
+        this.dictionary = dictionary;
+    }
+
+    void setRawSecurityIDType(String rawSecurityIDType) {
+        this.rawSecurityIDType = rawSecurityIDType;
+    }
+
+    void setRawReportDate(String rawReportDate) {
+        this.rawReportDate = rawReportDate;
+    }
+
+    void setRawTradeDate(String rawTradeDate) {
+        this.rawTradeDate = rawTradeDate;
+    }
+
+    void setRawCost(String rawCost) {
+        this.rawCost = rawCost;
+    }
+
+    void setRawOrderTime(String rawOrderTime) {
+        this.rawOrderTime = rawOrderTime;
+    }
+
+    @Override
+    public SecurityIDType getSecurityIDType() {
+        String raw = rawSecurityIDType;
+        if (raw != null) {
+            super.setSecurityIDType(parser.parseSecurityIDType(raw));
+            rawSecurityIDType = null;
+        }
+        return super.getSecurityIDType();
+    }
+
+    @Override
+    public void setSecurityIDType(SecurityIDType securityIDType) {
+        rawSecurityIDType = null;
+        super.setSecurityIDType(securityIDType);
+    }
+
+    @Override
+    public LocalDate getReportDate() {
+        String raw = rawReportDate;
+        if (raw != null) {
+            super.setReportDate(parser.parseDate(raw));
+            rawReportDate = null;
+        }
+        return super.getReportDate();
+    }
+
+    @Override
+    public void setReportDate(LocalDate reportDate) {
+        rawReportDate = null;
+        super.setReportDate(reportDate);
+    }
+
+    @Override
+    public LocalDate getTradeDate() {
+        String raw = rawTradeDate;
+        if (raw != null) {
+            super.setTradeDate(parser.parseDate(raw));
+            rawTradeDate = null;
+        }
+        return super.getTradeDate();
+    }
+
+    @Override
+    public void setTradeDate(LocalDate tradeDate) {
+        rawTradeDate = null;
+        super.setTradeDate(tradeDate);
+    }
+
+    @Override
+    public BigDecimal getCost() {
+        String raw = rawCost;
+        if (raw != null) {
+            super.setCost(parser.parseDecimal(raw, dictionary));
+            rawCost = null;
+        }
+        return super.getCost();
+    }
+
+    @Override
+    public void setCost(BigDecimal cost) {
+        rawCost = null;
+        super.setCost(cost);
+    }
+
+    @Override
+    public ZonedDateTime getOrderTime() {
+        String raw = rawOrderTime;
+        if (raw != null) {
+            super.setOrderTime(parser.parseZonedDateTime(raw));
+            rawOrderTime = null;
+        }
+        return super.getOrderTime();
+    }
+
+    @Override
+    public void setOrderTime(ZonedDateTime orderTime) {
+        rawOrderTime = null;
+        super.setOrderTime(orderTime);
+    }
+
+    private void materialize() {
+        getSecurityIDType();
+        getReportDate();
+        getTradeDate();
+        getCost();
+        getOrderTime();
+    }
+
+    @Override
+    public String toString() {
+        materialize();
+        return super.toString();
+    }
+
+    @Serial
+    private Object writeReplace() {
+        materialize();
+        return this;
+    }
+}
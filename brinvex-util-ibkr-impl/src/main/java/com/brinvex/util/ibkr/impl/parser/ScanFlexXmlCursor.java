@@ -0,0 +1,373 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link FlexXmlCursor} scanning the UTF-8 bytes of a Flex statement directly.
+ * <p>
+ * Flex statements are flat documents made of attribute-only elements,
+ * so only start tags are tokenized: the cursor remembers the byte ranges of the element name
+ * and of each attribute name and value, and decodes a value only when it is asked for.
+ * Text content, comments, processing instructions and end tags are skipped.
+ * No DTD processing is done, only the predefined entities and character references are resolved.
+ */
+class ScanFlexXmlCursor extends FlexXmlCursor {
+
+    private final ByteBuffer buf;
+
+    private final int limit;
+
+    private int pos;
+
+    private String elementName;
+
+    /**
+     * Element names seen so far with their bytes, a statement has only a few distinct ones.
+     */
+    private final List<byte[]> knownNameBytes = new ArrayList<>();
+    private final List<String> knownNames = new ArrayList<>();
+
+    private int attributeCount;
+
+    /**
+     * Start and end offsets of the attribute names and values of the current element,
+     * four ints per attribute: name start, name end, value start, value end.
+     */
+    private int[] attributeBounds = new int[4 * 32];
+
+    private int lastAttributeIndex;
+
+    private byte[] valueBuf = new byte[64];
+
+    ScanFlexXmlCursor(ByteBuffer buf) {
+        this.buf = buf;
+        this.limit = buf.limit();
+        this.pos = buf.position();
+        if (limit - pos >= 3 && buf.get(pos) == (byte) 0xEF && buf.get(pos + 1) == (byte) 0xBB && buf.get(pos + 2) == (byte) 0xBF) {
+            pos += 3;
+        }
+    }
+
+    /**
+     * Maps the whole file to memory, the file does not need to stay open while the mapping is used.
+     */
+    static MappedByteBuffer map(Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File too large to be mapped: %s, size=%s".formatted(filePath, size));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    @Override
+    boolean nextStartElement() {
+        while (true) {
+            int lt = indexOf((byte) '<', pos);
+            if (lt < 0 || lt + 1 >= limit) {
+                pos = limit;
+                elementName = null;
+                return false;
+            }
+            byte b = buf.get(lt + 1);
+            if (b == '?') {
+                pos = indexOfSequence("?>", lt + 2) + 2;
+            } else if (b == '!') {
+                if (startsWith("<!--", lt)) {
+                    pos = indexOfSequence("-->", lt + 4) + 3;
+                } else if (startsWith("<![CDATA[", lt)) {
+                    pos = indexOfSequence("]]>", lt + 9) + 3;
+                } else {
+                    pos = skipDeclaration(lt + 2);
+                }
+            } else if (b == '/') {
+                pos = indexOfRequired((byte) '>', lt + 2) + 1;
+            } else {
+                readStartTag(lt + 1);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    String getElementName() {
+        return elementName;
+    }
+
+    @Override
+    String findAttributeValue(String attributeName) {
+        int count = attributeCount;
+        for (int i = 1; i <= count; i++) {
+            int attributeIndex = (lastAttributeIndex + i) % count;
+            int b = attributeIndex * 4;
+            if (nameEquals(attributeName, attributeBounds[b], attributeBounds[b + 1])) {
+                lastAttributeIndex = attributeIndex;
+                return decodeValue(attributeBounds[b + 2], attributeBounds[b + 3]);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        pos = limit;
+        elementName = null;
+    }
+
+    private void readStartTag(int nameStart) {
+        int p = nameStart;
+        while (p < limit && !isNameEnd(buf.get(p))) {
+            p++;
+        }
+        if (p == nameStart || p >= limit) {
+            throw syntaxError("Invalid start tag", nameStart - 1);
+        }
+        elementName = elementName(nameStart, p);
+        attributeCount = 0;
+        lastAttributeIndex = -1;
+
+        while (true) {
+            p = skipWhitespace(p);
+            if (p >= limit) {
+                throw syntaxError("Unterminated start tag", nameStart - 1);
+            }
+            byte b = buf.get(p);
+            if (b == '>') {
+                pos = p + 1;
+                return;
+            }
+            if (b == '/') {
+                if (p + 1 >= limit || buf.get(p + 1) != '>') {
+                    throw syntaxError("Invalid empty element tag", p);
+                }
+                pos = p + 2;
+                return;
+            }
+            int attrNameStart = p;
+            while (p < limit && buf.get(p) != '=' && !isWhitespace(buf.get(p))) {
+                p++;
+            }
+            int attrNameEnd = p;
+            p = skipWhitespace(p);
+            if (attrNameEnd == attrNameStart || p >= limit || buf.get(p) != '=') {
+                throw syntaxError("Invalid attribute", attrNameStart);
+            }
+            p = skipWhitespace(p + 1);
+            if (p >= limit || (buf.get(p) != '"' && buf.get(p) != '\'')) {
+                throw syntaxError("Unquoted attribute value", attrNameStart);
+            }
+            byte quote = buf.get(p);
+            int valueStart = p + 1;
+            int valueEnd = indexOfRequired(quote, valueStart);
+            addAttribute(attrNameStart, attrNameEnd, valueStart, valueEnd);
+            p = valueEnd + 1;
+        }
+    }
+
+    private void addAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int b = attributeCount * 4;
+        if (b + 4 > attributeBounds.length) {
+            attributeBounds = Arrays.copyOf(attributeBounds, attributeBounds.length * 2);
+        }
+        attributeBounds[b] = nameStart;
+        attributeBounds[b + 1] = nameEnd;
+        attributeBounds[b + 2] = valueStart;
+        attributeBounds[b + 3] = valueEnd;
+        attributeCount++;
+    }
+
+    private String elementName(int start, int end) {
+        int len = end - start;
+        for (int i = 0, size = knownNameBytes.size(); i < size; i++) {
+            byte[] nameBytes = knownNameBytes.get(i);
+            if (nameBytes.length == len && bytesEqual(nameBytes, start)) {
+                return knownNames.get(i);
+            }
+        }
+        byte[] nameBytes = new byte[len];
+        buf.get(start, nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        int colon = name.indexOf(':');
+        if (colon >= 0) {
+            name = name.substring(colon + 1);
+        }
+        knownNameBytes.add(nameBytes);
+        knownNames.add(name);
+        return name;
+    }
+
+    private boolean bytesEqual(byte[] bytes, int start) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buf.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Attribute names of Flex statements are ASCII, so chars can be compared to bytes directly.
+     */
+    private boolean nameEquals(String name, int start, int end) {
+        int len = name.length();
+        if (end - start != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (buf.get(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decodeValue(int start, int end) {
+        int len = end - start;
+        if (len == 0) {
+            return "";
+        }
+        if (valueBuf.length < len) {
+            valueBuf = new byte[Math.max(len, valueBuf.length * 2)];
+        }
+        boolean plain = true;
+        for (int i = 0; i < len; i++) {
+            byte b = buf.get(start + i);
+            valueBuf[i] = b;
+            if (b == '&' || b == '\t' || b == '\n' || b == '\r') {
+                plain = false;
+            }
+        }
+        String raw = new String(valueBuf, 0, len, StandardCharsets.UTF_8);
+        return plain ? raw : normalizeValue(raw, start);
+    }
+
+    /**
+     * Attribute value normalization as done by an XML parser:
+     * line breaks and tabs become spaces, entity and character references are resolved.
+     */
+    private String normalizeValue(String raw, int offset) {
+        StringBuilder sb = new StringBuilder(raw.length());
+        int len = raw.length();
+        for (int i = 0; i < len; i++) {
+            char c = raw.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < len && raw.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                sb.append(' ');
+            } else if (c == '\n' || c == '\t') {
+                sb.append(' ');
+            } else if (c == '&') {
+                int semicolon = raw.indexOf(';', i + 1);
+                if (semicolon < 0) {
+                    throw syntaxError("Unterminated reference", offset);
+                }
+                String ref = raw.substring(i + 1, semicolon);
+                switch (ref) {
+                    case "amp" -> sb.append('&');
+                    case "lt" -> sb.append('<');
+                    case "gt" -> sb.append('>');
+                    case "quot" -> sb.append('"');
+                    case "apos" -> sb.append('\'');
+                    default -> {
+                        if (ref.startsWith("#x")) {
+                            sb.appendCodePoint(Integer.parseInt(ref.substring(2), 16));
+                        } else if (ref.startsWith("#")) {
+                            sb.appendCodePoint(Integer.parseInt(ref.substring(1)));
+                        } else {
+                            throw syntaxError("Unknown entity reference '%s'".formatted(ref), offset);
+                        }
+                    }
+                }
+                i = semicolon;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private int skipDeclaration(int from) {
+        int depth = 0;
+        for (int p = from; p < limit; p++) {
+            byte b = buf.get(p);
+            if (b == '[') {
+                depth++;
+            } else if (b == ']') {
+                depth--;
+            } else if (b == '>' && depth <= 0) {
+                return p + 1;
+            }
+        }
+        throw syntaxError("Unterminated declaration", from);
+    }
+
+    private int skipWhitespace(int p) {
+        while (p < limit && isWhitespace(buf.get(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int p = from; p < limit; p++) {
+            if (buf.get(p) == b) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfRequired(byte b, int from) {
+        int p = indexOf(b, from);
+        if (p < 0) {
+            throw syntaxError("Unexpected end of document, expected '%s'".formatted((char) b), from);
+        }
+        return p;
+    }
+
+    private int indexOfSequence(String ascii, int from) {
+        byte first = (byte) ascii.charAt(0);
+        for (int p = indexOf(first, from); p >= 0; p = indexOf(first, p + 1)) {
+            if (startsWith(ascii, p)) {
+                return p;
+            }
+        }
+        throw syntaxError("Unexpected end of document, expected '%s'".formatted(ascii), from);
+    }
+
+    private boolean startsWith(String ascii, int p) {
+        int len = ascii.length();
+        if (p + len > limit) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (buf.get(p + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return isWhitespace(b) || b == '>' || b == '/';
+    }
+
+    private IllegalArgumentException syntaxError(String message, int offset) {
+        return new IllegalArgumentException("%s at byte offset %s".formatted(message, offset));
+    }
+}
@@ -0,0 +1,63 @@
+package com.brinvex.util.ibkr.impl.parser;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * {@link FlexXmlCursor} backed by {@link XMLStreamReader}.
+ * No event objects are created, attributes are looked up by index directly in the reader.
+ */
+class StreamFlexXmlCursor extends FlexXmlCursor {
+
+    private final XMLStreamReader reader;
+
+    private boolean onStartElement;
+
+    /**
+     * Index of the last found attribute.
+     * Record elements are usually read in the same order as their attributes are declared,
+     * so the next lookup starts right after the previous hit.
+     */
+    private int lastAttributeIndex;
+
+    StreamFlexXmlCursor(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    boolean nextStartElement() throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                onStartElement = true;
+                lastAttributeIndex = -1;
+                return true;
+            }
+        }
+        onStartElement = false;
+        return false;
+    }
+
+    @Override
+    String getElementName() {
+        return onStartElement ? reader.getLocalName() : null;
+    }
+
+    @Override
+    String findAttributeValue(String attributeName) {
+        int attributeCount = reader.getAttributeCount();
+        for (int i = 1; i <= attributeCount; i++) {
+            int attributeIndex = (lastAttributeIndex + i) % attributeCount;
+            if (attributeName.equals(reader.getAttributeLocalName(attributeIndex))) {
+                lastAttributeIndex = attributeIndex;
+                return reader.getAttributeValue(attributeIndex);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+}
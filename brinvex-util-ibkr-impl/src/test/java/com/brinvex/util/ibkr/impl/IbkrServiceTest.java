@@ -2,30 +2,75 @@ package com.brinvex.util.ibkr.impl;
 
 import com.brinvex.util.ibkr.api.model.AssetCategory;
 import com.brinvex.util.ibkr.api.model.AssetSubCategory;
+import com.brinvex.util.ibkr.api.model.Country;
+import com.brinvex.util.ibkr.api.model.Currency;
 import com.brinvex.util.ibkr.api.model.Portfolio;
+import com.brinvex.util.ibkr.api.model.Position;
 import com.brinvex.util.ibkr.api.model.Transaction;
 import com.brinvex.util.ibkr.api.model.TransactionType;
+import com.brinvex.util.ibkr.api.model.raw.CashTransaction;
+import com.brinvex.util.ibkr.api.model.raw.CorporateAction;
 import com.brinvex.util.ibkr.api.model.raw.EquitySummary;
 import com.brinvex.util.ibkr.api.model.raw.FlexStatement;
+import com.brinvex.util.ibkr.api.model.raw.FlexStatementType;
+import com.brinvex.util.ibkr.api.model.raw.Trade;
+import com.brinvex.util.ibkr.api.model.raw.TradeConfirm;
 import com.brinvex.util.ibkr.api.service.IbkrService;
 import com.brinvex.util.ibkr.api.service.IbkrServiceFactory;
+import com.brinvex.util.ibkr.api.service.exception.IbkrServiceException;
+import com.brinvex.util.ibkr.impl.parser.FlexParseOptions;
+import com.brinvex.util.ibkr.impl.parser.FlexStatementHandler;
+import com.brinvex.util.ibkr.impl.parser.FlexStatementXmlParser;
+import com.brinvex.util.ibkr.impl.parser.FlexValueDictionary;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static com.brinvex.util.ibkr.api.model.Currency.EUR;
 import static com.brinvex.util.ibkr.api.model.Currency.USD;
+import static com.brinvex.util.ibkr.api.model.raw.FlexStatementType.AF;
+import static com.brinvex.util.ibkr.api.model.raw.FlexStatementType.TCF;
 import static java.math.RoundingMode.HALF_UP;
+import static java.time.temporal.ChronoUnit.DAYS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class IbkrServiceTest {
@@ -54,6 +99,946 @@ class IbkrServiceTest {
     }
 
 
+    @Test
+    void parseTransactionsFromPaths() throws IOException {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity"));
+        for (Path activityReportPath : activityReportPaths) {
+            String content = Files.readString(activityReportPath);
+            FlexStatement fromContent = ibkrService.parseActivitiesFromStatements(Stream.of(content));
+            FlexStatement fromPath = ibkrService.parseActivitiesFromStatements(List.of(activityReportPath));
+            assertEquals(fromContent.toString(), fromPath.toString());
+        }
+    }
+
+    @Test
+    void parseTransactionsWithBothEngines() {
+        FlexStatementXmlParser eventParser = new FlexStatementXmlParser(FlexStatementXmlParser.Engine.EVENT);
+        FlexStatementXmlParser cursorParser = new FlexStatementXmlParser(FlexStatementXmlParser.Engine.CURSOR);
+        List<Path> reportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity") || s.contains("TradeConfirm"));
+        for (Path reportPath : reportPaths) {
+            assertEquals(
+                    eventParser.parseActivities(reportPath).toString(),
+                    cursorParser.parseActivities(reportPath).toString()
+            );
+            assertEquals(
+                    eventParser.parseEquitySummaries(reportPath).toString(),
+                    cursorParser.parseEquitySummaries(reportPath).toString()
+            );
+        }
+    }
+
+    @Test
+    void parseTransactionsWithScanEngine() {
+        FlexStatementXmlParser scanParser = new FlexStatementXmlParser(FlexStatementXmlParser.Engine.SCAN, true);
+        List<Path> reportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity") || s.contains("TradeConfirm"));
+        for (Path reportPath : reportPaths) {
+            FlexStatement flexStatement = scanParser.parseAll(reportPath);
+            assertNotNull(flexStatement);
+        }
+    }
+
+    @Test
+    void parseTransactionsWithDictionary() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        FlexValueDictionary dictionary = new FlexValueDictionary();
+        FlexStatementXmlParser dictionaryParser = new FlexStatementXmlParser(
+                FlexStatementXmlParser.Engine.CURSOR, false, () -> dictionary);
+        List<Path> reportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity"));
+        for (Path reportPath : reportPaths) {
+            assertEquals(
+                    parser.parseAll(reportPath).toString(),
+                    dictionaryParser.parseAll(reportPath).toString()
+            );
+        }
+        assertTrue(reportPaths.isEmpty() || dictionary.getHitRate() > 0);
+    }
+
+    @Test
+    void parseTransactionsWithLazyRecords() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        FlexStatementXmlParser lazyParser = new FlexStatementXmlParser(
+                FlexStatementXmlParser.Engine.CURSOR, false, null, true);
+        IbkrService lazyService = new IbkrServiceImpl(lazyParser, new PortfolioManager(), new TransactionMapper(), null);
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        List<Path> reportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity"));
+        for (Path reportPath : reportPaths) {
+            assertEquals(parser.parseActivities(reportPath).toString(), lazyParser.parseActivities(reportPath).toString());
+        }
+        assertEquals(
+                ibkrService.fillPortfolioFromStatements(reportPaths).getTransactions().toString(),
+                lazyService.fillPortfolioFromStatements(reportPaths).getTransactions().toString()
+        );
+    }
+
+    @Test
+    void parseTransactionsWithOptions() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        LocalDate fromDate = LocalDate.parse("2023-01-01");
+        LocalDate toDate = LocalDate.parse("2023-06-30");
+        FlexParseOptions options = new FlexParseOptions(EnumSet.of(FlexParseOptions.Section.CASH_TRANSACTIONS), fromDate, toDate);
+        List<Path> reportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity"));
+        for (Path reportPath : reportPaths) {
+            FlexStatement all = parser.parseAll(reportPath);
+            FlexStatement filtered = parser.parse(reportPath, options);
+            assertEquals(all.getAccountId(), filtered.getAccountId());
+            assertTrue(filtered.getTrades().isEmpty());
+            assertTrue(filtered.getEquitySummaries().isEmpty());
+            assertEquals(
+                    all.getCashTransactions()
+                            .stream()
+                            .filter(t -> !t.getReportDate().isBefore(fromDate) && !t.getReportDate().isAfter(toDate))
+                            .toList()
+                            .toString(),
+                    filtered.getCashTransactions().toString()
+            );
+        }
+    }
+
+    @Test
+    void parseCompressedStatements(@TempDir Path tempDir) throws IOException {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Path zipPath = tempDir.resolve("statements.zip");
+        List<Path> gzPaths = new ArrayList<>();
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            for (Path activityReportPath : activityReportPaths) {
+                String fileName = activityReportPath.getFileName().toString();
+                zos.putNextEntry(new ZipEntry(fileName));
+                Files.copy(activityReportPath, zos);
+                zos.closeEntry();
+
+                Path gzPath = tempDir.resolve(fileName + ".gz");
+                try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(gzPath))) {
+                    Files.copy(activityReportPath, os);
+                }
+                gzPaths.add(gzPath);
+            }
+        }
+        String expected = ibkrService.parseStatements(activityReportPaths).toString();
+        assertEquals(expected, ibkrService.parseStatements(gzPaths).toString());
+        assertEquals(expected, ibkrService.parseStatements(List.of(zipPath)).toString());
+    }
+
+    @Test
+    void fillPortfoliosFromMultiAccountStatement() throws IOException {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Path activityReportPath = activityReportPaths.get(0);
+        String content = Files.readString(activityReportPath);
+        String accountId = ibkrService.parseStatements(List.of(activityReportPath)).getAccountId();
+        String otherAccountId = "U0" + accountId;
+
+        int from = content.indexOf("<FlexStatement ");
+        int to = content.lastIndexOf("</FlexStatement>") + "</FlexStatement>".length();
+        String statement = content.substring(from, to);
+        String multiAccountContent = """
+                <FlexQueryResponse queryName="Test" type="AF">
+                <FlexStatements count="2">
+                %s
+                %s
+                </FlexStatements>
+                </FlexQueryResponse>
+                """.formatted(statement, statement.replace(accountId, otherAccountId));
+
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        List<FlexStatement> flexStatements = parser.parseStatements(multiAccountContent, FlexParseOptions.ALL);
+        assertEquals(2, flexStatements.size());
+        assertEquals(accountId, flexStatements.get(0).getAccountId());
+        assertEquals(otherAccountId, flexStatements.get(1).getAccountId());
+        assertThrows(IllegalArgumentException.class, () -> parser.parseAll(multiAccountContent));
+
+        Portfolio expectedPtf = ibkrService.fillPortfolioFromStatements(List.of(activityReportPath));
+        Map<String, Portfolio> ptfs = ibkrService.fillPortfoliosFromStatements(Stream.of(multiAccountContent));
+        assertEquals(Set.of(accountId, otherAccountId), ptfs.keySet());
+        assertEquals(expectedPtf.getTransactions().size(), ptfs.get(accountId).getTransactions().size());
+        assertEquals(expectedPtf.getTransactions().size(), ptfs.get(otherAccountId).getTransactions().size());
+        assertEquals(expectedPtf.getPositions().size(), ptfs.get(otherAccountId).getPositions().size());
+    }
+
+    @Test
+    void parseTransactionsInChunks() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Path> reportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity") || s.contains("TradeConfirm"));
+            for (Path reportPath : reportPaths) {
+                String expected = parser.parseStatements(reportPath, FlexParseOptions.ALL).toString();
+                for (int chunkSize : new int[]{1, 4096, FlexStatementXmlParser.DEFAULT_CHUNK_SIZE}) {
+                    List<FlexStatement> flexStatements = new ArrayList<>();
+                    parser.parseInChunks(reportPath, FlexParseOptions.ALL, new FlexStatementHandler() {
+                        @Override
+                        public void onStatementHeader(FlexStatement header) {
+                            flexStatements.add(header);
+                        }
+
+                        @Override
+                        public void onTrade(Trade trade) {
+                            flexStatements.get(flexStatements.size() - 1).getTrades().add(trade);
+                        }
+
+                        @Override
+                        public void onCashTransaction(CashTransaction cashTransaction) {
+                            flexStatements.get(flexStatements.size() - 1).getCashTransactions().add(cashTransaction);
+                        }
+
+                        @Override
+                        public void onTradeConfirm(TradeConfirm tradeConfirm) {
+                            flexStatements.get(flexStatements.size() - 1).getTradeConfirms().add(tradeConfirm);
+                        }
+
+                        @Override
+                        public void onCorporateAction(CorporateAction corporateAction) {
+                            flexStatements.get(flexStatements.size() - 1).getCorporateActions().add(corporateAction);
+                        }
+
+                        @Override
+                        public void onEquitySummary(EquitySummary equitySummary) {
+                            flexStatements.get(flexStatements.size() - 1).getEquitySummaries().add(equitySummary);
+                        }
+                    }, pool, chunkSize);
+                    assertEquals(expected, flexStatements.toString());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parseStatementsWithDuplicateFiles(@TempDir Path tempDir) throws IOException {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        List<Path> pathsWithDuplicates = new ArrayList<>(activityReportPaths);
+        for (Path activityReportPath : activityReportPaths) {
+            FlexStatement header = parser.parseHeaders(activityReportPath).get(0);
+            FlexStatement flexStatement = parser.parseAll(activityReportPath);
+            assertEquals(flexStatement.getAccountId(), header.getAccountId());
+            assertEquals(flexStatement.getFromDate(), header.getFromDate());
+            assertEquals(flexStatement.getToDate(), header.getToDate());
+            assertEquals(flexStatement.getWhenGenerated(), header.getWhenGenerated());
+            assertTrue(header.getTrades().isEmpty());
+
+            Path copyPath = tempDir.resolve(activityReportPath.getFileName());
+            Files.copy(activityReportPath, copyPath);
+            pathsWithDuplicates.add(0, copyPath);
+        }
+        assertEquals(
+                ibkrService.parseStatements(activityReportPaths).toString(),
+                ibkrService.parseStatements(pathsWithDuplicates).toString()
+        );
+    }
+
+    @Test
+    void fillPortfolioFromStore(@TempDir Path storeDir) throws IOException {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Portfolio expectedPtf = ibkrService.fillPortfolioFromStatements(activityReportPaths);
+        String accountId = expectedPtf.getAccountId();
+
+        ibkrService.storeStatements(storeDir, activityReportPaths.subList(0, activityReportPaths.size() - 1));
+        ibkrService.storeStatements(storeDir, activityReportPaths);
+        List<Path> segmentPaths;
+        try (Stream<Path> paths = Files.list(storeDir.resolve(accountId))) {
+            segmentPaths = paths.toList();
+        }
+        ibkrService.storeStatements(storeDir, activityReportPaths);
+        try (Stream<Path> paths = Files.list(storeDir.resolve(accountId))) {
+            assertEquals(segmentPaths.size(), paths.count());
+        }
+
+        Portfolio ptf = ibkrService.fillPortfolioFromStore(null, storeDir, accountId);
+        assertEquals(expectedPtf.toString(), ptf.toString());
+        assertTrue(ptf == ibkrService.fillPortfolioFromStore(ptf, storeDir, accountId));
+    }
+
+    @Test
+    void storeRecordsOfEachSectionSeparately(@TempDir Path storeDir) {
+        ZonedDateTime dateTime = ZonedDateTime.of(2023, 1, 10, 10, 0, 0, 0, ZoneId.of("America/New_York"));
+        FlexStatement janStatement = header("U1", AF, "2023-01-01", "2023-01-31", dateTime.plusMonths(1));
+        janStatement.getTrades().add(storedTrade(dateTime, "100", "200"));
+        // A corporate action with the same ID parts as the trade
+        CorporateAction corpAction = new CorporateAction();
+        corpAction.setDateTime(dateTime);
+        corpAction.setTransactionId("100");
+        corpAction.setActionID("200");
+        janStatement.getCorporateActions().add(corpAction);
+        FlexStatement febStatement = header("U1", AF, "2023-01-15", "2023-02-28", dateTime.plusMonths(2));
+        febStatement.getTrades().add(storedTrade(dateTime, "100", "200"));
+        febStatement.getTrades().add(storedTrade(dateTime.plusMonths(1), "101", "201"));
+        febStatement.getCorporateActions().add(corpAction);
+
+        FlexStatementStore store = new FlexStatementStore(storeDir);
+        FlexStatement janRecords = store.add(janStatement);
+        assertEquals(1, janRecords.getTrades().size());
+        assertEquals(1, janRecords.getCorporateActions().size());
+        FlexStatement febRecords = store.add(febStatement);
+        assertEquals(List.of("101"), febRecords.getTrades().stream().map(Trade::getTradeID).toList());
+        assertTrue(febRecords.getCorporateActions().isEmpty());
+
+        FlexStatement expected = FlexStatementMerger.merge(Stream.of(janStatement, febStatement));
+        FlexStatement stored = store.load("U1");
+        assertEquals(expected.getTrades().toString(), stored.getTrades().toString());
+        assertEquals(expected.getCorporateActions().toString(), stored.getCorporateActions().toString());
+        assertEquals(1, stored.getCorporateActions().size());
+    }
+
+    @Test
+    void indexStatementPeriods(@TempDir Path tempDir) throws IOException {
+        ZonedDateTime earlier = ZonedDateTime.of(2023, 5, 1, 5, 0, 0, 0, ZoneId.of("America/New_York"));
+        ZonedDateTime later = earlier.plusDays(1);
+        ZonedDateTime latest = earlier.plusDays(2);
+        List<List<FlexStatement>> fileHeaders = List.of(
+                List.of(header("U1", AF, "2023-01-01", "2023-03-31", later), header("U2", AF, "2023-01-01", "2023-01-31", earlier)),
+                List.of(header("U1", AF, "2023-02-01", "2023-02-28", earlier)),
+                List.of(header("U1", AF, "2023-03-15", "2023-04-30", later)),
+                List.of(header("U1", AF, "2023-06-01", "2023-06-30", later)),
+                List.of(header("U1", TCF, "2023-08-01", "2023-08-01", later)),
+                List.of(header("U2", AF, "2023-01-01", "2023-01-31", earlier)),
+                List.of(),
+                List.of(header("U1", AF, "2023-02-01", "2023-02-28", latest))
+        );
+
+        StatementPeriodIndex periodIndex = new StatementPeriodIndex(fileHeaders);
+        assertEquals(List.of(new StatementPeriodIndex.Gap("U1", LocalDate.parse("2023-05-01"), LocalDate.parse("2023-05-31"))),
+                periodIndex.getGaps());
+        assertEquals(List.of(
+                new StatementPeriodIndex.Overlap("U1", LocalDate.parse("2023-02-01"), LocalDate.parse("2023-02-28")),
+                new StatementPeriodIndex.Overlap("U1", LocalDate.parse("2023-02-01"), LocalDate.parse("2023-02-28")),
+                new StatementPeriodIndex.Overlap("U1", LocalDate.parse("2023-03-15"), LocalDate.parse("2023-03-31")),
+                new StatementPeriodIndex.Overlap("U2", LocalDate.parse("2023-01-01"), LocalDate.parse("2023-01-31"))
+        ), periodIndex.getOverlaps());
+        assertEquals(List.of(
+                new StatementPeriodIndex.DateRange(LocalDate.parse("2023-01-01"), LocalDate.parse("2023-04-30")),
+                new StatementPeriodIndex.DateRange(LocalDate.parse("2023-06-01"), LocalDate.parse("2023-06-30")),
+                new StatementPeriodIndex.DateRange(LocalDate.parse("2023-08-01"), LocalDate.parse("2023-08-01"))
+        ), periodIndex.getCoverage("U1"));
+        assertEquals(List.of(new StatementPeriodIndex.DateRange(LocalDate.parse("2023-01-01"), LocalDate.parse("2023-01-31"))),
+                periodIndex.getCoverage("U2"));
+        assertEquals(List.of(), periodIndex.getCoverage("U3"));
+
+        assertTrue(periodIndex.isCovered("U1", LocalDate.parse("2023-01-01"), LocalDate.parse("2023-04-30")));
+        assertTrue(periodIndex.isCovered("U1", LocalDate.parse("2023-06-10"), LocalDate.parse("2023-06-20")));
+        assertFalse(periodIndex.isCovered("U1", LocalDate.parse("2022-12-31"), LocalDate.parse("2023-01-01")));
+        assertFalse(periodIndex.isCovered("U1", LocalDate.parse("2023-04-30"), LocalDate.parse("2023-05-01")));
+        assertFalse(periodIndex.isCovered("U1", LocalDate.parse("2023-05-01"), LocalDate.parse("2023-05-01")));
+        assertFalse(periodIndex.isCovered("U2", LocalDate.parse("2023-01-01"), LocalDate.parse("2023-02-01")));
+        assertFalse(periodIndex.isCovered("U3", LocalDate.parse("2023-01-01"), LocalDate.parse("2023-01-01")));
+
+        List<Boolean> redundantFiles = new ArrayList<>();
+        for (int i = 0; i < fileHeaders.size(); i++) {
+            redundantFiles.add(periodIndex.isRedundantFile(i));
+        }
+        assertEquals(List.of(false, true, false, false, false, true, false, false), redundantFiles);
+
+        IbkrServiceException e = assertThrows(IbkrServiceException.class, periodIndex::checkGaps);
+        assertEquals("Missing period: '2023-05-01 - 2023-05-31', accountId=U1", e.getMessage());
+
+        StatementPeriodIndex noGapIndex = new StatementPeriodIndex(List.of(fileHeaders.get(0), fileHeaders.get(2)));
+        assertEquals(List.of(), noGapIndex.getGaps());
+        noGapIndex.checkGaps();
+
+        List<Path> paths = new ArrayList<>();
+        for (String[] period : new String[][]{{"20230101", "20230331"}, {"20230201", "20230228"}, {"20230601", "20230630"}}) {
+            Path path = tempDir.resolve(period[0] + ".xml");
+            Files.writeString(path, """
+                    <FlexQueryResponse queryName="Test" type="AF">
+                    <FlexStatements count="1">
+                    <FlexStatement accountId="U1" fromDate="%s" toDate="%s" period="Custom" whenGenerated="20230701;050102 EDT">
+                    </FlexStatement>
+                    </FlexStatements>
+                    </FlexQueryResponse>
+                    """.formatted(period[0], period[1]));
+            paths.add(path);
+        }
+        periodIndex = new IbkrServiceImpl().indexStatementPeriods(paths);
+        assertEquals(List.of(new StatementPeriodIndex.Gap("U1", LocalDate.parse("2023-04-01"), LocalDate.parse("2023-05-31"))),
+                periodIndex.getGaps());
+        assertTrue(periodIndex.isRedundantFile(1));
+    }
+
+    @Test
+    void writeAndReadPortfolioCheckpoint() {
+        Portfolio ptf = checkpointPortfolio();
+        Portfolio restoredPtf = readCheckpoint(checkpointBytes(ptf));
+
+        assertTrue(restoredPtf instanceof IndexedPortfolio);
+        assertEquals(ptf.toString(), restoredPtf.toString());
+        assertEquals(ptf.getTransactions().toString(), restoredPtf.getTransactions().toString());
+        assertEquals(ptf.getCash(), restoredPtf.getCash());
+        Transaction restoredBuy = restoredPtf.getTransactions().get(1);
+        assertEquals(ptf.getTransactions().get(1).getDate(), restoredBuy.getDate());
+        assertEquals(ZoneId.of("Europe/Berlin"), ((ZonedDateTime) restoredBuy.getDate()).getZone());
+        assertEquals(new BigDecimal("-1234567890123456789012.345"), restoredBuy.getGrossValue());
+        assertEquals(LocalDate.parse("2023-03-01"), restoredPtf.getTransactions().get(0).getDate());
+        assertEquals(null, restoredPtf.getTransactions().get(0).getSymbol());
+        assertEquals(1, restoredPtf.getPositions().size());
+        List<Transaction> positionTransactions = restoredPtf.getPositions().get(0).getTransactions();
+        assertEquals(2, positionTransactions.size());
+        assertTrue(positionTransactions.get(0) == restoredBuy);
+        assertTrue(positionTransactions.get(1) == restoredPtf.getTransactions().get(2));
+    }
+
+    @Test
+    void rejectPortfolioCheckpointWithChecksumMismatch() {
+        byte[] bytes = checkpointBytes(checkpointPortfolio());
+        bytes[bytes.length / 2] ^= 1;
+        IbkrServiceException e = assertThrows(IbkrServiceException.class, () -> readCheckpoint(bytes));
+        assertEquals("Corrupted portfolio checkpoint, checksum mismatch", e.getMessage());
+    }
+
+    @Test
+    void rejectTruncatedPortfolioCheckpoint() {
+        byte[] bytes = checkpointBytes(checkpointPortfolio());
+        IbkrServiceException e = assertThrows(IbkrServiceException.class, () -> readCheckpoint(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertEquals("Corrupted portfolio checkpoint, checksum mismatch", e.getMessage());
+
+        // The magic number and the version only, with a valid checksum
+        byte[] headerOnly = withChecksum(Arrays.copyOf(bytes, 5));
+        e = assertThrows(IbkrServiceException.class, () -> readCheckpoint(headerOnly));
+        assertEquals("Truncated portfolio checkpoint", e.getMessage());
+
+        e = assertThrows(IbkrServiceException.class, () -> readCheckpoint(Arrays.copyOf(bytes, 3)));
+        assertEquals("Truncated portfolio checkpoint", e.getMessage());
+    }
+
+    @Test
+    void rejectPortfolioCheckpointOfOtherVersion() {
+        byte[] bytes = checkpointBytes(checkpointPortfolio());
+        byte[] body = Arrays.copyOf(bytes, bytes.length - Integer.BYTES);
+        // The version follows the 4-byte magic number as a zigzag encoded variable-length integer
+        assertEquals(2, body[4]);
+        body[4] = 4;
+        IbkrServiceException e = assertThrows(IbkrServiceException.class, () -> readCheckpoint(withChecksum(body)));
+        assertEquals("Unsupported portfolio checkpoint version: 2, expected: 1", e.getMessage());
+    }
+
+    @Test
+    void rejectPortfolioCheckpointWithBadStringIndex() {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeHeader(0x42585043, 1);
+        writer.writeVarInt(5);
+        IbkrServiceException e = assertThrows(IbkrServiceException.class, () -> readCheckpoint(writer.toByteArrayWithChecksum()));
+        assertEquals("Corrupted portfolio checkpoint, string index: 3", e.getMessage());
+    }
+
+    @Test
+    void rejectPortfolioCheckpointWithBadTransactionIndex() {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeHeader(0x42585043, 1);
+        writer.writeString("U1");
+        writer.writeDate(LocalDate.parse("2023-01-01"));
+        writer.writeDate(LocalDate.parse("2023-12-31"));
+        writer.writeVarInt(0);
+        writer.writeVarInt(0);
+        writer.writeVarInt(1);
+        writer.writeEnum(Country.US);
+        writer.writeString("AAPL");
+        writer.writeDecimal(BigDecimal.ONE);
+        writer.writeVarInt(1);
+        writer.writeVarInt(0);
+        IbkrServiceException e = assertThrows(IbkrServiceException.class, () -> readCheckpoint(writer.toByteArrayWithChecksum()));
+        assertEquals("Corrupted portfolio checkpoint, transaction index: 0", e.getMessage());
+    }
+
+    @Test
+    void applyTransactionsToIndexedPortfolio() throws IOException, ClassNotFoundException {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        PortfolioManager ptfManager = new PortfolioManager();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Portfolio indexedPtf = ibkrService.fillPortfolioFromStatements(activityReportPaths);
+        assertTrue(indexedPtf instanceof IndexedPortfolio);
+
+        Portfolio ptf = new Portfolio();
+        ptf.setAccountId(indexedPtf.getAccountId());
+        ptf.setPeriodFrom(indexedPtf.getPeriodFrom());
+        ptf.setPeriodTo(indexedPtf.getPeriodTo());
+        for (Transaction tran : indexedPtf.getTransactions()) {
+            ptf.getTransactions().add(tran);
+            ptfManager.applyTransaction(ptf, tran);
+        }
+        assertEquals(ptf.toString(), indexedPtf.toString());
+
+        Transaction conflictingTran = new Transaction();
+        conflictingTran.setId(indexedPtf.getTransactions().get(0).getId());
+        assertThrows(IbkrServiceException.class, () -> ptfManager.applyTransaction(ptf, conflictingTran));
+        assertThrows(IbkrServiceException.class, () -> ptfManager.applyTransaction(indexedPtf, conflictingTran));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(indexedPtf);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Object deserializedPtf = in.readObject();
+            assertEquals(Portfolio.class, deserializedPtf.getClass());
+            assertEquals(indexedPtf.toString(), deserializedPtf.toString());
+        }
+    }
+
+    @Test
+    void applyTransactionsInBatch() {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        PortfolioManager ptfManager = new PortfolioManager();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Portfolio expectedPtf = ibkrService.fillPortfolioFromStatements(activityReportPaths);
+        List<Transaction> trans = expectedPtf.getTransactions();
+        assertTrue(trans.size() > 2);
+
+        Portfolio ptf = new Portfolio();
+        ptf.setAccountId(expectedPtf.getAccountId());
+        ptf.setPeriodFrom(expectedPtf.getPeriodFrom());
+        ptf.setPeriodTo(expectedPtf.getPeriodTo());
+        int half = trans.size() / 2;
+        ptfManager.applyTransactions(ptf, trans.subList(0, half));
+        ptfManager.applyTransactions(ptf, trans.subList(half, trans.size()));
+        assertEquals(expectedPtf.toString(), ptf.toString());
+        assertEquals(trans, ptf.getTransactions());
+
+        Portfolio newPtf = ptfManager.initPortfolio(expectedPtf.getAccountId(), expectedPtf.getPeriodFrom(), expectedPtf.getPeriodTo());
+        Transaction invalidTran = new Transaction();
+        invalidTran.setId("invalid");
+        invalidTran.setType(TransactionType.DEPOSIT);
+        Transaction conflictingTran = new Transaction();
+        conflictingTran.setId(trans.get(0).getId());
+        IbkrServiceException e = assertThrows(IbkrServiceException.class,
+                () -> ptfManager.applyTransactions(newPtf, List.of(trans.get(0), invalidTran, conflictingTran)));
+        assertTrue(e.getMessage().startsWith("Invalid transaction"));
+        e = assertThrows(IbkrServiceException.class,
+                () -> ptfManager.applyTransactions(newPtf, List.of(trans.get(0), conflictingTran, invalidTran)));
+        assertTrue(e.getMessage().startsWith("Transaction ID conflict"));
+        assertTrue(newPtf.getTransactions().isEmpty());
+        assertTrue(newPtf.getCash().isEmpty());
+    }
+
+    @Test
+    void resumeFromPortfolioCheckpoint(@TempDir Path checkpointDir) throws IOException {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Portfolio expectedPtf = ibkrService.fillPortfolioFromStatements(activityReportPaths);
+
+        Path checkpointPath = checkpointDir.resolve("portfolio.bin");
+        Portfolio ptf = ibkrService.fillPortfolioFromStatements(activityReportPaths.subList(0, activityReportPaths.size() - 1));
+        ibkrService.writePortfolioCheckpoint(ptf, checkpointPath);
+        Portfolio restoredPtf = ibkrService.readPortfolioCheckpoint(checkpointPath);
+        assertEquals(ptf.toString(), restoredPtf.toString());
+        assertEquals(ptf.getTransactions().toString(), restoredPtf.getTransactions().toString());
+        for (Position position : restoredPtf.getPositions()) {
+            position.getTransactions().forEach(tran -> assertTrue(restoredPtf.getTransactions().contains(tran)));
+        }
+
+        Path lastReportPath = activityReportPaths.get(activityReportPaths.size() - 1);
+        ptf = ibkrService.fillPortfolioFromStatements(restoredPtf, Stream.of(Files.readString(lastReportPath)));
+        assertEquals(expectedPtf.toString(), ptf.toString());
+        assertEquals(expectedPtf.getTransactions().toString(), ptf.getTransactions().toString());
+
+        byte[] bytes = Files.readAllBytes(checkpointPath);
+        bytes[4]++;
+        Files.write(checkpointPath, bytes);
+        assertThrows(IbkrServiceException.class, () -> ibkrService.readPortfolioCheckpoint(checkpointPath));
+    }
+
+    @Test
+    void queryPortfolioAsOf() {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        PortfolioManager ptfManager = new PortfolioManager();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Portfolio ptf = ibkrService.fillPortfolioFromStatements(activityReportPaths);
+        PortfolioHistory ptfHistory = new PortfolioHistory(ptf);
+
+        Portfolio lastPtf = ptfHistory.getPortfolioAsOf(ptf.getPeriodTo());
+        assertEquals(ptf.getCash(), lastPtf.getCash());
+        assertEquals(ptf.getTransactions().size(), lastPtf.getTransactions().size());
+        assertEquals(ptf.getPositions().size(), lastPtf.getPositions().size());
+        for (Position position : ptf.getPositions()) {
+            Position lastPosition = lastPtf.getPositions()
+                    .stream()
+                    .filter(p -> p.getCountry() == position.getCountry() && p.getSymbol().equals(position.getSymbol()))
+                    .findAny()
+                    .orElseThrow();
+            assertEquals(position.getQty(), lastPosition.getQty());
+            assertEquals(position.getTransactions().size(), lastPosition.getTransactions().size());
+        }
+
+        Portfolio firstPtf = ptfHistory.getPortfolioAsOf(ptf.getPeriodFrom().minusDays(1));
+        assertTrue(firstPtf.getCash().isEmpty());
+        assertTrue(firstPtf.getPositions().isEmpty());
+        assertTrue(firstPtf.getTransactions().isEmpty());
+
+        LocalDate midDate = ptf.getPeriodFrom().plusDays(DAYS.between(ptf.getPeriodFrom(), ptf.getPeriodTo()) / 2);
+        Portfolio expectedMidPtf = ptfManager.initPortfolio(ptf.getAccountId(), ptf.getPeriodFrom(), midDate);
+        ptfManager.applyTransactions(expectedMidPtf, ptf.getTransactions()
+                .stream()
+                .filter(t -> !LocalDate.from(t.getDate()).isAfter(midDate))
+                .toList());
+        Portfolio midPtf = ptfHistory.getPortfolioAsOf(midDate);
+        assertEquals(expectedMidPtf.getCash(), midPtf.getCash());
+        assertEquals(expectedMidPtf.getCash(), ptfHistory.getCashAsOf(midDate));
+        assertEquals(expectedMidPtf.getTransactions().size(), midPtf.getTransactions().size());
+        for (Position position : expectedMidPtf.getPositions()) {
+            assertEquals(position.getQty(), ptfHistory.getPositionQtyAsOf(position.getSymbol(), midDate));
+        }
+    }
+
+    @Test
+    void queryPortfolioAsOfMonthEnds() {
+        ZoneId zone = ZoneId.of("Europe/Berlin");
+        Transaction deposit = historyTransaction("T1", LocalDate.parse("2023-01-10"), TransactionType.DEPOSIT, null, null, "0", "1000");
+        Transaction buySap = historyTransaction("T2", ZonedDateTime.of(2023, 1, 31, 23, 30, 0, 0, zone), TransactionType.BUY, Country.DE, "SAP", "10", "-500");
+        Transaction buyAapl = historyTransaction("T3", ZonedDateTime.of(2023, 3, 5, 15, 0, 0, 0, zone), TransactionType.BUY, Country.US, "AAPL", "5", "-300");
+        Transaction sellAapl = historyTransaction("T4", ZonedDateTime.of(2023, 3, 20, 15, 0, 0, 0, zone), TransactionType.SELL, Country.US, "AAPL", "-5", "320");
+        Transaction withdrawal = historyTransaction("T5", LocalDate.parse("2023-04-15"), TransactionType.WITHDRAWAL, null, null, "0", "-100");
+        Transaction sellSap = historyTransaction("T6", ZonedDateTime.of(2023, 4, 20, 10, 0, 0, 0, zone), TransactionType.SELL, Country.DE, "SAP", "-4", "210");
+        Portfolio ptf = new Portfolio();
+        ptf.setAccountId("U1");
+        ptf.setPeriodFrom(LocalDate.parse("2023-01-01"));
+        ptf.setPeriodTo(LocalDate.parse("2023-04-30"));
+        ptf.getTransactions().addAll(List.of(buyAapl, deposit, sellSap, sellAapl, buySap, withdrawal));
+        PortfolioHistory ptfHistory = new PortfolioHistory(ptf);
+
+        LocalDate beforeFirst = LocalDate.parse("2023-01-09");
+        Portfolio emptyPtf = ptfHistory.getPortfolioAsOf(beforeFirst);
+        assertEquals("U1", emptyPtf.getAccountId());
+        assertEquals(beforeFirst, emptyPtf.getPeriodTo());
+        assertTrue(emptyPtf.getCash().isEmpty());
+        assertTrue(emptyPtf.getPositions().isEmpty());
+        assertTrue(emptyPtf.getTransactions().isEmpty());
+        assertTrue(ptfHistory.getCashAsOf(beforeFirst).isEmpty());
+        assertEquals(BigDecimal.ZERO, ptfHistory.getPositionQtyAsOf("SAP", beforeFirst));
+
+        // The last transaction of January is on its month-end snapshot date
+        for (LocalDate date : List.of(LocalDate.parse("2023-01-31"), LocalDate.parse("2023-02-28"), LocalDate.parse("2023-03-04"))) {
+            Portfolio janPtf = ptfHistory.getPortfolioAsOf(date);
+            assertEquals(Map.of(EUR, new BigDecimal("500")), janPtf.getCash());
+            assertEquals(List.of(deposit, buySap), janPtf.getTransactions());
+            assertEquals(1, janPtf.getPositions().size());
+            assertEquals("SAP", janPtf.getPositions().get(0).getSymbol());
+            assertEquals(new BigDecimal("10"), janPtf.getPositions().get(0).getQty());
+            assertEquals(List.of(buySap), janPtf.getPositions().get(0).getTransactions());
+            assertEquals(new BigDecimal("10"), ptfHistory.getPositionQtyAsOf("SAP", date));
+        }
+        assertEquals(Map.of(EUR, new BigDecimal("1000")), ptfHistory.getCashAsOf(LocalDate.parse("2023-01-30")));
+        assertEquals(BigDecimal.ZERO, ptfHistory.getPositionQtyAsOf("SAP", LocalDate.parse("2023-01-30")));
+
+        // AAPL is opened and closed within March
+        assertEquals(new BigDecimal("5"), ptfHistory.getPositionQtyAsOf("AAPL", LocalDate.parse("2023-03-19")));
+        assertEquals(Map.of(EUR, new BigDecimal("200")), ptfHistory.getCashAsOf(LocalDate.parse("2023-03-19")));
+        for (LocalDate date : List.of(LocalDate.parse("2023-03-20"), LocalDate.parse("2023-03-31"), LocalDate.parse("2023-04-14"))) {
+            Portfolio marPtf = ptfHistory.getPortfolioAsOf(date);
+            assertEquals(Map.of(EUR, new BigDecimal("520")), marPtf.getCash());
+            assertEquals(List.of(deposit, buySap, buyAapl, sellAapl), marPtf.getTransactions());
+            Position aapl = marPtf.getPositions()
+                    .stream()
+                    .filter(p -> p.getSymbol().equals("AAPL"))
+                    .findAny()
+                    .orElseThrow();
+            assertEquals(0, aapl.getQty().signum());
+            assertEquals(List.of(buyAapl, sellAapl), aapl.getTransactions());
+            assertEquals(0, ptfHistory.getPositionQtyAsOf("AAPL", date).signum());
+        }
+
+        Portfolio lastPtf = ptfHistory.getPortfolioAsOf(ptf.getPeriodTo());
+        assertEquals(Map.of(EUR, new BigDecimal("630")), lastPtf.getCash());
+        assertEquals(List.of(deposit, buySap, buyAapl, sellAapl, withdrawal, sellSap), lastPtf.getTransactions());
+        Position sap = lastPtf.getPositions().get(0);
+        assertEquals("SAP", sap.getSymbol());
+        assertEquals(new BigDecimal("6"), sap.getQty());
+        assertEquals(List.of(buySap, sellSap), sap.getTransactions());
+    }
+
+    @Test
+    void queryCashLedger() {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        PortfolioManager ptfManager = new PortfolioManager();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+        Portfolio ptf = ibkrService.fillPortfolioFromStatements(activityReportPaths);
+        CashLedger cashLedger = ptfManager.getCashLedger(ptf);
+        assertEquals(ptf.getCash(), cashLedger.balancesAsOf(ptf.getPeriodTo()));
+        assertTrue(cashLedger.balancesAsOf(ptf.getPeriodFrom().minusDays(1)).isEmpty());
+
+        PortfolioHistory ptfHistory = new PortfolioHistory(ptf);
+        LocalDate midDate = ptf.getPeriodFrom().plusDays(DAYS.between(ptf.getPeriodFrom(), ptf.getPeriodTo()) / 2);
+        Map<Currency, BigDecimal> midCash = ptfHistory.getCashAsOf(midDate);
+        for (Currency ccy : cashLedger.getCurrencies()) {
+            assertEquals(midCash.getOrDefault(ccy, BigDecimal.ZERO), cashLedger.balanceAsOf(ccy, midDate));
+            NavigableMap<LocalDate, BigDecimal> balances = cashLedger.getBalances(ccy, midDate.plusDays(1), ptf.getPeriodTo());
+            BigDecimal lastBalance = balances.isEmpty() ? cashLedger.balanceAsOf(ccy, midDate) : balances.lastEntry().getValue();
+            assertEquals(ptf.getCash().get(ccy), lastBalance);
+        }
+
+        Portfolio plainPtf = new Portfolio();
+        plainPtf.getTransactions().addAll(ptf.getTransactions());
+        Collections.reverse(plainPtf.getTransactions());
+        assertEquals(cashLedger.balancesAsOf(midDate), ptfManager.getCashLedger(plainPtf).balancesAsOf(midDate));
+    }
+
+    @Test
+    void addCashLedgerChangesOutOfOrder() {
+        CashLedger cashLedger = new CashLedger();
+        cashLedger.add(EUR, LocalDate.parse("2023-01-10"), new BigDecimal("100"));
+        cashLedger.add(EUR, LocalDate.parse("2023-01-20"), new BigDecimal("50"));
+        cashLedger.add(EUR, LocalDate.parse("2023-02-05"), new BigDecimal("-30"));
+        cashLedger.add(USD, LocalDate.parse("2023-01-12"), new BigDecimal("5"));
+        // Inserted between, before all and on an existing date, each shifting all later balances
+        cashLedger.add(EUR, LocalDate.parse("2023-01-15"), new BigDecimal("7"));
+        cashLedger.add(EUR, LocalDate.parse("2023-01-01"), new BigDecimal("1"));
+        cashLedger.add(EUR, LocalDate.parse("2023-01-20"), new BigDecimal("2"));
+
+        assertEquals(Set.of(EUR, USD), cashLedger.getCurrencies());
+        assertEquals(BigDecimal.ZERO, cashLedger.balanceAsOf(EUR, LocalDate.parse("2022-12-31")));
+        assertEquals(new BigDecimal("1"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-01-09")));
+        assertEquals(new BigDecimal("101"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-01-14")));
+        assertEquals(new BigDecimal("160"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-01-20")));
+        assertEquals(new BigDecimal("130"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2024-01-01")));
+        assertEquals(BigDecimal.ZERO, cashLedger.balanceAsOf(Currency.CZK, LocalDate.parse("2024-01-01")));
+        assertEquals(Map.of(EUR, new BigDecimal("101")), cashLedger.balancesAsOf(LocalDate.parse("2023-01-11")));
+        assertEquals(Map.of(EUR, new BigDecimal("101"), USD, new BigDecimal("5")), cashLedger.balancesAsOf(LocalDate.parse("2023-01-12")));
+
+        assertEquals(Map.of(
+                LocalDate.parse("2023-01-10"), new BigDecimal("101"),
+                LocalDate.parse("2023-01-15"), new BigDecimal("108"),
+                LocalDate.parse("2023-01-20"), new BigDecimal("160")
+        ), cashLedger.getBalances(EUR, LocalDate.parse("2023-01-10"), LocalDate.parse("2023-01-20")));
+        assertEquals(Map.of(LocalDate.parse("2023-01-15"), new BigDecimal("108")),
+                cashLedger.getBalances(EUR, LocalDate.parse("2023-01-11"), LocalDate.parse("2023-01-19")));
+        assertEquals(Map.of(LocalDate.parse("2023-02-05"), new BigDecimal("130")),
+                cashLedger.getBalances(EUR, LocalDate.parse("2023-02-05"), LocalDate.parse("2023-02-05")));
+        assertEquals(Map.of(), cashLedger.getBalances(EUR, LocalDate.parse("2023-01-16"), LocalDate.parse("2023-01-19")));
+        assertEquals(Map.of(), cashLedger.getBalances(EUR, LocalDate.parse("2022-01-01"), LocalDate.parse("2022-12-31")));
+        assertEquals(Map.of(), cashLedger.getBalances(EUR, LocalDate.parse("2023-02-06"), LocalDate.parse("2023-12-31")));
+        assertEquals(Map.of(), cashLedger.getBalances(Currency.CZK, LocalDate.parse("2023-01-01"), LocalDate.parse("2023-12-31")));
+        assertThrows(IllegalArgumentException.class,
+                () -> cashLedger.getBalances(EUR, LocalDate.parse("2023-01-20"), LocalDate.parse("2023-01-19")));
+
+        // Descending dates insert at the front every time and grow the arrays
+        LocalDate firstDate = LocalDate.parse("2022-01-01");
+        for (int i = 39; i >= 0; i--) {
+            cashLedger.add(EUR, firstDate.plusDays(i), BigDecimal.ONE);
+        }
+        for (int i = 0; i < 40; i++) {
+            assertEquals(BigDecimal.valueOf(i + 1), cashLedger.balanceAsOf(EUR, firstDate.plusDays(i)));
+        }
+        assertEquals(new BigDecimal("41"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-01-01")));
+        assertEquals(new BigDecimal("170"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-02-05")));
+        assertEquals(45, cashLedger.getBalances(EUR, firstDate, LocalDate.parse("2023-12-31")).size());
+    }
+
+    @Test
+    void keepCashLedgerWhileApplyingTransactions() {
+        PortfolioManager ptfManager = new PortfolioManager();
+        Transaction deposit = ledgerTransaction("T1", "2023-01-10", TransactionType.DEPOSIT, null, null, "0", null, "1000");
+        Transaction buySap = ledgerTransaction("T2", "2023-01-31", TransactionType.BUY, Country.DE, "SAP", "10", "50", "-500");
+        Transaction buyAapl = ledgerTransaction("T3", "2023-03-05", TransactionType.BUY, Country.US, "AAPL", "5", "60", "-300");
+        Transaction sellAapl = ledgerTransaction("T4", "2023-03-20", TransactionType.SELL, Country.US, "AAPL", "-5", "64", "320");
+        Transaction withdrawal = ledgerTransaction("T5", "2023-04-15", TransactionType.WITHDRAWAL, null, null, "0", null, "-100");
+        Portfolio ptf = ptfManager.initPortfolio("U1", LocalDate.parse("2023-01-01"), LocalDate.parse("2023-12-31"));
+        CashLedger cashLedger = ptfManager.getCashLedger(ptf);
+
+        ptf.getTransactions().add(deposit);
+        ptfManager.applyTransaction(ptf, deposit);
+        ptfManager.applyTransactions(ptf, List.of(buySap, buyAapl));
+        // Appended without being applied, the ledger takes it from the transaction list
+        ptf.getTransactions().add(sellAapl);
+        ptf.getTransactions().add(withdrawal);
+        ptfManager.applyTransaction(ptf, withdrawal);
+
+        assertSame(cashLedger, ptfManager.getCashLedger(ptf));
+        assertEquals(new BigDecimal("1000"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-01-30")));
+        assertEquals(new BigDecimal("200"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-03-05")));
+        assertEquals(new BigDecimal("520"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-03-20")));
+        assertEquals(new BigDecimal("420"), cashLedger.balanceAsOf(EUR, LocalDate.parse("2023-12-31")));
+
+        Portfolio plainPtf = new Portfolio();
+        plainPtf.getTransactions().addAll(ptf.getTransactions());
+        assertEquals(cashLedger.balancesAsOf(LocalDate.parse("2023-03-31")), ptfManager.getCashLedger(plainPtf).balancesAsOf(LocalDate.parse("2023-03-31")));
+    }
+
+    @Test
+    void decodeDatesLikeDateTimeFormatter() {
+        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyyMMdd");
+        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyyMMdd;HHmmss z");
+        DateTimeParser parser = new DateTimeParser();
+        List<String> zoneTexts = List.of("EST", "EDT", "CET", "CEST", "GMT", "UTC", "BST", "JST", "HKT", "PST", "PDT", "AEST", "AEDT");
+        List<ZoneId> dstZones = Stream.of("America/New_York", "America/Los_Angeles", "Europe/London", "Europe/Berlin", "Australia/Sydney")
+                .map(ZoneId::of)
+                .toList();
+        int dayIndex = 0;
+        for (LocalDate date = LocalDate.parse("2000-01-01"); date.getYear() <= 2025; date = date.plusDays(1), dayIndex++) {
+            String dateStr = date.format(DateTimeFormatter.BASIC_ISO_DATE);
+            assertEquals(LocalDate.parse(dateStr, df), parser.parseTemporal(dateStr));
+
+            LocalDate day = date;
+            boolean dstChangeDay = dstZones.stream().anyMatch(zone -> !zone.getRules().getOffset(day.atStartOfDay())
+                    .equals(zone.getRules().getOffset(day.atTime(23, 59))));
+            // The hours 0 to 4 with every zone on the days with a DST gap or overlap, one rotating hour and zone on the other days
+            int hourCount = dstChangeDay ? 5 : 1;
+            int zoneCount = dstChangeDay ? zoneTexts.size() : 1;
+            for (int h = 0; h < hourCount; h++) {
+                for (int z = 0; z < zoneCount; z++) {
+                    int hour = dstChangeDay ? h : dayIndex % 24;
+                    String zoneText = zoneTexts.get(dstChangeDay ? z : dayIndex % zoneTexts.size());
+                    String dateTimeStr = "%s;%02d%02d%02d %s".formatted(dateStr, hour, dayIndex % 60, (dayIndex + h) % 60, zoneText);
+                    assertEquals(ZonedDateTime.parse(dateTimeStr, dtf), parser.parseTemporal(dateTimeStr), dateTimeStr);
+                }
+            }
+        }
+
+        List<String> malformedDates = List.of(
+                "20230231", "20230229", "20240230", "20231301", "20230100", "20230132", "00000101",
+                "2023011", "202301011", "2023-01-1", "abcdefgh", "2023O101", "+2023010");
+        for (String dateStr : malformedDates) {
+            assertEquals(parseOutcome(() -> LocalDate.parse(dateStr, df)), parseOutcome(() -> parser.parseTemporal(dateStr)), dateStr);
+        }
+        // Malformed inputs and, handed over to the formatter as well, the times in DST overlaps and gaps
+        List<String> edgeDateTimes = List.of(
+                "20230231;120000 EST", "20230101;240000 EST", "20230101;126000 EST", "20230101;120060 EST",
+                "20230101;120000 XYZ", "20230101;120000 ", "20230101;12000 EST", "20230101;1200000 EST",
+                "2023010;120000 EST", "20230101;12:000 EST", "20231105;013000 EST", "20231105;013000 EDT",
+                "20230312;023000 EST", "20230312;023000 EDT", "20231029;023000 CET", "20231029;023000 CEST");
+        for (String dateTimeStr : edgeDateTimes) {
+            assertEquals(parseOutcome(() -> ZonedDateTime.parse(dateTimeStr, dtf)), parseOutcome(() -> parser.parseTemporal(dateTimeStr)), dateTimeStr);
+        }
+    }
+
+    @Test
+    void compareTranIdsLikeStrings() {
+        ZonedDateTime overlap = LocalDateTime.parse("2023-11-05T01:30:00").atZone(ZoneId.of("America/New_York"));
+        List<Temporal> dateTimes = List.of(
+                LocalDate.parse("2023-12-28"),
+                LocalDate.parse("2023-12-29"),
+                ZonedDateTime.parse("2023-12-28T10:15:00Z"),
+                ZonedDateTime.parse("2023-12-28T10:15:30Z"),
+                ZonedDateTime.parse("2023-12-28T10:15:00.5Z"),
+                ZonedDateTime.parse("2023-12-28T10:15:30.123456789Z"),
+                ZonedDateTime.parse("2023-12-28T10:15:00-05:00"),
+                ZonedDateTime.parse("2023-12-28T10:15:00+01:00[Europe/Prague]"),
+                ZonedDateTime.parse("2023-12-28T10:14:59.999Z"),
+                overlap.withEarlierOffsetAtOverlap(),
+                overlap.withLaterOffsetAtOverlap(),
+                overlap.withLaterOffsetAtOverlap().plusSeconds(1),
+                ZonedDateTime.parse("+10000-01-01T00:00:00Z")
+        );
+        List<String> ids = Arrays.asList(
+                "99", "100", "0", "007", "", null, "null", "abc", "12a", "123456789012345678", "9999999999999999999");
+        List<TranId> tranIds = new ArrayList<>();
+        for (Temporal dateTime : dateTimes) {
+            for (String id1 : ids) {
+                for (String id2 : Arrays.asList("", null, "5", "10")) {
+                    for (TranId.Kind kind : TranId.Kind.values()) {
+                        tranIds.add(TranId.of(dateTime, id1, id2, kind));
+                    }
+                }
+            }
+        }
+        for (TranId tranId1 : tranIds) {
+            for (TranId tranId2 : tranIds) {
+                int expected = Integer.signum(tranId1.toString().compareTo(tranId2.toString()));
+                int actual = Integer.signum(tranId1.compareTo(tranId2));
+                if (expected != actual) {
+                    assertEquals(expected, actual, tranId1 + " vs " + tranId2);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sortTranIdsLikeStringIds() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity"));
+        List<TranId> tranIds = new ArrayList<>();
+        for (Path activityReportPath : activityReportPaths) {
+            FlexStatement flexStatement = parser.parseAll(activityReportPath);
+            flexStatement.getCashTransactions().forEach(t -> tranIds.add(TranIdGenerator.getTranId(t)));
+            flexStatement.getTrades().forEach(t -> tranIds.add(TranIdGenerator.getTranId(t)));
+            flexStatement.getCorporateActions().forEach(t -> tranIds.add(TranIdGenerator.getTranId(t)));
+        }
+        assertTrue(tranIds.size() > 0);
+        tranIds.add(TranId.of(LocalDate.parse("2023-12-28"), "99", "", TranId.Kind.CASH_TRAN));
+        tranIds.add(TranId.of(LocalDate.parse("2023-12-28"), "100", "", TranId.Kind.CASH_TRAN));
+        tranIds.add(TranId.of(LocalDate.parse("2023-12-28"), "100", null, TranId.Kind.CASH_TRAN));
+
+        List<String> expectedIds = tranIds.stream().map(TranId::toString).sorted().toList();
+        List<String> ids = tranIds.stream().sorted().map(TranId::toString).toList();
+        assertEquals(expectedIds, ids);
+    }
+
+    @Test
+    void parseTransactionsWithHandler() {
+        FlexStatementXmlParser parser = new FlexStatementXmlParser();
+        List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity"));
+        for (Path activityReportPath : activityReportPaths) {
+            FlexStatement flexStatement = parser.parseAll(activityReportPath);
+            int[] counts = new int[5];
+            parser.parse(activityReportPath, new FlexStatementHandler() {
+                @Override
+                public void onTrade(Trade trade) {
+                    counts[0]++;
+                }
+
+                @Override
+                public void onCashTransaction(CashTransaction cashTransaction) {
+                    counts[1]++;
+                }
+
+                @Override
+                public void onCorporateAction(CorporateAction corporateAction) {
+                    counts[2]++;
+                }
+
+                @Override
+                public void onEquitySummary(EquitySummary equitySummary) {
+                    counts[3]++;
+                }
+
+                @Override
+                public void onEnd() {
+                    counts[4]++;
+                }
+            });
+            assertEquals(flexStatement.getTrades().size(), counts[0]);
+            assertEquals(flexStatement.getCashTransactions().size(), counts[1]);
+            assertEquals(flexStatement.getCorporateActions().size(), counts[2]);
+            assertEquals(flexStatement.getEquitySummaries().size(), counts[3]);
+            assertEquals(1, counts[4]);
+        }
+    }
+
+    @Test
+    void parseZipWithHandler(@TempDir Path tempDir) throws IOException {
+        Path zipPath = tempDir.resolve("statements.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            for (String accountId : List.of("U1", "U2")) {
+                zos.putNextEntry(new ZipEntry(accountId + ".xml"));
+                zos.write("""
+                        <FlexQueryResponse queryName="Test" type="AF">
+                        <FlexStatements count="1">
+                        <FlexStatement accountId="%s" fromDate="20230101" toDate="20230131" period="Custom" whenGenerated="20230201;050102 EST">
+                        </FlexStatement>
+                        </FlexStatements>
+                        </FlexQueryResponse>
+                        """.formatted(accountId).getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        for (FlexStatementXmlParser parser : List.of(
+                new FlexStatementXmlParser(),
+                new FlexStatementXmlParser(FlexStatementXmlParser.Engine.SCAN, true))) {
+            List<String> events = new ArrayList<>();
+            parser.parse(zipPath, new FlexStatementHandler() {
+                @Override
+                public void onStatementHeader(FlexStatement header) {
+                    events.add(header.getAccountId());
+                }
+
+                @Override
+                public void onEnd() {
+                    events.add("end");
+                }
+            });
+            assertEquals(List.of("U1", "U2", "end"), events);
+        }
+    }
+
     @Test
     void processStatements1() throws IOException {
         IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
@@ -346,4 +1331,183 @@ class IbkrServiceTest {
         assertEquals(0, newestEquitySummary.getDividendAccruals().compareTo(dividendAccruals));
         assertEquals(0, cash.add(stock).add(dividendAccruals).compareTo(total));
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseStatements() {
+        IbkrService ibkrService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        List<Path> activityReportPaths = List.of(
+                testHelper.getTestFilePath(s -> s.contains("Activity-LR-IBKR-20220803-20230802.xml"))
+        );
+        FlexStatement flexStatement = ibkrService.parseStatements(activityReportPaths);
+        FlexStatement activities = ibkrService.parseActivitiesFromStatements(activityReportPaths);
+        FlexStatement equitySummaries = ibkrService.parseEquitySummariesFromStatements(activityReportPaths);
+
+        assertEquals(activities.getTrades().toString(), flexStatement.getTrades().toString());
+        assertEquals(activities.getCashTransactions().toString(), flexStatement.getCashTransactions().toString());
+        assertEquals(activities.getCorporateActions().toString(), flexStatement.getCorporateActions().toString());
+        assertEquals(equitySummaries.getEquitySummaries().toString(), flexStatement.getEquitySummaries().toString());
+    }
+
+    @Test
+    void parseStatementsInParallel() {
+        IbkrService sequentialService = IbkrServiceFactory.INSTANCE.getIbkrService();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            IbkrService parallelService = new IbkrServiceImpl(
+                    new FlexStatementXmlParser(), new PortfolioManager(), new TransactionMapper(), null, pool);
+            List<Path> activityReportPaths = testHelper.getTestFilePaths(s -> s.contains("Activity-LR-IBKR"));
+            assertEquals(
+                    sequentialService.parseStatements(activityReportPaths).toString(),
+                    parallelService.parseStatements(activityReportPaths).toString()
+            );
+            Portfolio sequentialPtf = sequentialService.fillPortfolioFromStatements(activityReportPaths);
+            Portfolio parallelPtf = parallelService.fillPortfolioFromStatements(activityReportPaths);
+            assertEquals(sequentialPtf.getTransactions().toString(), parallelPtf.getTransactions().toString());
+
+            IbkrService chunkedService = new IbkrServiceImpl(
+                    new FlexStatementXmlParser(), new PortfolioManager(), new TransactionMapper(), null, pool, true);
+            for (Path activityReportPath : activityReportPaths) {
+                assertEquals(
+                        sequentialService.parseStatements(List.of(activityReportPath)).toString(),
+                        chunkedService.parseStatements(List.of(activityReportPath)).toString()
+                );
+            }
+            assertThrows(IllegalArgumentException.class, () -> new IbkrServiceImpl(
+                    new FlexStatementXmlParser(), new PortfolioManager(), new TransactionMapper(), null, null, true));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the parsed value or the class of the thrown exception.
+     */
+    private static Object parseOutcome(Supplier<Temporal> parsing) {
+        try {
+            return parsing.get();
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Portfolio checkpointPortfolio() {
+        Transaction deposit = new Transaction();
+        deposit.setId("D1");
+        deposit.setDate(LocalDate.parse("2023-03-01"));
+        deposit.setType(TransactionType.DEPOSIT);
+        deposit.setCurrency(EUR);
+        deposit.setGrossValue(new BigDecimal("1000.00"));
+        deposit.setNetValue(new BigDecimal("1000.00"));
+
+        Transaction buy = new Transaction();
+        buy.setId("B1");
+        buy.setDate(ZonedDateTime.of(2023, 3, 26, 3, 30, 15, 123_000_000, ZoneId.of("Europe/Berlin")));
+        buy.setType(TransactionType.BUY);
+        buy.setCountry(Country.DE);
+        buy.setSymbol("SAP");
+        buy.setIsin("DE0007164600");
+        buy.setAssetCategory(AssetCategory.STK);
+        buy.setQty(new BigDecimal("10"));
+        buy.setCurrency(EUR);
+        buy.setPrice(new BigDecimal("123456789012345678901.2345"));
+        buy.setGrossValue(new BigDecimal("-1234567890123456789012.345"));
+        buy.setNetValue(new BigDecimal("-1234567890123456789013.345"));
+        buy.setFees(new BigDecimal("-1"));
+        buy.setSettleDate(LocalDate.parse("2023-03-28"));
+        buy.setDescription("Bought SAP");
+
+        Transaction sell = new Transaction();
+        sell.setId("S1");
+        sell.setDate(ZonedDateTime.of(2023, 4, 3, 10, 0, 0, 0, ZoneId.of("Europe/Berlin")));
+        sell.setType(TransactionType.SELL);
+        sell.setCountry(Country.DE);
+        sell.setSymbol("SAP");
+        sell.setQty(new BigDecimal("-4"));
+        sell.setCurrency(EUR);
+
+        Position position = new Position();
+        position.setCountry(Country.DE);
+        position.setSymbol("SAP");
+        position.setQty(new BigDecimal("6"));
+        position.getTransactions().add(buy);
+        position.getTransactions().add(sell);
+
+        Portfolio ptf = new Portfolio();
+        ptf.setAccountId("U1");
+        ptf.setPeriodFrom(LocalDate.parse("2023-03-01"));
+        ptf.setPeriodTo(LocalDate.parse("2023-04-30"));
+        ptf.getCash().put(EUR, new BigDecimal("-1234567890123456788013.345"));
+        ptf.getCash().put(USD, new BigDecimal("0.5"));
+        ptf.getPositions().add(position);
+        ptf.getTransactions().addAll(List.of(deposit, buy, sell));
+        return ptf;
+    }
+
+    private static byte[] checkpointBytes(Portfolio ptf) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PortfolioCheckpoint.write(ptf, out);
+        return out.toByteArray();
+    }
+
+    private static Portfolio readCheckpoint(byte[] bytes) {
+        return PortfolioCheckpoint.read(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] withChecksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(body.length + Integer.BYTES).put(body).putInt((int) crc.getValue()).array();
+    }
+
+    private static Transaction historyTransaction(
+            String id, Temporal date, TransactionType type, Country country, String symbol, String qty, String netValue
+    ) {
+        Transaction tran = new Transaction();
+        tran.setId(id);
+        tran.setDate(date);
+        tran.setType(type);
+        tran.setCountry(country);
+        tran.setSymbol(symbol);
+        tran.setQty(new BigDecimal(qty));
+        tran.setCurrency(EUR);
+        tran.setNetValue(new BigDecimal(netValue));
+        return tran;
+    }
+
+    private static Transaction ledgerTransaction(
+            String id, String date, TransactionType type, Country country, String symbol, String qty, String price, String netValue
+    ) {
+        Transaction tran = historyTransaction(id, LocalDate.parse(date), type, country, symbol, qty, netValue);
+        tran.setSettleDate(LocalDate.parse(date));
+        tran.setPrice(price == null ? null : new BigDecimal(price));
+        tran.setGrossValue(tran.getNetValue());
+        tran.setFees(BigDecimal.ZERO);
+        return tran;
+    }
+
+    private static Trade storedTrade(ZonedDateTime dateTime, String tradeId, String ibOrderId) {
+        Trade trade = new Trade();
+        trade.setDateTime(dateTime);
+        trade.setTradeID(tradeId);
+        trade.setIbOrderID(ibOrderId);
+        return trade;
+    }
+
+    private static FlexStatement header(String accountId, FlexStatementType type, String fromDate, String toDate, ZonedDateTime whenGenerated) {
+        FlexStatement header = new FlexStatement();
+        header.setAccountId(accountId);
+        header.setType(type);
+        header.setFromDate(LocalDate.parse(fromDate));
+        header.setToDate(LocalDate.parse(toDate));
+        header.setWhenGenerated(whenGenerated);
+        return header;
+    }
+
+    private static class DateTimeParser extends FlexStatementXmlParser {
+
+        @Override
+        protected Temporal parseTemporal(String str) {
+            return super.parseTemporal(str);
+        }
+    }
+}